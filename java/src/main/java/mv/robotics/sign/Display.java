@@ -3,88 +3,226 @@
  */
 package mv.robotics.sign;
 
-import java.awt.Color;
-import java.awt.Dimension;
-import java.awt.Graphics;
 import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
-import javax.swing.JPanel;
-
+import mv.robotics.sign.capture.FrameRecorder;
+import mv.robotics.sign.metrics.Counter;
+import mv.robotics.sign.metrics.Gauge;
+import mv.robotics.sign.metrics.Histogram;
+import mv.robotics.sign.metrics.Metrics;
 import mv.robotics.sign.msg.MsgConn;
 import mv.robotics.sign.msg.MsgServiceListener;
-import mv.robotics.sign.msg.ex.MsgException;
+import mv.robotics.sign.msg.util.MsgBuffer;
+import mv.robotics.sign.pipeline.FrameFilter;
+import mv.robotics.sign.pipeline.FrameSender;
 
 /**
- * This represents the display we're pushing pixels to.  This is
- * both an on-screen display as well as a controller for the
- * physical display when available.  This allows the user to see
- * the display on their monitor for testing but also pass the
- * pixel data to the hardware when it is connected.
+ * This represents the display we're pushing pixels to.  It's the
+ * controller for the physical display, running each frame through the
+ * output pipeline and passing the pixel data to the hardware when it is
+ * connected.  It doesn't depend on Swing so the sign can run headless,
+ * an on-screen preview for testing is a DisplayListener (see DisplayView).
  * 
  * @author David Vogt (david@kondra.com)
  * @version Dec-29-21
  */
-public class Display extends JPanel implements MsgServiceListener
+public class Display implements MsgServiceListener
 {
-   static private final long serialVersionUID = -3159573991302027764L;
-   
    /* size of the display... don't change this unless the teensy code is also changed */
    static public final int WIDTH  = 30;
    static public final int HEIGHT = 10;
    
-   /* size of a pixel in the simulated ui */
-   static public final int PIXEL_SIZE = 20;
+   /* message type for image data on the teensy */
+   static public final int MSG_TYPE_IMAGE_DATA = 1;
+   
+   /* max number of connections to encode and write concurrently */
+   static private final int SEND_PARALLELISM = 4;
+   
+   /* frame metrics */
+   static private final Counter frames = Metrics.counter("display.frames");
+   static private final Histogram frameTime = Metrics.histogram("display.frame.renderNanos");
+   static private final Histogram frameInterval = Metrics.histogram("display.frame.intervalNanos");
 
-   private MsgConn displayConn;    /* usb connection to the hardware */
+   private FrameSender sender;     /* connections to the hardware */
    private int[] pixels;           /* latest pixel data from render() call */
+   private int[] outPixels;        /* filtered pixel data sent to the hardware */
+   private int[] lastFrame;        /* copy of the last filtered frame, guarded by itself */
+   private boolean haveFrame;      /* true once lastFrame holds a frame */
+   private FrameFilter[] filters;  /* output pipeline stages */
+   private long lastFrameTime;     /* when the previous frame started */
+   private List<DisplayListener> listeners;   /* frame listeners */
+   private long jvmStart;          /* when the jvm started, in ms */
+   private long firstRender;       /* ms from jvm start to the first frame, 0 until then */
+   private volatile long firstSend;   /* ms from jvm start to the first frame on a board */
+   private volatile FrameRecorder recorder;   /* capture log for the frames or null */
+   private MsgBuffer recordBuf;    /* encoded frame for the recorder */
 
    public Display()
    {
-      /* set the preferred size of this component so that it shows all the pixels */
-      Dimension dim = new Dimension(WIDTH*PIXEL_SIZE, HEIGHT*PIXEL_SIZE);
-      setPreferredSize(dim);
-      
       /* start with black pixels */
       pixels = new int[WIDTH*HEIGHT];
+      outPixels = new int[WIDTH*HEIGHT];
+      lastFrame = new int[WIDTH*HEIGHT];
+      recordBuf = new MsgBuffer(WIDTH*HEIGHT*3);
+      
+      /* no output filters until some are added */
+      filters = new FrameFilter[0];
+      
+      /* frames are sent to every connected board in parallel */
+      sender = new FrameSender(SEND_PARALLELISM);
+      listeners = new CopyOnWriteArrayList<>();
+      
+      /* startup is timed from the jvm launch so class loading counts too */
+      jvmStart = ManagementFactory.getRuntimeMXBean().getStartTime();
+      Metrics.gauge("display.startup.firstRenderMillis",new Gauge() {
+         public long get() {
+            return(firstRender);
+         }
+      });
+      Metrics.gauge("display.startup.firstFrameMillis",new Gauge() {
+         public long get() {
+            return(firstSend);
+         }
+      });
+   }
+   
+   /**
+    * Add a listener that sees every frame.
+    * 
+    * @param listener   the listener to add
+    */
+   public void addListener(DisplayListener listener)
+   {
+      listeners.add(listener);
+   }
+   
+   /**
+    * Remove a frame listener.
+    * 
+    * @param listener   the listener to remove
+    */
+   public void removeListener(DisplayListener listener)
+   {
+      listeners.remove(listener);
+   }
+   
+   /**
+    * Add a filter to the end of the output pipeline.  Filters only apply
+    * to the data sent to the hardware, the on-screen display always shows
+    * the unfiltered pixels.
+    * 
+    * @param filter   the filter to add
+    */
+   public void addFilter(FrameFilter filter)
+   {
+      /* copy on add so render() can walk the array without locking */
+      FrameFilter[] list = new FrameFilter[filters.length+1];
+      System.arraycopy(filters,0,list,0,filters.length);
+      list[filters.length] = filter;
+      filters = list;
    }
    
    /**
-    * Render the pixels to the virtual and physical display.
+    * Record every frame sent to the hardware, whether or not a board is
+    * connected, or pass null to stop recording.  The recorder isn't
+    * closed by the display.
+    * 
+    * @param recorder   the recorder or null
+    */
+   public void setRecorder(FrameRecorder recorder)
+   {
+      this.recorder = recorder;
+   }
+   
+   /**
+    * Get the frame sender which tracks per connection encode and
+    * write latency.
+    */
+   public FrameSender getSender()
+   {
+      return(sender);
+   }
+   
+   /**
+    * Render the pixels to the listeners and the physical display.
     */
    public void render(BufferedImage img)
    {
+      /* track the time between frames */
+      long start = System.nanoTime();
+      if(lastFrameTime != 0)
+         frameInterval.record(start - lastFrameTime);
+      lastFrameTime = start;
+      
       /* extract the pixels from the image */
-      pixels = img.getRGB(0,0,WIDTH,HEIGHT,null,0,WIDTH);
+      img.getRGB(0,0,WIDTH,HEIGHT,pixels,0,WIDTH);
+      if(firstRender == 0)
+         firstRender = System.currentTimeMillis() - jvmStart;
       
-      /* request the ui get repainted using the new pixel data */
-      repaint();
+      /* let the previews have a look */
+      for(DisplayListener listener : listeners)
+         listener.onFrame(pixels);
 
+      /* run the output pipeline on a copy of the pixels... this happens */
+      /* even with no hardware so the filters stay in step and a frame is */
+      /* ready to go the moment a board connects */
+      System.arraycopy(pixels,0,outPixels,0,outPixels.length);
+      for(FrameFilter filter : filters)
+         filter.filter(outPixels);
+      synchronized(lastFrame) {
+         System.arraycopy(outPixels,0,lastFrame,0,lastFrame.length);
+         haveFrame = true;
+      }
+      
       /* if we have a connection to the physical display, send the pixels */
-      if(displayConn != null)
+      if(sender.isConnected())
       {
-         try {
-            displayConn.sendMsg(1,new ImageDataMsg(pixels));
-         } catch(MsgException ex) {
-            /* ignore message exceptions */
-         }
+         sender.send(MSG_TYPE_IMAGE_DATA,outPixels);
+         if(firstSend == 0)
+            firstFrameSent();
       }
+      
+      /* capture the whole frame as it's encoded for the wire */
+      FrameRecorder rec = recorder;
+      if(rec != null)
+         record(rec,start);
+      
+      /* track how long the frame took */
+      frames.inc();
+      frameTime.record(System.nanoTime() - start);
    }
    
-   @Override
-   public void paint(Graphics gr)
+   /**
+    * Encode the filtered frame and add it to the capture log.  The log
+    * holds the whole frame as one message, not the per connection slices
+    * the sender writes (see FrameRecorder).  A failing log stops the
+    * recording rather than the display.
+    */
+   private void record(FrameRecorder rec,long time)
    {
-      /* pixel data is stacked in horizontal rows so iterate through it that way */
-      for(int y=0;y<HEIGHT;y++)
+      try {
+         recordBuf.clear();
+         new ImageDataMsg(outPixels).writeTo(recordBuf);
+         rec.record(time,MSG_TYPE_IMAGE_DATA,recordBuf.array(),0,recordBuf.position());
+      } catch(IOException ex) {
+         ex.printStackTrace();
+         recorder = null;
+      }
+   }
+   
+   /**
+    * Note the time the first frame made it to a board.
+    */
+   private synchronized void firstFrameSent()
+   {
+      if(firstSend == 0)
       {
-         for(int x=0;x<WIDTH;x++)
-         {
-            /* set the color for the next pixel */            
-            int pixel = pixels[(y*WIDTH)+x];
-            gr.setColor(new Color(pixel));
-            
-            /* draw the circle on the screen to represent the pixel */
-            gr.fillOval(x*PIXEL_SIZE, y*PIXEL_SIZE, PIXEL_SIZE, PIXEL_SIZE);
-         }
+         firstSend = System.currentTimeMillis() - jvmStart;
+         System.out.println("first frame sent "+firstSend+"ms after launch");
       }
    }
    
@@ -92,13 +230,27 @@ public class Display extends JPanel implements MsgServiceListener
    public void onConnect(MsgConn conn)
    {
       System.out.println("display connected");
-      displayConn = conn;
+      sender.addConn(conn);
+      
+      /* resend the last frame right away so a board that just came */
+      /* back doesn't sit blank until the next frame */
+      int[] frame = null;
+      synchronized(lastFrame) {
+         if(haveFrame)
+            frame = lastFrame.clone();
+      }
+      if(frame != null)
+      {
+         sender.sendTo(conn,MSG_TYPE_IMAGE_DATA,frame);
+         if(firstSend == 0)
+            firstFrameSent();
+      }
    }
 
    @Override
    public void onDisconnect(MsgConn conn)
    {
       System.out.println("display disconnected");
-      displayConn = null;      
+      sender.removeConn(conn);
    }
 }
@@ -0,0 +1,22 @@
+/**
+ * (C) Copyright 2026, David Vogt, All rights reserved.
+ */
+package mv.robotics.sign;
+
+/**
+ * Receives the frames rendered to the display, for previews and the like.
+ * 
+ * @author David Vogt (david@kondra.com)
+ * @version Oct-18-26
+ */
+public interface DisplayListener
+{
+   /**
+    * Called on the render thread for every frame.  The pixels are only
+    * valid for the duration of the call so copy what's needed and return
+    * quickly, the frame isn't sent to the hardware until this returns.
+    * 
+    * @param pixels   the unfiltered ARGB pixel data, stacked in horizontal rows
+    */
+   public void onFrame(int[] pixels);
+}
@@ -0,0 +1,191 @@
+/**
+ * (C) Copyright 2026, David Vogt, All rights reserved.
+ */
+package mv.robotics.sign;
+
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.FlowLayout;
+import java.awt.Graphics;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+
+import javax.swing.JFrame;
+import javax.swing.JPanel;
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
+
+/**
+ * On-screen preview of the display.  This lets the user see the display
+ * on their monitor for testing, add it to the display as a listener.  It
+ * shows the unfiltered pixels, the output pipeline only applies to the
+ * data sent to the hardware.
+ *
+ * Frames are handed to the ui through three buffers so neither side ever
+ * waits on the other for more than a pointer swap.  The render thread
+ * fills the back buffer and swaps it with the ready buffer.  A timer on
+ * the event thread runs at the preview frame rate and, only if a new
+ * frame came in since the last tick, swaps the ready buffer to the front
+ * and repaints.  Painting reads the front buffer which only the event
+ * thread touches, so it never tears and repaints never pile up no matter
+ * how fast frames are rendered.
+ *
+ * @author David Vogt (david@kondra.com)
+ * @version Oct-18-26
+ */
+public class DisplayView extends JPanel implements DisplayListener
+{
+   static private final long serialVersionUID = -3159573991302027764L;
+
+   /* size of a pixel in the simulated ui */
+   static public final int PIXEL_SIZE = 20;
+
+   /* default preview frame rate */
+   static public final int PREVIEW_FPS = 30;
+
+   private Object lock;            /* guards the ready buffer and sequence */
+   private int[] back;             /* filled by the render thread */
+   private int[] ready;            /* latest complete frame */
+   private int[] front;            /* being painted, event thread only */
+   private long readySeq;          /* number of frames handed over */
+   private long frontSeq;          /* frame number in the front buffer */
+   private Timer timer;            /* repaints at the preview frame rate */
+
+   /**
+    * Create a view that repaints at the default preview frame rate.
+    */
+   public DisplayView()
+   {
+      this(PREVIEW_FPS);
+   }
+
+   /**
+    * Create a view.
+    *
+    * @param fps   max number of times per second to repaint
+    */
+   public DisplayView(int fps)
+   {
+      /* set the preferred size of this component so that it shows all the pixels */
+      Dimension dim = new Dimension(Display.WIDTH*PIXEL_SIZE, Display.HEIGHT*PIXEL_SIZE);
+      setPreferredSize(dim);
+
+      /* start with black pixels */
+      lock = new Object();
+      back = new int[Display.WIDTH*Display.HEIGHT];
+      ready = new int[Display.WIDTH*Display.HEIGHT];
+      front = new int[Display.WIDTH*Display.HEIGHT];
+
+      timer = new Timer(1000/Math.max(fps,1),new ActionListener() {
+         public void actionPerformed(ActionEvent e) {
+            tick();
+         }
+      });
+      timer.setCoalesce(true);
+   }
+
+   /**
+    * Set the max number of times per second to repaint.
+    *
+    * @param fps   the preview frame rate
+    */
+   public void setFps(int fps)
+   {
+      timer.setDelay(1000/Math.max(fps,1));
+   }
+
+   /**
+    * Show a preview of the display in a window of its own.  The window is
+    * built on the event thread so the caller doesn't wait on Swing to start
+    * up, and closing it exits the app.
+    *
+    * @param display   the display to preview
+    * @param fps       max number of times per second to repaint
+    */
+   static public void show(final Display display,final int fps)
+   {
+      SwingUtilities.invokeLater(new Runnable() {
+         public void run() {
+            DisplayView view = new DisplayView(fps);
+
+            /* the ui code to show the simulated display */
+            JFrame frame = new JFrame();
+            frame.getContentPane().setLayout(new FlowLayout());
+            frame.getContentPane().add(view);
+            frame.pack();
+            frame.setResizable(false);
+            frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+            frame.setAlwaysOnTop(true);
+            frame.setVisible(true);
+
+            display.addListener(view);
+         }
+      });
+   }
+
+   @Override
+   public void addNotify()
+   {
+      super.addNotify();
+      timer.start();
+   }
+
+   @Override
+   public void removeNotify()
+   {
+      timer.stop();
+      super.removeNotify();
+   }
+
+   @Override
+   public void onFrame(int[] frame)
+   {
+      /* fill the back buffer outside the lock, then publish it */
+      System.arraycopy(frame,0,back,0,back.length);
+      synchronized(lock) {
+         int[] tmp = ready;
+         ready = back;
+         back = tmp;
+         readySeq++;
+      }
+   }
+
+   /**
+    * Called on the event thread at the preview frame rate to pick up the
+    * latest frame.
+    */
+   private void tick()
+   {
+      synchronized(lock) {
+         if(readySeq == frontSeq)
+            return;
+         int[] tmp = front;
+         front = ready;
+         ready = tmp;
+         frontSeq = readySeq;
+      }
+
+      /* request the ui get repainted using the new pixel data */
+      repaint();
+   }
+
+   @Override
+   public void paint(Graphics gr)
+   {
+      int[] pixels = front;
+
+      /* pixel data is stacked in horizontal rows so iterate through it that way */
+      for(int y=0;y<Display.HEIGHT;y++)
+      {
+         for(int x=0;x<Display.WIDTH;x++)
+         {
+            /* set the color for the next pixel */
+            int pixel = pixels[(y*Display.WIDTH)+x];
+            gr.setColor(new Color(pixel));
+
+            /* draw the circle on the screen to represent the pixel */
+            gr.fillOval(x*PIXEL_SIZE, y*PIXEL_SIZE, PIXEL_SIZE, PIXEL_SIZE);
+         }
+      }
+   }
+}
@@ -3,7 +3,9 @@
  */
 package mv.robotics.sign;
 
+import mv.robotics.sign.kernels.PixelKernels;
 import mv.robotics.sign.msg.Msg;
+import mv.robotics.sign.msg.util.MsgBuffer;
 
 /**
  * Message that contains image data for the display.
@@ -14,34 +16,47 @@ import mv.robotics.sign.msg.Msg;
 public class ImageDataMsg extends Msg
 {
    private int[] pixels;               /* image data */
+   private int offset;                 /* first pixel to send */
+   private int length;                 /* number of pixels to send */
    
    public ImageDataMsg(int[] pixels)
+   {
+      this(pixels,0,pixels.length);
+   }
+   
+   /**
+    * Create a message for a slice of the image data.  Pixel data is
+    * stacked in horizontal rows so a slice is a band of whole rows when
+    * the offset and length are multiples of the row width.
+    * 
+    * @param pixels   image data
+    * @param offset   first pixel to send
+    * @param length   number of pixels to send
+    */
+   public ImageDataMsg(int[] pixels,int offset,int length)
    {
       this.pixels = pixels;
+      this.offset = offset;
+      this.length = length;
    }
 
    @Override
    public byte[] toBytes()
    {
-      /* convert the pixel data to an array of bytes to send over usb to the teensy board */
-      /* we send three bytes (r,g,b) per pixel so allocate an array large enough to hold */
-      /* all the pixel data */
-      byte[] bytes = new byte[pixels.length*3];
-      
-      /* process each pixel and copy the r,g,b values into the byte array */
-      for(int i=0;i<pixels.length;i++)
-      {
-         /* offset into the byte array... three bytes per pixel so jump by three */
-         int offset = i*3;
-         
-         /* grab the next pixel */
-         int pixel = pixels[i];
-         
-         /* a pixel is 32bits in this ARGB format so pull the 8bit values out */
-         bytes[offset] = (byte)(pixel >> 16);
-         bytes[offset+1] = (byte)(pixel >> 8);
-         bytes[offset+2] = (byte)(pixel >> 0);
-      }
-      return(bytes);
+      /* we send three bytes (r,g,b) per pixel */
+      MsgBuffer buf = new MsgBuffer(length*3);
+      writeTo(buf);
+      return(buf.toByteArray());
+   }
+   
+   @Override
+   public void writeTo(MsgBuffer buf)
+   {
+      /* convert the ARGB pixel data to packed r,g,b bytes to send over */
+      /* usb to the teensy board */
+      int pos = buf.position();
+      buf.ensure(length*3);
+      PixelKernels.get().packRgb(pixels,offset,length,buf.view(),pos);
+      buf.position(pos + length*3);
    }
 }
@@ -3,14 +3,36 @@
  */
 package mv.robotics.sign;
 
-import java.awt.FlowLayout;
-
-import javax.swing.JFrame;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 
 import mv.robotics.sign.animations.Animation;
+import mv.robotics.sign.animations.AnimationTimer;
+import mv.robotics.sign.animations.AudioAnimation;
 import mv.robotics.sign.animations.EmojiAnimation;
+import mv.robotics.sign.animations.FireworksAnimation;
+import mv.robotics.sign.animations.ImagePlayerAnimation;
+import mv.robotics.sign.animations.InterpolatedAnimation;
+import mv.robotics.sign.animations.SystemClock;
+import mv.robotics.sign.audio.AudioAnalyzer;
+import mv.robotics.sign.audio.AudioInput;
+import mv.robotics.sign.capture.FrameRecorder;
+import mv.robotics.sign.capture.MsgReplayTransport;
+import mv.robotics.sign.capture.OfflineRenderer;
+import mv.robotics.sign.metrics.Metrics;
 import mv.robotics.sign.msg.MsgService;
+import mv.robotics.sign.msg.MsgTransport;
+import mv.robotics.sign.msg.net.MsgRelay;
+import mv.robotics.sign.msg.net.MsgTcpServer;
+import mv.robotics.sign.msg.net.MsgTcpTransport;
+import mv.robotics.sign.msg.net.MsgUdpTransport;
 import mv.robotics.sign.msg.serial.MsgSerialTransport;
+import mv.robotics.sign.msg.tty.MsgTtyTransport;
+import mv.robotics.sign.pipeline.ColorCorrector;
+import mv.robotics.sign.pipeline.FrameFilter;
+import mv.robotics.sign.pipeline.FrameScheduler;
+import mv.robotics.sign.pipeline.PowerLimiter;
 
 /**
  * Main entry point for the sign app.
@@ -22,14 +44,81 @@ public class SignApp
 {
    private MsgService msgService;  /* used to communicate with the teensy */
    private Display display;        /* the display to send pixels to */
-   private JFrame frame;           /* the ui frame to show the display */
+   private boolean preview;        /* true to show the display on screen */
    private Animation animation;    /* the active animation */
+   private FrameScheduler scheduler;  /* paces the render loop */
+   private FrameRecorder recorder; /* capture log or null */
+   
+   /* how often to dump metrics to the console */
+   static private final long METRICS_INTERVAL = 60000;
+   
+   /* the usb serial device for the teensy board */
+   static private final String DEVICE = "/dev/ttyACM0";
+   
+   /* serial baud rate, ignored by usb cdc devices like the teensy but */
+   /* it matters for real uarts */
+   static private final int BAUD = 115200;
+   
+   /* the frame rate we'd like, the links may hold us to less */
+   static private final int TARGET_FPS = 33;
+   
+   /* number of frames the offline renderer makes by default */
+   static private final int RENDER_FRAMES = 1000;
+   
+   /* default port for the relay */
+   static private final int RELAY_PORT = 7300;
+   
+   /* connection types we advertise */
+   static private final int CONN_TYPE_BOARD = 0;
+   static private final int CONN_TYPE_RELAY = 1;
    
    private SignApp(String[] args)
    {
+      /* the sign itself has no use for a screen, so unless there's a */
+      /* preview to show keep awt from loading any of its ui */
+      preview = wantPreview();
+      if(!preview)
+         System.setProperty("java.awt.headless","true");
+      
+      /* run as a relay next to the sign instead of rendering */
+      if((args.length > 0) && args[0].equals("relay"))
+      {
+         startRelay(null);
+         return;
+      }
+      
+      /* play a capture log to the board */
+      if((args.length > 1) && args[0].equals("replay"))
+      {
+         double speed = (args.length > 2) ? Double.parseDouble(args[2]) : 1;
+         startRelay(new MsgReplayTransport(Paths.get(args[1]),speed,Boolean.getBoolean("sign.loop")));
+         return;
+      }
+      
+      /* render to a capture log without a display or board */
+      if((args.length > 1) && args[0].equals("render"))
+      {
+         int frames = (args.length > 2) ? Integer.parseInt(args[2]) : RENDER_FRAMES;
+         renderOffline(Paths.get(args[1]),frames);
+         return;
+      }
+      
+      /* publish metrics over jmx and dump them to the console periodically */
+      Metrics.registerMBean();
+      Metrics.startReporter(METRICS_INTERVAL);
+      
       /* create a display to send the pixels to */
       display = new Display();
       
+      /* setup the output pipeline */
+      for(FrameFilter filter : createFilters())
+         display.addFilter(filter);
+      
+      /* record the frames with -Dsign.record=file */
+      String record = System.getProperty("sign.record");
+      if(record != null)
+         startRecording(Paths.get(record));
+      
       /* create the message service */
       msgService = new MsgService();
       
@@ -37,21 +126,219 @@ public class SignApp
       /* the physical display connects and disconnects */
       msgService.addListener(display);
       
-      /* add a transport for the usb port so we can talk to the teensy board on the display*/
-      msgService.addTransport(new MsgSerialTransport("/dev/ttyACM0",115200),0);
+      /* add a transport for the usb port so we can talk to the teensy board on the display, */
+      /* or to a relay in front of it when rendering remotely */
+      msgService.addTransport(createTransport(),CONN_TYPE_BOARD);
 
-      /* the ui code to show the simulated display */
-      frame = new JFrame();
-      frame.getContentPane().setLayout(new FlowLayout());
-      frame.getContentPane().add(display);
-      frame.pack();
-      frame.setResizable(false);
-      frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
-      frame.setAlwaysOnTop(true);
-      frame.setVisible(true);
-      
       /* setup an animation */
-      animation = new EmojiAnimation();
+      animation = createAnimation();
+      
+      /* pace frames to what the links can carry */
+      scheduler = new FrameScheduler(TARGET_FPS);
+   }
+   
+   /**
+    * Return true if the display can be shown on screen.  It's off when
+    * running headless, when there's no x display to show it on, or with
+    * -Dsign.preview=false.
+    */
+   static private boolean wantPreview()
+   {
+      if(!Boolean.parseBoolean(System.getProperty("sign.preview","true")))
+         return(false);
+      if(Boolean.getBoolean("java.awt.headless"))
+         return(false);
+      return(!System.getProperty("os.name").startsWith("Linux") || (System.getenv("DISPLAY") != null));
+   }
+   
+   /**
+    * Create the animation to run, see pickAnimation().  With
+    * -Dsign.interpolate=fps it runs at that rate and the frames in between
+    * are made up, blended or with -Dsign.interpolateMode=shift motion
+    * compensated for scrolling content.
+    */
+   private Animation createAnimation()
+   {
+      Animation anim = pickAnimation();
+      int fps = Integer.getInteger("sign.interpolate",0);
+      if(fps <= 0)
+         return(anim);
+      
+      String mode = System.getProperty("sign.interpolateMode","blend");
+      return(new InterpolatedAnimation(anim,fps,mode.equals("shift") ?
+         InterpolatedAnimation.Mode.SHIFT : InterpolatedAnimation.Mode.BLEND));
+   }
+   
+   /**
+    * Pick the animation to run with -Dsign.animation=emoji, fireworks,
+    * audio or player.  The audio animation listens to the default capture
+    * line, or plays a WAV file given with -Dsign.audio.  The player plays
+    * the GIF or directory of PNG images given with -Dsign.media.
+    */
+   private Animation pickAnimation()
+   {
+      String name = System.getProperty("sign.animation","emoji");
+      if(name.equals("fireworks"))
+         return(new FireworksAnimation());
+      if(name.equals("audio"))
+      {
+         String file = System.getProperty("sign.audio");
+         try {
+            AudioInput input = (file != null) ? AudioInput.fromFile(Paths.get(file),true) :
+               AudioInput.fromLine(AudioInput.SAMPLE_RATE);
+            return(new AudioAnimation(new AudioAnalyzer(input)));
+         } catch(Exception ex) {
+            System.out.println("no audio input, falling back to emoji: "+ex);
+         }
+      }
+      if(name.equals("player") && (System.getProperty("sign.media") != null))
+         return(new ImagePlayerAnimation(Paths.get(System.getProperty("sign.media"))));
+      return(new EmojiAnimation());
+   }
+   
+   /**
+    * Create the output pipeline stages.
+    */
+   private FrameFilter[] createFilters()
+   {
+      /* correct the colors sent to the leds so dark tones aren't crushed */
+      ColorCorrector corrector = new ColorCorrector(2.2f);
+      corrector.setWhiteBalance(0xFFB0F0);
+      corrector.setDither(true);
+      
+      /* keep the frames under the firmware power limit (MAX_MILLIAMPS) */
+      /* so the board never has to throttle them itself */
+      return(new FrameFilter[] { corrector, new PowerLimiter(2800) });
+   }
+   
+   /**
+    * Record the frames sent to the display until the app exits.
+    */
+   private void startRecording(Path path)
+   {
+      try {
+         recorder = new FrameRecorder(path,Display.WIDTH,Display.HEIGHT);
+      } catch(IOException ex) {
+         System.out.println("can't record to "+path+": "+ex);
+         return;
+      }
+      display.setRecorder(recorder);
+      
+      /* the window closing exits the app, flush the log on the way out */
+      Runtime.getRuntime().addShutdownHook(new Thread() {
+         public void run() {
+            stopRecording();
+         }
+      });
+      System.out.println("recording to "+path);
+   }
+   
+   /**
+    * Close the capture log if recording.
+    */
+   private void stopRecording()
+   {
+      if(recorder == null)
+         return;
+      
+      display.setRecorder(null);
+      try {
+         recorder.close();
+      } catch(IOException ex) {
+         ex.printStackTrace();
+      }
+   }
+   
+   /**
+    * Render the animation to a capture log as fast as possible.  This
+    * doesn't need a screen so it runs headless.
+    */
+   private void renderOffline(Path path,int frames)
+   {
+      System.setProperty("java.awt.headless","true");
+      
+      OfflineRenderer renderer = new OfflineRenderer(TARGET_FPS);
+      for(FrameFilter filter : createFilters())
+         renderer.addFilter(filter);
+      
+      try {
+         long time = renderer.render(createAnimation(),frames,path);
+         System.out.println("rendered "+frames+" frames to "+path+" in "+(time/1000000)+"ms");
+      } catch(Exception ex) {
+         ex.printStackTrace();
+      }
+   }
+   
+   /**
+    * Run as a relay that passes frames from remote renderers on to the
+    * board.  Renderers connect over tcp or udp on the relay port, which
+    * can be set with -Dsign.port.  A replay transport plays a capture
+    * log to the board through the relay instead.
+    * 
+    * @param replay   the log to play or null to relay from the network
+    */
+   private void startRelay(MsgReplayTransport replay)
+   {
+      int port = Integer.getInteger("sign.port",RELAY_PORT);
+      
+      Metrics.registerMBean();
+      Metrics.startReporter(METRICS_INTERVAL);
+      
+      /* the board is the only local transport */
+      msgService = new MsgService();
+      msgService.addListener(new MsgRelay(CONN_TYPE_BOARD,Display.MSG_TYPE_IMAGE_DATA));
+      msgService.addTransport(createBoardTransport(),CONN_TYPE_BOARD);
+      
+      if(replay != null)
+      {
+         msgService.addTransport(replay,CONN_TYPE_RELAY);
+         msgService.start();
+         return;
+      }
+      
+      /* renderers can stream frames over udp or use a tcp connection */
+      msgService.addTransport(new MsgUdpTransport(port),CONN_TYPE_RELAY);
+      msgService.start();
+      new MsgTcpServer(msgService,port,CONN_TYPE_RELAY).start();
+      
+      System.out.println("relaying on port "+port);
+   }
+   
+   /**
+    * Create the transport used to reach the board.  Setting
+    * -Dsign.transport=tcp or udp along with -Dsign.host (and optionally
+    * -Dsign.port) renders remotely through a relay, anything else talks
+    * to the board directly.
+    */
+   private MsgTransport createTransport()
+   {
+      String type = System.getProperty("sign.transport","");
+      String host = System.getProperty("sign.host","localhost");
+      int port = Integer.getInteger("sign.port",RELAY_PORT);
+      
+      if(type.equals("tcp"))
+         return(new MsgTcpTransport(host,port));
+      if(type.equals("udp"))
+         return(new MsgUdpTransport(host,port));
+      return(createBoardTransport());
+   }
+   
+   /**
+    * Create the transport for the usb port.  On linux this uses the pure
+    * java tty transport unless -Dsign.transport=rxtx is given, other
+    * platforms always use rxtx.  The baud rate can be set with
+    * -Dsign.baud for boards on a real uart.
+    */
+   private MsgTransport createBoardTransport()
+   {
+      String type = System.getProperty("sign.transport");
+      if((type == null) || type.equals("tcp") || type.equals("udp"))
+         type = System.getProperty("os.name").startsWith("Linux") ? "tty" : "rxtx";
+      int baud = Integer.getInteger("sign.baud",BAUD);
+      
+      if(type.equals("tty"))
+         return(new MsgTtyTransport(DEVICE,baud));
+      return(new MsgSerialTransport(DEVICE,baud));
    }
    
    /**
@@ -59,6 +346,10 @@ public class SignApp
     */
    private void start()
    {
+      /* the relay runs on the service threads */
+      if(display == null)
+         return;
+      
       /* start the message service */
       msgService.start();
 
@@ -66,18 +357,27 @@ public class SignApp
       /* something like timeline logic that allows multiple animations */
       /* to be queued and stacked in layers, etc... */
       try {
+         AnimationTimer timer = new AnimationTimer(new SystemClock());
          animation.start();
          
          for(int i=0;i<100000;i++)
          {
-            display.render(animation.tick());
-            Thread.sleep(30);            
+            display.render(timer.tick(animation));
+            
+            /* the preview waits for the first frame so awt starting */
+            /* up doesn't hold it back, -Dsign.previewFps sets its rate */
+            if((i == 0) && preview)
+               DisplayView.show(display,Integer.getInteger("sign.previewFps",DisplayView.PREVIEW_FPS));
+            
+            scheduler.setLinkTime(display.getSender().getSlowestFrameNanos());
+            scheduler.await();
          }
          
          animation.stop();
       } catch(Exception ex) {
          ex.printStackTrace();
       }
+      stopRecording();
    }
    
    /**
@@ -16,6 +16,11 @@ import java.awt.image.BufferedImage;
  * to display.  The tick() method will be called every 30ms while the animation
  * is active.
  * 
+ * Frames aren't always on time though, sending to the hardware can hold
+ * them up and offline rendering runs faster than real time.  So tick() is
+ * passed the time of the frame and the time that really passed since the
+ * last one, and animations that move should move by that delta.
+ * 
  * @author David Vogt (david@kondra.com)
  * @version Dec-29-21
  */
@@ -43,11 +48,12 @@ abstract public class Animation
    }
    
    /**
-    * Called for every tick of animation.  Returns a BufferedImage that
-    * contains the content to render.  This will be merged with other
-    * animation images to yield a final composite image for display.
-    * Alpha channel data is used during the composite phase so this
-    * can be used to support transparency, masks, etc...
+    * Called for every tick of animation with the time of the frame, see
+    * AnimationTimer.  Returns a BufferedImage that contains the content to
+    * render.  This will be merged with other animation images to yield a
+    * final composite image for display.  Alpha channel data is used during
+    * the composite phase so this can be used to support transparency,
+    * masks, etc...
     * 
     * The returned image should be the size of the display.  If not, a
     * sub-image will be generated from the origin.  If the image is smaller
@@ -58,7 +64,13 @@ abstract public class Animation
     * then simply return a view into that complex image without needing
     * to re-render it over and over.
     * 
+    * The time is 0 on the first tick after start() and counts up from
+    * there, the delta is the time since the last tick and 0 on the first
+    * one.
+    * 
+    * @param time    ns since the first tick
+    * @param delta   ns since the last tick
     * @return   the image to composite into a final frame for the display
     */
-   abstract public BufferedImage tick();
+   abstract public BufferedImage tick(long time,long delta);
 }
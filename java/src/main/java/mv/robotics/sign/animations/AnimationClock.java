@@ -0,0 +1,22 @@
+/**
+ * (C) Copyright 2026, David Vogt, All rights reserved.
+ */
+package mv.robotics.sign.animations;
+
+/**
+ * Where animations get their time from.  Live rendering runs off the
+ * system clock, offline rendering and tests step a manual clock by exactly
+ * a frame at a time so the result doesn't depend on how fast the frames
+ * are produced.
+ *
+ * @author David Vogt (david@kondra.com)
+ * @version Oct-18-26
+ */
+public interface AnimationClock
+{
+   /**
+    * Return the time in ns.  It never goes backward and only differences
+    * between readings mean anything.
+    */
+   public long nanoTime();
+}
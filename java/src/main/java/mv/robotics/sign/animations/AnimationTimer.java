@@ -0,0 +1,95 @@
+/**
+ * (C) Copyright 2026, David Vogt, All rights reserved.
+ */
+package mv.robotics.sign.animations;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * Ticks an animation with the time from a clock.  The first tick after a
+ * reset is at time 0 with no delta, after that the time is how long ago
+ * the first tick was and the delta is how long since the last one.  The
+ * delta is whatever really passed, so an animation that moves by its
+ * delta keeps its speed when frames are late or dropped.  Gaps longer
+ * than MAX_DELTA, like a debugger stop, are cut short so nothing jumps
+ * half way across the display.
+ *
+ * @author David Vogt (david@kondra.com)
+ * @version Oct-18-26
+ */
+public class AnimationTimer
+{
+   /* longest step an animation is asked to take in ns */
+   static public final long MAX_DELTA = 1000000000L;
+
+   private AnimationClock clock;      /* where the time comes from */
+   private boolean started;           /* false until the first tick */
+   private long lastClock;            /* clock reading at the last tick */
+   private long time;                 /* animation time of the last tick */
+   private long delta;                /* delta of the last tick */
+
+   /**
+    * Create a timer.
+    *
+    * @param clock   where the time comes from
+    */
+   public AnimationTimer(AnimationClock clock)
+   {
+      this.clock = clock;
+   }
+
+   /**
+    * Return the clock the time comes from.
+    */
+   public AnimationClock getClock()
+   {
+      return(clock);
+   }
+
+   /**
+    * Return the animation time of the last tick in ns.
+    */
+   public long getTime()
+   {
+      return(time);
+   }
+
+   /**
+    * Return the delta of the last tick in ns.
+    */
+   public long getDelta()
+   {
+      return(delta);
+   }
+
+   /**
+    * Start the time over at 0 on the next tick, done when an animation is
+    * started.
+    */
+   public void reset()
+   {
+      started = false;
+      time = 0;
+      delta = 0;
+   }
+
+   /**
+    * Tick an animation at the current time.
+    *
+    * @param animation   the animation
+    * @return the animation's image
+    */
+   public BufferedImage tick(Animation animation)
+   {
+      long now = clock.nanoTime();
+      if(!started)
+      {
+         started = true;
+         lastClock = now;
+      }
+      delta = Math.min(now - lastClock,MAX_DELTA);
+      lastClock = now;
+      time += delta;
+      return(animation.tick(time,delta));
+   }
+}
@@ -0,0 +1,105 @@
+/**
+ * (C) Copyright 2026, David Vogt, All rights reserved.
+ */
+package mv.robotics.sign.animations;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+
+import mv.robotics.sign.Display;
+import mv.robotics.sign.audio.AudioAnalyzer;
+import mv.robotics.sign.audio.AudioBands;
+
+/**
+ * Spectrum bars that pulse to the music.  Each column shows the level of
+ * a band, low frequencies on the left, colored from green through yellow
+ * to red by height, with the background glowing with the bass.  Bars jump
+ * up with the music and fall back slowly so beats are easy to see.
+ *
+ * The animation starts and stops the analyzer with itself.
+ *
+ * @author David Vogt (david@kondra.com)
+ * @version Oct-18-26
+ */
+public class AudioAnimation extends Animation
+{
+   /* fraction of its height a bar falls per second */
+   static private final float FALL = 2.7f;
+
+   /* brightness of the bass glow at full level */
+   static private final int GLOW = 48;
+
+   private AudioAnalyzer analyzer;    /* band levels */
+   private BufferedImage image;       /* the frame */
+   private int[] pixels;              /* the frame's pixel data */
+   private float[] bars;              /* smoothed height of each column 0..1 */
+   private int[] colors;              /* bar color of each row, bottom up */
+
+   /**
+    * Create an animation.
+    *
+    * @param analyzer   the analyzer to show
+    */
+   public AudioAnimation(AudioAnalyzer analyzer)
+   {
+      this.analyzer = analyzer;
+   }
+
+   @Override
+   public void start() throws Exception
+   {
+      image = new BufferedImage(Display.WIDTH,Display.HEIGHT,BufferedImage.TYPE_INT_RGB);
+      pixels = ((DataBufferInt)image.getRaster().getDataBuffer()).getData();
+      bars = new float[Display.WIDTH];
+
+      /* green at the bottom through yellow to red at the top */
+      colors = new int[Display.HEIGHT];
+      for(int row=0;row<Display.HEIGHT;row++)
+      {
+         float t = row / (float)(Display.HEIGHT-1);
+         int r = (int)(255 * Math.min(1.0f,t*2));
+         int g = (int)(255 * Math.min(1.0f,(1-t)*2));
+         colors[row] = (r << 16) | (g << 8);
+      }
+
+      analyzer.start();
+   }
+
+   @Override
+   public void stop()
+   {
+      analyzer.stop();
+      image = null;
+      pixels = null;
+   }
+
+   @Override
+   public BufferedImage tick(long time,long delta)
+   {
+      AudioBands bands = analyzer.getBands();
+      int count = bands.getBandCount();
+      float fall = FALL * (delta / 1000000000.0f);
+
+      /* columns are spread evenly over the bands, bars jump up and fall slowly */
+      for(int x=0;x<Display.WIDTH;x++)
+      {
+         float level = bands.getLevel((x * count) / Display.WIDTH);
+         bars[x] = Math.max(level,bars[x] - fall);
+      }
+
+      /* the bass glows in the background */
+      int glow = (int)(bands.getLevel(0) * bands.getLevel(0) * GLOW);
+      int background = (glow << 16) | (glow/4);
+
+      for(int x=0;x<Display.WIDTH;x++)
+      {
+         int height = Math.round(bars[x] * Display.HEIGHT);
+         for(int row=0;row<Display.HEIGHT;row++)
+         {
+            int y = Display.HEIGHT - 1 - row;
+            pixels[(y*Display.WIDTH)+x] = (row < height) ? colors[row] : background;
+         }
+      }
+      return(image);
+   }
+}
@@ -4,27 +4,46 @@
 package mv.robotics.sign.animations;
 
 import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
 import java.util.Random;
 
 import javax.imageio.ImageIO;
 
 import mv.robotics.sign.Display;
+import mv.robotics.sign.kernels.Resampler;
+import mv.robotics.sign.kernels.ScaledImageCache;
+import mv.robotics.sign.kernels.Viewport;
 
 /**
  * Simple animation that loads an emoji image and scrolls a view portal
- * around the image.
+ * around the image.  The image is scaled down so the view shows a good
+ * part of it rather than a few pixels of the full resolution original,
+ * and the view moves by fractions of a pixel so the scrolling is smooth.
  * 
  * @author David Vogt (david@kondra.com)
  * @version Dec-29-21
  */
 public class EmojiAnimation extends Animation
 {
-   private BufferedImage image;   /* the emoji image */
+   /* top scroll speed in pixels per second */
+   static private final double MAX_SPEED = 8.0;
+   
+   /* image height as a multiple of the display height */
+   static private final int ZOOM = 2;
+   
+   /* scaled images kept, a few times the display */
+   static private final ScaledImageCache cache = new ScaledImageCache(Display.WIDTH*Display.HEIGHT*ZOOM*ZOOM*4);
+   
+   private BufferedImage source;  /* the full size emoji image */
+   private BufferedImage image;   /* the scaled emoji image */
+   private Viewport view;         /* samples the view out of the image */
+   private BufferedImage frame;   /* the view */
+   private int[] pixels;          /* the view's pixel data */
    private Random random;         /* random number generator */
-   private double dx;             /* delta X value for scrolling */
-   private double dy;             /* delta Y value for scrolling */
-   private double x;              /* current X position of the view */
-   private double y;              /* current Y position of the view */
+   private double dx;             /* X scroll speed in pixels per second */
+   private double dy;             /* Y scroll speed in pixels per second */
+   private double x;              /* X position of the view before bouncing */
+   private double y;              /* Y position of the view before bouncing */
    
    {
       /* allocate a random number generator */
@@ -34,57 +53,68 @@ public class EmojiAnimation extends Animation
    @Override
    public void start() throws Exception
    {
-      /* load the image */
-      image = ImageIO.read(getClass().getResourceAsStream("/emoji.jpg"));
+      /* load the image once, scaling comes from the cache after that */
+      if(source == null)
+         source = ImageIO.read(getClass().getResourceAsStream("/emoji.jpg"));
+      
+      /* scale it to ZOOM times the display height, at least as wide as the display */
+      int height = Display.HEIGHT*ZOOM;
+      int width = Math.max((source.getWidth()*height) / source.getHeight(),Display.WIDTH);
+      image = cache.get(source,width,height,Resampler.Filter.LANCZOS);
+      view = new Viewport(Display.WIDTH,Display.HEIGHT,cache);
+      view.setSource(image);
+      frame = new BufferedImage(Display.WIDTH,Display.HEIGHT,BufferedImage.TYPE_INT_ARGB);
+      pixels = ((DataBufferInt)frame.getRaster().getDataBuffer()).getData();
       
       /* pick random scroll values */
-      dx = random.nextDouble();
-      dy = random.nextDouble();
+      dx = random.nextDouble() * MAX_SPEED;
+      dy = random.nextDouble() * MAX_SPEED;
    }
    
    @Override
    public void stop()
    {
-      /* release the image */
+      /* release the scaled image */
       image = null;
+      view = null;
+      frame = null;
+      pixels = null;
    }
    
    @Override
-   public BufferedImage tick()
+   public BufferedImage tick(long time,long delta)
    {
-      /* move the view */
-      x += dx;
-      y += dy;
-      
-      /* check if left side of the view is outside of the image */
-      if(x <= 0)
-      {
-         x = 0;
-         dx = -dx;
-      }
+      /* move the view by however long it's been */
+      double seconds = delta / 1000000000.0;
+      x += dx * seconds;
+      y += dy * seconds;
       
-      /* check if right side of the view is outside of the image */
-      if((x+Display.WIDTH) >= image.getWidth())
-      {
-         x = image.getWidth() - Display.WIDTH;
-         dx = -dx;
-      }
+      /* bounce off the sides of the image, folding the distance moved */
+      /* back in so the path doesn't depend on the frame rate */
+      double left = bounce(x,image.getWidth() - Display.WIDTH);
+      double top = bounce(y,image.getHeight() - Display.HEIGHT);
       
-      /* check if the top of the view is outside of the image */
-      if(y <= 0)
-      {
-         y = 0;
-         dy = -dy;
-      }
-      
-      /* check if the bottom of the view is outside of the image */
-      if((y+Display.HEIGHT) >= image.getHeight())
-      {
-         y = image.getHeight() - Display.HEIGHT;
-         dy = -dy;
-      }
-      
-      /* return the view of the image */
-      return(image.getSubimage((int)x,(int)y,Display.WIDTH,Display.HEIGHT));
+      /* sample the view of the image at its exact position */
+      view.setCenter(left+(Display.WIDTH/2.0),top+(Display.HEIGHT/2.0));
+      view.render(pixels,0,Display.WIDTH);
+      return(frame);
+   }
+   
+   /**
+    * Return where a view moving along a line ends up bouncing back and
+    * forth between 0 and max.  Every bounce reflects the overshoot, so a
+    * long step lands where a series of short ones would.
+    * 
+    * @param pos   distance travelled from 0 ignoring the bounces
+    * @param max   largest position
+    */
+   static private double bounce(double pos,double max)
+   {
+      if(max <= 0)
+         return(0);
+      double p = pos % (2*max);
+      if(p < 0)
+         p += 2*max;
+      return((p > max) ? ((2*max) - p) : p);
    }
 }
@@ -0,0 +1,151 @@
+/**
+ * (C) Copyright 2026, David Vogt, All rights reserved.
+ */
+package mv.robotics.sign.animations;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Arrays;
+import java.util.Random;
+
+import mv.robotics.sign.Display;
+
+/**
+ * Fireworks.  Shells launch from the bottom of the display trailing
+ * sparks, and burst into a shower of colored particles that fall and fade.
+ * Everything is drawn by a single particle system, the handful of shells
+ * are tracked in arrays like the particles are.
+ *
+ * @author David Vogt (david@kondra.com)
+ * @version Oct-18-26
+ */
+public class FireworksAnimation extends Animation
+{
+   /* max number of particles alive at once */
+   static private final int CAPACITY = 20000;
+
+   /* max number of shells in the air at once */
+   static private final int MAX_SHELLS = 4;
+
+   /* particles per burst */
+   static private final int BURST_SIZE = 600;
+
+   /* burst colors */
+   static private final int[] COLORS = {
+      0xff2020, 0x20ff40, 0x3060ff, 0xffd020, 0xff40ff, 0x40ffff, 0xffffff
+   };
+
+   private BufferedImage image;     /* the frame */
+   private int[] pixels;            /* the frame's pixel data */
+   private ParticleSystem particles;   /* sparks and bursts */
+   private ParticleEmitter trail;   /* sparks behind the shells */
+   private ParticleEmitter burst;   /* shell bursts */
+   private float[] shellX;          /* shell x position */
+   private float[] shellY;          /* shell y position */
+   private float[] shellVy;         /* shell climb speed */
+   private float[] shellFuse;       /* seconds until the shell bursts */
+   private int shells;              /* number of shells in the air */
+   private float nextLaunch;        /* seconds until the next launch */
+   private Random random;           /* random number generator */
+
+   {
+      /* allocate a random number generator */
+      random = new Random();
+   }
+
+   @Override
+   public void start()
+   {
+      image = new BufferedImage(Display.WIDTH,Display.HEIGHT,BufferedImage.TYPE_INT_RGB);
+      pixels = ((DataBufferInt)image.getRaster().getDataBuffer()).getData();
+
+      particles = new ParticleSystem(CAPACITY);
+      particles.addForce(ParticleForce.gravity(0,6.0f));
+      particles.addForce(ParticleForce.drag(1.2f));
+
+      trail = new ParticleEmitter();
+      trail.setRate(60);
+      trail.setDirection((float)(Math.PI/2),0.6f);
+      trail.setSpeed(0.5f,2.0f);
+      trail.setLife(0.15f,0.4f);
+      trail.setColors(0xffa040,0xffe0a0);
+
+      burst = new ParticleEmitter();
+      burst.setSpeed(2.0f,9.0f);
+      burst.setLife(0.8f,1.6f);
+
+      shellX = new float[MAX_SHELLS];
+      shellY = new float[MAX_SHELLS];
+      shellVy = new float[MAX_SHELLS];
+      shellFuse = new float[MAX_SHELLS];
+      shells = 0;
+      nextLaunch = 0;
+   }
+
+   @Override
+   public void stop()
+   {
+      /* release the buffers */
+      image = null;
+      pixels = null;
+      particles = null;
+   }
+
+   @Override
+   public BufferedImage tick(long time,long delta)
+   {
+      float dt = delta / 1000000000.0f;
+      launch(dt);
+
+      /* move the shells, bursting the ones whose fuse ran out */
+      for(int i=0;i<shells;)
+      {
+         shellY[i] += shellVy[i] * dt;
+         shellFuse[i] -= dt;
+
+         if(shellFuse[i] > 0)
+         {
+            trail.setPosition(shellX[i],shellY[i]);
+            trail.update(particles,dt);
+            i++;
+            continue;
+         }
+
+         burst.setPosition(shellX[i],shellY[i]);
+         burst.setColors(COLORS[random.nextInt(COLORS.length)],COLORS[random.nextInt(COLORS.length)]);
+         burst.burst(particles,BURST_SIZE);
+
+         /* the last shell takes the burst one's place */
+         shells--;
+         shellX[i] = shellX[shells];
+         shellY[i] = shellY[shells];
+         shellVy[i] = shellVy[shells];
+         shellFuse[i] = shellFuse[shells];
+      }
+
+      particles.update(dt);
+
+      /* draw the sparks over black */
+      Arrays.fill(pixels,0);
+      particles.render(pixels,Display.WIDTH,Display.HEIGHT);
+      return(image);
+   }
+
+   /**
+    * Launch a new shell now and then.
+    */
+   private void launch(float dt)
+   {
+      nextLaunch -= dt;
+      if((nextLaunch > 0) || (shells == MAX_SHELLS))
+         return;
+
+      shellX[shells] = 3 + (random.nextFloat() * (Display.WIDTH - 6));
+      shellY[shells] = Display.HEIGHT;
+      shellVy[shells] = -(10 + (random.nextFloat() * 4));
+      shellFuse[shells] = 0.45f + (random.nextFloat() * 0.25f);
+      shells++;
+
+      nextLaunch = 0.4f + (random.nextFloat() * 1.2f);
+   }
+}
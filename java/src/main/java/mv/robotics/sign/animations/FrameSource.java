@@ -0,0 +1,41 @@
+/**
+ * (C) Copyright 2026, David Vogt, All rights reserved.
+ */
+package mv.robotics.sign.animations;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+
+/**
+ * A source of decoded frames for ImagePlayerAnimation.  Frames are full
+ * size, fully composited images which the player reduces to the display
+ * size as they're queued.
+ *
+ * @author David Vogt (david@kondra.com)
+ * @version Oct-18-26
+ */
+abstract public class FrameSource
+{
+   /**
+    * Open the source positioned before the first frame.  Called again
+    * after close() to play the source from the start.
+    */
+   abstract public void open() throws IOException;
+
+   /**
+    * Decode the next frame.  The image may be reused by the next call.
+    *
+    * @return the frame or null at the end of the source
+    */
+   abstract public BufferedImage next() throws IOException;
+
+   /**
+    * Return how long to show the frame last returned by next(), in ms.
+    */
+   abstract public int getDelay();
+
+   /**
+    * Release the source.
+    */
+   abstract public void close();
+}
@@ -0,0 +1,198 @@
+/**
+ * (C) Copyright 2026, David Vogt, All rights reserved.
+ */
+package mv.robotics.sign.animations;
+
+import java.awt.AlphaComposite;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Iterator;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.metadata.IIOMetadata;
+import javax.imageio.stream.FileImageInputStream;
+
+import org.w3c.dom.Node;
+
+/**
+ * Frames of an animated GIF.  GIF frames are often just the part of the
+ * image that changed, so each one is drawn onto a canvas the size of the
+ * whole animation after the previous frame is disposed of the way its
+ * metadata asks: left in place, cleared to transparent or restored to
+ * what was there before it.
+ *
+ * @author David Vogt (david@kondra.com)
+ * @version Oct-18-26
+ */
+public class GifFrameSource extends FrameSource
+{
+   /* metadata formats */
+   static private final String STREAM_FORMAT = "javax_imageio_gif_stream_1.0";
+   static private final String IMAGE_FORMAT = "javax_imageio_gif_image_1.0";
+
+   /* delay used for frames with none, browsers do the same */
+   static private final int DEFAULT_DELAY = 100;
+
+   /* delays shorter than this are treated as no delay */
+   static private final int MIN_DELAY = 20;
+
+   private Path path;                 /* the file */
+   private FileImageInputStream in;   /* the open file */
+   private ImageReader reader;        /* gif decoder */
+   private BufferedImage canvas;      /* the composited frame */
+   private BufferedImage previous;    /* canvas before a frame that restores it */
+   private int index;                 /* next frame to read */
+   private int delay;                 /* delay of the last frame in ms */
+   private String disposal;           /* disposal of the last frame */
+   private int lastX;                 /* area of the last frame */
+   private int lastY;
+   private int lastWidth;
+   private int lastHeight;
+
+   /**
+    * Create a source for a GIF file.
+    *
+    * @param path   the file
+    */
+   public GifFrameSource(Path path)
+   {
+      this.path = path;
+   }
+
+   @Override
+   public void open() throws IOException
+   {
+      Iterator<ImageReader> readers = ImageIO.getImageReadersByFormatName("gif");
+      if(!readers.hasNext())
+         throw(new IOException("No GIF decoder"));
+      reader = readers.next();
+      in = new FileImageInputStream(path.toFile());
+      reader.setInput(in,false,false);
+
+      /* the canvas covers the logical screen, or the first frame without one */
+      int width = 0;
+      int height = 0;
+      IIOMetadata stream = reader.getStreamMetadata();
+      Node screen = (stream != null) ? child(stream.getAsTree(STREAM_FORMAT),"LogicalScreenDescriptor") : null;
+      if(screen != null)
+      {
+         width = attr(screen,"logicalScreenWidth",0);
+         height = attr(screen,"logicalScreenHeight",0);
+      }
+      if((width <= 0) || (height <= 0))
+      {
+         width = reader.getWidth(0);
+         height = reader.getHeight(0);
+      }
+      if((canvas == null) || (canvas.getWidth() != width) || (canvas.getHeight() != height))
+      {
+         canvas = new BufferedImage(width,height,BufferedImage.TYPE_INT_ARGB);
+         previous = null;
+      }
+      clear(0,0,width,height);
+
+      index = 0;
+      disposal = "none";
+   }
+
+   @Override
+   public BufferedImage next() throws IOException
+   {
+      BufferedImage frame;
+      try {
+         frame = reader.read(index);
+      } catch(IndexOutOfBoundsException ex) {
+         return(null);
+      }
+      Node meta = reader.getImageMetadata(index).getAsTree(IMAGE_FORMAT);
+      index++;
+
+      /* get rid of the last frame */
+      if(disposal.equals("restoreToBackgroundColor"))
+         clear(lastX,lastY,lastWidth,lastHeight);
+      else if(disposal.equals("restoreToPrevious") && (previous != null))
+         canvas.setData(previous.getRaster());
+
+      Node desc = child(meta,"ImageDescriptor");
+      lastX = attr(desc,"imageLeftPosition",0);
+      lastY = attr(desc,"imageTopPosition",0);
+      lastWidth = attr(desc,"imageWidth",frame.getWidth());
+      lastHeight = attr(desc,"imageHeight",frame.getHeight());
+
+      Node control = child(meta,"GraphicControlExtension");
+      disposal = (control != null) ? control.getAttributes().getNamedItem("disposalMethod").getNodeValue() : "none";
+      delay = (control != null) ? attr(control,"delayTime",0)*10 : 0;
+      if(delay < MIN_DELAY)
+         delay = DEFAULT_DELAY;
+
+      /* remember what the frame covers if it has to be put back */
+      if(disposal.equals("restoreToPrevious"))
+      {
+         if(previous == null)
+            previous = new BufferedImage(canvas.getWidth(),canvas.getHeight(),BufferedImage.TYPE_INT_ARGB);
+         previous.setData(canvas.getRaster());
+      }
+
+      Graphics2D g = canvas.createGraphics();
+      g.drawImage(frame,lastX,lastY,null);
+      g.dispose();
+      return(canvas);
+   }
+
+   @Override
+   public int getDelay()
+   {
+      return(delay);
+   }
+
+   @Override
+   public void close()
+   {
+      if(reader != null)
+         reader.dispose();
+      try {
+         if(in != null)
+            in.close();
+      } catch(IOException ex) {
+         /* nothing more we can do */
+      }
+      reader = null;
+      in = null;
+   }
+
+   /**
+    * Clear an area of the canvas to transparent.
+    */
+   private void clear(int x,int y,int width,int height)
+   {
+      Graphics2D g = canvas.createGraphics();
+      g.setComposite(AlphaComposite.Clear);
+      g.fillRect(x,y,width,height);
+      g.dispose();
+   }
+
+   /**
+    * Find a child node by name.
+    */
+   static private Node child(Node node,String name)
+   {
+      for(Node n=node.getFirstChild();n!=null;n=n.getNextSibling())
+      {
+         if(n.getNodeName().equals(name))
+            return(n);
+      }
+      return(null);
+   }
+
+   /**
+    * Return an integer attribute or the default if it's missing.
+    */
+   static private int attr(Node node,String name,int def)
+   {
+      Node n = (node != null) ? node.getAttributes().getNamedItem(name) : null;
+      return((n != null) ? Integer.parseInt(n.getNodeValue()) : def);
+   }
+}
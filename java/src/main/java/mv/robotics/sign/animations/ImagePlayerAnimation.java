@@ -0,0 +1,259 @@
+/**
+ * (C) Copyright 2026, David Vogt, All rights reserved.
+ */
+package mv.robotics.sign.animations;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ArrayBlockingQueue;
+
+import mv.robotics.sign.Display;
+import mv.robotics.sign.kernels.Resampler;
+import mv.robotics.sign.metrics.Counter;
+import mv.robotics.sign.metrics.Metrics;
+
+/**
+ * Plays an animated GIF or a sequence of images.  A thread decodes ahead
+ * of playback, reduces each frame to the display size and queues it, so
+ * tick() only ever copies a frame that's ready and never waits on the
+ * decoder.  If the decoder falls behind the current frame stays up a
+ * little longer.
+ *
+ * Frames are queued in a fixed pool of display size buffers which are
+ * handed back to the decoder once shown.  The decoder blocks when the pool
+ * is empty, so memory use is the pool plus a couple of source frames no
+ * matter how long the source is.
+ *
+ * @author David Vogt (david@kondra.com)
+ * @version Oct-18-26
+ */
+public class ImagePlayerAnimation extends Animation
+{
+   /* default number of frames decoded ahead */
+   static public final int PREFETCH_FRAMES = 8;
+
+   /* frame rate of image sequences */
+   static public final int SEQUENCE_FPS = 30;
+
+   /* metrics shared by all players */
+   static private final Counter decoded = Metrics.counter("animation.player.decoded");
+   static private final Counter underruns = Metrics.counter("animation.player.underruns");
+
+   /**
+    * A decoded frame reduced to the display size.
+    */
+   static private class Frame
+   {
+      int[] pixels = new int[Display.WIDTH*Display.HEIGHT];
+      int delay;                      /* ms to show the frame */
+   }
+
+   private FrameSource source;        /* where the frames come from */
+   private boolean loop;              /* true to start over at the end */
+   private ArrayBlockingQueue<Frame> free;    /* buffers for the decoder */
+   private ArrayBlockingQueue<Frame> ready;   /* decoded frames in order */
+   private BufferedImage image;       /* the frame being shown */
+   private int[] pixels;              /* the frame's pixel data */
+   private long delay;                /* ns to show the current frame */
+   private long elapsed;              /* ns the current frame has been up */
+   private Resampler resampler;       /* shrinks frames to the display */
+   private int[] crop;                /* the part of the frame shown */
+   private Thread decoder;            /* the decode thread */
+   private volatile boolean running;  /* true while decoding */
+
+   /**
+    * Create a player.
+    *
+    * @param source   the frames to play
+    * @param loop     true to start over at the end, otherwise the last
+    *                 frame stays up
+    * @param frames   number of frames to decode ahead
+    */
+   public ImagePlayerAnimation(FrameSource source,boolean loop,int frames)
+   {
+      this.source = source;
+      this.loop = loop;
+
+      frames = Math.max(frames,2);
+      free = new ArrayBlockingQueue<>(frames);
+      ready = new ArrayBlockingQueue<>(frames);
+      for(int i=0;i<frames;i++)
+         free.add(new Frame());
+   }
+
+   /**
+    * Create a looping player for a GIF file or a directory of PNG images.
+    *
+    * @param path   the file or directory
+    */
+   public ImagePlayerAnimation(Path path)
+   {
+      this(Files.isDirectory(path) ? new ImageSequenceSource(path,SEQUENCE_FPS) :
+         new GifFrameSource(path),true,PREFETCH_FRAMES);
+   }
+
+   @Override
+   public void start() throws Exception
+   {
+      image = new BufferedImage(Display.WIDTH,Display.HEIGHT,BufferedImage.TYPE_INT_RGB);
+      pixels = ((DataBufferInt)image.getRaster().getDataBuffer()).getData();
+      delay = 0;
+      elapsed = 0;
+
+      /* open here so a bad file fails the start */
+      source.open();
+
+      running = true;
+      decoder = new Thread(new Runnable() {
+         public void run() {
+            decodeThread();
+         }
+      },"image-player");
+      decoder.setDaemon(true);
+      decoder.start();
+   }
+
+   @Override
+   public void stop() throws Exception
+   {
+      running = false;
+      if(decoder != null)
+      {
+         decoder.interrupt();
+         decoder.join();
+         decoder = null;
+      }
+
+      /* hand the queued frames back for the next start */
+      Frame frame;
+      while((frame = ready.poll()) != null)
+         free.add(frame);
+      image = null;
+      pixels = null;
+   }
+
+   @Override
+   public BufferedImage tick(long time,long delta)
+   {
+      elapsed += delta;
+
+      /* move on to the frames that are due, skipping any we're late for */
+      Frame shown = null;
+      while(elapsed >= delay)
+      {
+         Frame next = ready.poll();
+         if(next == null)
+         {
+            /* the decoder is behind, hold the current frame */
+            if(delay > 0)
+               underruns.inc();
+            elapsed = delay;
+            break;
+         }
+         if(shown != null)
+            free.offer(shown);
+         elapsed = (delay > 0) ? (elapsed - delay) : 0;
+         delay = next.delay*1000000L;
+         shown = next;
+      }
+
+      /* the frame is copied out so its buffer can go straight back */
+      if(shown != null)
+      {
+         System.arraycopy(shown.pixels,0,pixels,0,pixels.length);
+         free.offer(shown);
+      }
+      return(image);
+   }
+
+   /**
+    * Decodes frames into the free buffers until stopped.
+    */
+   private void decodeThread()
+   {
+      try {
+         boolean any = false;
+         while(running)
+         {
+            BufferedImage img = source.next();
+            if(img == null)
+            {
+               /* an empty source would spin, a finished one stays on its last frame */
+               if(!loop || !any)
+                  return;
+               source.close();
+               source.open();
+               continue;
+            }
+            any = true;
+
+            /* a buffer that never makes it onto ready goes back to the */
+            /* pool, or each interrupted stop() would leave it a frame short */
+            Frame frame = free.take();
+            boolean queued = false;
+            try {
+               reduce(img,frame.pixels);
+               frame.delay = source.getDelay();
+
+               /* ready holds the whole pool so there's always room, and */
+               /* offer() can't be interrupted part way like put() */
+               queued = ready.offer(frame);
+            } finally {
+               if(!queued)
+                  free.offer(frame);
+            }
+            decoded.inc();
+         }
+      } catch(InterruptedException ex) {
+         /* stopped */
+      } catch(IOException ex) {
+         if(running)
+            ex.printStackTrace();
+      } finally {
+         source.close();
+      }
+   }
+
+   /**
+    * Scale a source frame to cover the display, cropping the middle out
+    * of the longer side.  Frames are area averaged which suits shrinking
+    * large images down to the leds.  Transparent areas come out black.
+    */
+   private void reduce(BufferedImage src,int[] dst)
+   {
+      /* the part of the source with the display's aspect ratio */
+      int w = src.getWidth();
+      int h = src.getHeight();
+      if(w*Display.HEIGHT > h*Display.WIDTH)
+         w = Math.max((h*Display.WIDTH) / Display.HEIGHT,1);
+      else
+         h = Math.max((w*Display.HEIGHT) / Display.WIDTH,1);
+
+      if((resampler == null) || (resampler.getSrcWidth() != w) || (resampler.getSrcHeight() != h))
+      {
+         resampler = new Resampler(w,h,Display.WIDTH,Display.HEIGHT,Resampler.Filter.AREA);
+         crop = new int[w*h];
+      }
+      src.getRGB((src.getWidth()-w)/2,(src.getHeight()-h)/2,w,h,crop,0,w);
+
+      /* premultiply so transparent pixels don't bleed their color */
+      for(int i=0;i<crop.length;i++)
+      {
+         int pixel = crop[i];
+         int a = pixel >>> 24;
+         if(a == 255)
+            continue;
+         int r = (((pixel >> 16) & 0xff) * a + 127) / 255;
+         int g = (((pixel >> 8) & 0xff) * a + 127) / 255;
+         int b = ((pixel & 0xff) * a + 127) / 255;
+         crop[i] = (r << 16) | (g << 8) | b;
+      }
+
+      resampler.resample(crop,0,w,dst,0,Display.WIDTH);
+      for(int i=0;i<dst.length;i++)
+         dst[i] |= 0xff000000;
+   }
+}
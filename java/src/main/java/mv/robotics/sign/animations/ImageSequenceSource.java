@@ -0,0 +1,87 @@
+/**
+ * (C) Copyright 2026, David Vogt, All rights reserved.
+ */
+package mv.robotics.sign.animations;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import javax.imageio.ImageIO;
+
+/**
+ * Frames from a directory of numbered images (frame0001.png,
+ * frame0002.png, ...) played in name order at a fixed frame rate.
+ * Numbers should be zero padded so name order is frame order.
+ *
+ * @author David Vogt (david@kondra.com)
+ * @version Oct-18-26
+ */
+public class ImageSequenceSource extends FrameSource
+{
+   private Path dir;                  /* the directory */
+   private int delay;                 /* ms per frame */
+   private List<Path> files;          /* the frames in order */
+   private int index;                 /* next frame to read */
+
+   /**
+    * Create a source for a directory of PNG images.
+    *
+    * @param dir   the directory
+    * @param fps   frames per second
+    */
+   public ImageSequenceSource(Path dir,int fps)
+   {
+      this.dir = dir;
+      this.delay = 1000 / Math.max(fps,1);
+   }
+
+   @Override
+   public void open() throws IOException
+   {
+      List<Path> list = new ArrayList<>();
+      DirectoryStream<Path> stream = Files.newDirectoryStream(dir,"*.{png,PNG}");
+      try {
+         for(Path p : stream)
+            list.add(p);
+      } finally {
+         stream.close();
+      }
+      Collections.sort(list);
+      if(list.isEmpty())
+         throw(new IOException("No images in "+dir));
+
+      files = list;
+      index = 0;
+   }
+
+   @Override
+   public BufferedImage next() throws IOException
+   {
+      if(index >= files.size())
+         return(null);
+
+      Path file = files.get(index++);
+      BufferedImage img = ImageIO.read(file.toFile());
+      if(img == null)
+         throw(new IOException("Can't decode "+file));
+      return(img);
+   }
+
+   @Override
+   public int getDelay()
+   {
+      return(delay);
+   }
+
+   @Override
+   public void close()
+   {
+      files = null;
+   }
+}
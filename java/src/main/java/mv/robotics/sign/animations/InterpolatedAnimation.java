@@ -0,0 +1,320 @@
+/**
+ * (C) Copyright 2026, David Vogt, All rights reserved.
+ */
+package mv.robotics.sign.animations;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+
+import mv.robotics.sign.Display;
+import mv.robotics.sign.kernels.PixelKernels;
+import mv.robotics.sign.kernels.Viewport;
+import mv.robotics.sign.metrics.Counter;
+import mv.robotics.sign.metrics.Metrics;
+
+/**
+ * Runs an animation at a lower frame rate than the display and makes up
+ * the frames in between, for effects too expensive to render at the full
+ * rate.  The inner animation is rendered one of its frames ahead and each
+ * output frame is made from the inner frames either side of it, so the
+ * output lags the inner animation by one inner frame.
+ *
+ * In between frames are either a straight blend of the two inner frames
+ * or, for scrolling content, motion compensated.  Motion compensation
+ * finds the one shift that best lines the two inner frames up, to a
+ * fraction of a pixel, then slides both frames part of the way along it
+ * and blends them.  Content that scrolls keeps moving smoothly instead of
+ * cross fading from one position to the next.
+ *
+ * @author David Vogt (david@kondra.com)
+ * @version Oct-18-26
+ */
+public class InterpolatedAnimation extends Animation
+{
+   /**
+    * How in between frames are made.
+    */
+   public enum Mode
+   {
+      BLEND,            /* cross fade */
+      SHIFT             /* motion compensated */
+   }
+
+   /* largest motion looked for between inner frames in pixels */
+   static private final int MAX_SHIFT_X = 4;
+   static private final int MAX_SHIFT_Y = 2;
+
+   /* cost of a shift grows by 1/2^SHIFT_PENALTY per squared pixel */
+   static private final int SHIFT_PENALTY = 3;
+
+   /* size of the frames */
+   static private final int SIZE = Display.WIDTH*Display.HEIGHT;
+
+   /* metrics shared by all interpolated animations */
+   static private final Counter innerFrames = Metrics.counter("animation.interpolate.innerFrames");
+
+   private Animation inner;           /* the animation being interpolated */
+   private long period;               /* inner frame period in ns */
+   private Mode mode;                 /* how frames are made */
+   private PixelKernels kernels;      /* for blending */
+   private BufferedImage prevImage;   /* inner frame at prevTime */
+   private BufferedImage nextImage;   /* inner frame at nextTime */
+   private int[] prev;                /* their pixel data */
+   private int[] next;
+   private long prevTime;             /* inner frame times */
+   private long nextTime;
+   private boolean started;           /* false until the first tick */
+   private double shiftX;             /* motion from prev to next in pixels */
+   private double shiftY;
+   private Viewport prevView;         /* prev slid along the motion */
+   private Viewport nextView;         /* next slid back along the motion */
+   private int[] slidPrev;            /* slid frames */
+   private int[] slidNext;
+   private BufferedImage image;       /* the output frame */
+   private int[] pixels;              /* its pixel data */
+
+   /**
+    * Create an interpolated animation.
+    *
+    * @param inner   the animation to run at the lower rate
+    * @param fps     frame rate to run it at
+    * @param mode    how in between frames are made
+    */
+   public InterpolatedAnimation(Animation inner,int fps,Mode mode)
+   {
+      this.inner = inner;
+      this.period = 1000000000L / Math.max(fps,1);
+      this.mode = mode;
+      kernels = PixelKernels.get();
+   }
+
+   /**
+    * Return the animation being interpolated.
+    */
+   public Animation getInner()
+   {
+      return(inner);
+   }
+
+   /**
+    * Return how in between frames are made.
+    */
+   public Mode getMode()
+   {
+      return(mode);
+   }
+
+   @Override
+   public void start() throws Exception
+   {
+      prevImage = frame();
+      nextImage = frame();
+      prev = data(prevImage);
+      next = data(nextImage);
+      image = frame();
+      pixels = data(image);
+
+      if(mode == Mode.SHIFT)
+      {
+         prevView = new Viewport(Display.WIDTH,Display.HEIGHT);
+         nextView = new Viewport(Display.WIDTH,Display.HEIGHT);
+         prevView.setSource(prevImage);
+         nextView.setSource(nextImage);
+         slidPrev = new int[SIZE];
+         slidNext = new int[SIZE];
+      }
+      started = false;
+
+      inner.start();
+   }
+
+   @Override
+   public void stop() throws Exception
+   {
+      inner.stop();
+
+      prevImage = nextImage = image = null;
+      prev = next = pixels = slidPrev = slidNext = null;
+      prevView = nextView = null;
+   }
+
+   @Override
+   public BufferedImage tick(long time,long delta)
+   {
+      if(!started)
+      {
+         started = true;
+         prevTime = time;
+         nextTime = time + period;
+         render(prev,time,0);
+         render(next,nextTime,period);
+         motion();
+      }
+      else if(time >= nextTime)
+      {
+         long skipped = (time - prevTime) / period;
+         if(skipped > 1)
+         {
+            /* more than an inner frame behind, start from where we are */
+            long t = prevTime + (skipped * period);
+            render(prev,t,t - nextTime);
+            prevTime = t;
+         }
+         else
+         {
+            swap();
+            prevTime = nextTime;
+         }
+         nextTime = prevTime + period;
+         render(next,nextTime,period);
+         motion();
+      }
+
+      /* how far from prev to next, 0 to ALPHA_ONE */
+      int alpha = (int)(((time - prevTime) * PixelKernels.ALPHA_ONE) / period);
+      if(alpha == 0)
+         System.arraycopy(prev,0,pixels,0,SIZE);
+      else if((mode == Mode.BLEND) || ((shiftX == 0) && (shiftY == 0)))
+         kernels.blend(prev,next,pixels,0,SIZE,alpha);
+      else
+      {
+         /* prev moves forward along the motion, next comes from behind */
+         double t = alpha / (double)PixelKernels.ALPHA_ONE;
+         double cx = Display.WIDTH / 2.0;
+         double cy = Display.HEIGHT / 2.0;
+         prevView.setCenter(cx - (shiftX * t),cy - (shiftY * t));
+         nextView.setCenter(cx + (shiftX * (1 - t)),cy + (shiftY * (1 - t)));
+         prevView.render(slidPrev,0,Display.WIDTH);
+         nextView.render(slidNext,0,Display.WIDTH);
+         kernels.blend(slidPrev,slidNext,pixels,0,SIZE,alpha);
+      }
+      return(image);
+   }
+
+   /**
+    * Render an inner frame.
+    */
+   private void render(int[] dst,long time,long delta)
+   {
+      BufferedImage img = inner.tick(time,delta);
+      img.getRGB(0,0,Display.WIDTH,Display.HEIGHT,dst,0,Display.WIDTH);
+      innerFrames.inc();
+   }
+
+   /**
+    * Swap the inner frames, the views follow their images.
+    */
+   private void swap()
+   {
+      BufferedImage img = prevImage;
+      prevImage = nextImage;
+      nextImage = img;
+      int[] tmp = prev;
+      prev = next;
+      next = tmp;
+
+      if(mode == Mode.SHIFT)
+      {
+         prevView.setSource(prevImage);
+         nextView.setSource(nextImage);
+      }
+   }
+
+   /**
+    * Find the shift that best maps prev onto next.  Every whole pixel shift
+    * within range is scored by the mean squared difference where the
+    * frames overlap, then the best one is refined to a fraction of a pixel
+    * by fitting a parabola through it and its neighbors.  Longer shifts
+    * are penalized a little so repeating patterns don't alias.
+    */
+   private void motion()
+   {
+      shiftX = 0;
+      shiftY = 0;
+      if(mode != Mode.SHIFT)
+         return;
+
+      int w = 2*MAX_SHIFT_X + 1;
+      long[] score = new long[w*(2*MAX_SHIFT_Y + 1)];
+      for(int dy=-MAX_SHIFT_Y,i=0;dy<=MAX_SHIFT_Y;dy++)
+      {
+         for(int dx=-MAX_SHIFT_X;dx<=MAX_SHIFT_X;dx++,i++)
+            score[i] = difference(dx,dy);
+      }
+
+      /* repeating content lines up at more than one shift, so bigger */
+      /* shifts have to score clearly better to win and ties stand still */
+      int best = MAX_SHIFT_Y*w + MAX_SHIFT_X;
+      long bestCost = score[best];
+      for(int i=0;i<score.length;i++)
+      {
+         int dx = (i % w) - MAX_SHIFT_X;
+         int dy = (i / w) - MAX_SHIFT_Y;
+         long cost = score[i] + ((score[i] * ((dx*dx) + (dy*dy))) >> SHIFT_PENALTY);
+         if(cost < bestCost)
+         {
+            best = i;
+            bestCost = cost;
+         }
+      }
+
+      int bx = (best % w) - MAX_SHIFT_X;
+      int by = (best / w) - MAX_SHIFT_Y;
+      shiftX = bx;
+      shiftY = by;
+      if(Math.abs(bx) < MAX_SHIFT_X)
+         shiftX += vertex(score[best-1],score[best],score[best+1]);
+      if(Math.abs(by) < MAX_SHIFT_Y)
+         shiftY += vertex(score[best-w],score[best],score[best+w]);
+   }
+
+   /**
+    * Return the mean squared difference between prev and next moved by a
+    * shift, scaled up to keep some fraction.
+    */
+   private long difference(int dx,int dy)
+   {
+      long sum = 0;
+      int x0 = Math.max(0,-dx);
+      int x1 = Math.min(Display.WIDTH,Display.WIDTH-dx);
+      int y0 = Math.max(0,-dy);
+      int y1 = Math.min(Display.HEIGHT,Display.HEIGHT-dy);
+      for(int y=y0;y<y1;y++)
+      {
+         int p = (y*Display.WIDTH) + x0;
+         int n = ((y+dy)*Display.WIDTH) + x0 + dx;
+         for(int x=x0;x<x1;x++,p++,n++)
+         {
+            int a = prev[p];
+            int b = next[n];
+            int dr = ((a >> 16) & 0xff) - ((b >> 16) & 0xff);
+            int dg = ((a >> 8) & 0xff) - ((b >> 8) & 0xff);
+            int db = (a & 0xff) - (b & 0xff);
+            sum += (dr*dr) + (dg*dg) + (db*db);
+         }
+      }
+      return((sum << 8) / ((x1-x0)*(y1-y0)));
+   }
+
+   /**
+    * Return the offset of the lowest point of the parabola through three
+    * evenly spaced scores, -0.5 to 0.5 from the middle one.
+    */
+   static private double vertex(long left,long middle,long right)
+   {
+      long curve = left - (2*middle) + right;
+      if(curve <= 0)
+         return(0);
+      return(Math.max(-0.5,Math.min(0.5,(left - right) / (2.0 * curve))));
+   }
+
+   static private BufferedImage frame()
+   {
+      return(new BufferedImage(Display.WIDTH,Display.HEIGHT,BufferedImage.TYPE_INT_ARGB));
+   }
+
+   static private int[] data(BufferedImage img)
+   {
+      return(((DataBufferInt)img.getRaster().getDataBuffer()).getData());
+   }
+}
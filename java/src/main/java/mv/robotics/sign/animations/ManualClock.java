@@ -0,0 +1,43 @@
+/**
+ * (C) Copyright 2026, David Vogt, All rights reserved.
+ */
+package mv.robotics.sign.animations;
+
+/**
+ * A clock that only moves when it's told to.
+ *
+ * @author David Vogt (david@kondra.com)
+ * @version Oct-18-26
+ */
+public class ManualClock implements AnimationClock
+{
+   private long time;                 /* the time in ns */
+
+   @Override
+   public long nanoTime()
+   {
+      return(time);
+   }
+
+   /**
+    * Set the time.
+    *
+    * @param time   the time in ns, not before the current time
+    */
+   public void set(long time)
+   {
+      if(time < this.time)
+         throw(new IllegalArgumentException("Time can't go backward"));
+      this.time = time;
+   }
+
+   /**
+    * Move the time forward.
+    *
+    * @param nanos   ns to add
+    */
+   public void advance(long nanos)
+   {
+      set(time + nanos);
+   }
+}
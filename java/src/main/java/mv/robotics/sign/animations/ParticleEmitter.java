@@ -0,0 +1,179 @@
+/**
+ * (C) Copyright 2026, David Vogt, All rights reserved.
+ */
+package mv.robotics.sign.animations;
+
+/**
+ * Spawns particles into a particle system, either continuously at a
+ * rate or in bursts.  New particles start at the emitter's position and
+ * head off in a random direction within a cone at a random speed, with
+ * a random life and a color picked from a palette.
+ *
+ * @author David Vogt (david@kondra.com)
+ * @version Oct-18-26
+ */
+public class ParticleEmitter
+{
+   private float x;                /* x position */
+   private float y;                /* y position */
+   private float rate;             /* particles per second for update() */
+   private float angle;            /* direction of the cone in radians, 0 = right */
+   private float spread;           /* width of the cone in radians */
+   private float speedMin;         /* min speed in pixels per second */
+   private float speedMax;         /* max speed in pixels per second */
+   private float lifeMin;          /* min life in seconds */
+   private float lifeMax;          /* max life in seconds */
+   private int[] colors;           /* colors to pick from */
+   private float carry;            /* fraction of a particle owed from the last update */
+   private int seed;               /* random number state */
+
+   /**
+    * Create an emitter that sprays white particles in all directions.
+    */
+   public ParticleEmitter()
+   {
+      spread = (float)(2*Math.PI);
+      speedMin = 1;
+      speedMax = 1;
+      lifeMin = 1;
+      lifeMax = 1;
+      colors = new int[] { 0xffffff };
+      seed = (int)System.nanoTime() | 1;
+   }
+
+   /**
+    * Return the x position of the emitter in pixels.
+    */
+   public float getX()
+   {
+      return(x);
+   }
+
+   /**
+    * Return the y position of the emitter in pixels.
+    */
+   public float getY()
+   {
+      return(y);
+   }
+
+   /**
+    * Return the number of particles emitted per second.
+    */
+   public float getRate()
+   {
+      return(rate);
+   }
+
+   /**
+    * Set the number of particles emitted per second.
+    *
+    * @param rate   particles per second
+    */
+   public void setRate(float rate)
+   {
+      this.rate = rate;
+   }
+
+   /**
+    * Move the emitter.
+    *
+    * @param x   x position in pixels
+    * @param y   y position in pixels
+    */
+   public void setPosition(float x,float y)
+   {
+      this.x = x;
+      this.y = y;
+   }
+
+   /**
+    * Set the cone particles are sent off in.  Angles are in radians with
+    * 0 to the right and -PI/2 straight up.
+    *
+    * @param angle    direction of the middle of the cone
+    * @param spread   width of the cone, 2*PI for all directions
+    */
+   public void setDirection(float angle,float spread)
+   {
+      this.angle = angle;
+      this.spread = spread;
+   }
+
+   /**
+    * Set the range of speeds in pixels per second.
+    */
+   public void setSpeed(float min,float max)
+   {
+      this.speedMin = min;
+      this.speedMax = max;
+   }
+
+   /**
+    * Set the range of lifetimes in seconds.
+    */
+   public void setLife(float min,float max)
+   {
+      this.lifeMin = min;
+      this.lifeMax = max;
+   }
+
+   /**
+    * Set the RGB colors new particles are picked from.
+    */
+   public void setColors(int... colors)
+   {
+      this.colors = colors.clone();
+   }
+
+   /**
+    * Spawn the particles due at the emitter's rate.
+    *
+    * @param system   the system to spawn into
+    * @param dt       seconds since the last update
+    */
+   public void update(ParticleSystem system,float dt)
+   {
+      float due = carry + (rate * dt);
+      int n = (int)due;
+      carry = due - n;
+      burst(system,n);
+   }
+
+   /**
+    * Spawn a number of particles at once.
+    *
+    * @param system   the system to spawn into
+    * @param n        the number of particles
+    * @return the number spawned, less than n if the system filled up
+    */
+   public int burst(ParticleSystem system,int n)
+   {
+      int[] palette = colors;
+      for(int i=0;i<n;i++)
+      {
+         float a = angle + ((random() - 0.5f) * spread);
+         float speed = speedMin + (random() * (speedMax - speedMin));
+         float life = lifeMin + (random() * (lifeMax - lifeMin));
+         int rgb = palette[(int)(random() * palette.length) % palette.length];
+
+         if(!system.spawn(x,y,(float)Math.cos(a)*speed,(float)Math.sin(a)*speed,life,rgb))
+            return(i);
+      }
+      return(n);
+   }
+
+   /**
+    * Return a random number from 0 up to 1.  A xorshift is plenty for
+    * particles and much cheaper than java.util.Random in a tight loop.
+    */
+   private float random()
+   {
+      int s = seed;
+      s ^= s << 13;
+      s ^= s >>> 17;
+      s ^= s << 5;
+      seed = s;
+      return((s >>> 8) * (1.0f / (1 << 24)));
+   }
+}
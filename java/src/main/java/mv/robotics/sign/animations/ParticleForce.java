@@ -0,0 +1,67 @@
+/**
+ * (C) Copyright 2026, David Vogt, All rights reserved.
+ */
+package mv.robotics.sign.animations;
+
+/**
+ * A force that changes the velocity of every particle in a system.  A
+ * force works on the whole system at once rather than a particle at a
+ * time so it runs as a tight loop over the velocity arrays.
+ *
+ * @author David Vogt (david@kondra.com)
+ * @version Oct-18-26
+ */
+abstract public class ParticleForce
+{
+   /**
+    * Apply the force for a time step.
+    *
+    * @param system   the particles
+    * @param dt       seconds since the last update
+    */
+   abstract public void apply(ParticleSystem system,float dt);
+
+   /**
+    * Create a constant acceleration such as gravity or wind.
+    *
+    * @param ax   x acceleration in pixels per second squared
+    * @param ay   y acceleration in pixels per second squared, down is positive
+    */
+   static public ParticleForce gravity(final float ax,final float ay)
+   {
+      return(new ParticleForce() {
+         public void apply(ParticleSystem system,float dt) {
+            float dx = ax * dt;
+            float dy = ay * dt;
+            float[] vx = system.getVx();
+            float[] vy = system.getVy();
+            for(int i=0,n=system.getCount();i<n;i++)
+            {
+               vx[i] += dx;
+               vy[i] += dy;
+            }
+         }
+      });
+   }
+
+   /**
+    * Create a drag that slows particles down in proportion to their speed.
+    *
+    * @param k   fraction of the velocity lost per second
+    */
+   static public ParticleForce drag(final float k)
+   {
+      return(new ParticleForce() {
+         public void apply(ParticleSystem system,float dt) {
+            float keep = Math.max(0.0f,1.0f - (k * dt));
+            float[] vx = system.getVx();
+            float[] vy = system.getVy();
+            for(int i=0,n=system.getCount();i<n;i++)
+            {
+               vx[i] *= keep;
+               vy[i] *= keep;
+            }
+         }
+      });
+   }
+}
@@ -0,0 +1,297 @@
+/**
+ * (C) Copyright 2026, David Vogt, All rights reserved.
+ */
+package mv.robotics.sign.animations;
+
+import java.util.Arrays;
+
+/**
+ * A fixed capacity pool of particles for effects like fireworks, sparks
+ * and confetti.  Particles aren't objects, each attribute lives in its
+ * own array (structure of arrays) indexed by particle and the live
+ * particles are always packed at the front.  A particle that dies is
+ * replaced by the last live one, so spawning, updating and rendering
+ * never allocate and the loops run straight down the arrays.
+ *
+ * Positions are in pixels with y pointing down and velocities in pixels
+ * per second.  Particles fade out over their life and are splatted
+ * additively into the frame with bilinear weights, so they move smoothly
+ * between the leds and overlapping particles brighten each other.
+ *
+ * @author David Vogt (david@kondra.com)
+ * @version Oct-18-26
+ */
+public class ParticleSystem
+{
+   /* fractional bits kept when accumulating splats */
+   static private final int ACC_SHIFT = 4;
+
+   /* max accumulated channel value */
+   static private final int ACC_MAX = 255 << ACC_SHIFT;
+
+   private int capacity;              /* max number of particles */
+   private int count;                 /* number of live particles */
+   private float[] x;                 /* x position */
+   private float[] y;                 /* y position */
+   private float[] vx;                /* x velocity */
+   private float[] vy;                /* y velocity */
+   private float[] age;               /* seconds since spawning */
+   private float[] life;              /* seconds until the particle dies */
+   private int[] color;               /* RGB color at full brightness */
+   private ParticleForce[] forces;    /* forces applied every update */
+   private int[] accR;                /* red splat accumulator */
+   private int[] accG;                /* green splat accumulator */
+   private int[] accB;                /* blue splat accumulator */
+
+   /**
+    * Create a particle system.
+    *
+    * @param capacity   max number of live particles
+    */
+   public ParticleSystem(int capacity)
+   {
+      this.capacity = capacity;
+      x = new float[capacity];
+      y = new float[capacity];
+      vx = new float[capacity];
+      vy = new float[capacity];
+      age = new float[capacity];
+      life = new float[capacity];
+      color = new int[capacity];
+      forces = new ParticleForce[0];
+   }
+
+   /**
+    * Return the max number of live particles.
+    */
+   public int getCapacity()
+   {
+      return(capacity);
+   }
+
+   /**
+    * Return the number of live particles.
+    */
+   public int getCount()
+   {
+      return(count);
+   }
+
+   /**
+    * Return the x positions, for forces.  Only the first getCount()
+    * entries are live and the array must not be kept past the call.
+    */
+   public float[] getX()
+   {
+      return(x);
+   }
+
+   /**
+    * Return the y positions, for forces.  Only the first getCount()
+    * entries are live and the array must not be kept past the call.
+    */
+   public float[] getY()
+   {
+      return(y);
+   }
+
+   /**
+    * Return the x velocities, for forces.  Only the first getCount()
+    * entries are live and the array must not be kept past the call.
+    */
+   public float[] getVx()
+   {
+      return(vx);
+   }
+
+   /**
+    * Return the y velocities, for forces.  Only the first getCount()
+    * entries are live and the array must not be kept past the call.
+    */
+   public float[] getVy()
+   {
+      return(vy);
+   }
+
+   /**
+    * Add a force applied to every particle on each update.
+    *
+    * @param force   the force to add
+    */
+   public void addForce(ParticleForce force)
+   {
+      ParticleForce[] list = new ParticleForce[forces.length+1];
+      System.arraycopy(forces,0,list,0,forces.length);
+      list[forces.length] = force;
+      forces = list;
+   }
+
+   /**
+    * Add a particle.
+    *
+    * @param px      x position
+    * @param py      y position
+    * @param pvx     x velocity
+    * @param pvy     y velocity
+    * @param plife   seconds until the particle dies
+    * @param rgb     color at full brightness
+    * @return false if the system is full and the particle wasn't added
+    */
+   public boolean spawn(float px,float py,float pvx,float pvy,float plife,int rgb)
+   {
+      if((count == capacity) || (plife <= 0))
+         return(false);
+
+      int i = count++;
+      x[i] = px;
+      y[i] = py;
+      vx[i] = pvx;
+      vy[i] = pvy;
+      age[i] = 0;
+      life[i] = plife;
+      color[i] = rgb;
+      return(true);
+   }
+
+   /**
+    * Kill all the particles.
+    */
+   public void clear()
+   {
+      count = 0;
+   }
+
+   /**
+    * Advance the particles.  Forces change the velocities first, then the
+    * particles move and age, and the ones that reached the end of their
+    * life are removed.
+    *
+    * @param dt   seconds since the last update
+    */
+   public void update(float dt)
+   {
+      for(ParticleForce force : forces)
+         force.apply(this,dt);
+
+      int n = count;
+      for(int i=0;i<n;i++)
+      {
+         x[i] += vx[i] * dt;
+         y[i] += vy[i] * dt;
+         age[i] += dt;
+      }
+
+      /* compact, moving the last live particle into each dead slot */
+      for(int i=0;i<n;)
+      {
+         if(age[i] < life[i])
+         {
+            i++;
+            continue;
+         }
+
+         int last = --n;
+         x[i] = x[last];
+         y[i] = y[last];
+         vx[i] = vx[last];
+         vy[i] = vy[last];
+         age[i] = age[last];
+         life[i] = life[last];
+         color[i] = color[last];
+      }
+      count = n;
+   }
+
+   /**
+    * Add the particles to a frame.  Each particle is spread over the four
+    * pixels around it, weighted by how close it is to each and faded by
+    * its age.  Channels saturate at full brightness.
+    *
+    * @param pixels   the ARGB frame, stacked in horizontal rows
+    * @param width    width of the frame
+    * @param height   height of the frame
+    */
+   public void render(int[] pixels,int width,int height)
+   {
+      int size = width*height;
+      if((accR == null) || (accR.length != size))
+      {
+         accR = new int[size];
+         accG = new int[size];
+         accB = new int[size];
+      }
+      int[] ar = accR;
+      int[] ag = accG;
+      int[] ab = accB;
+      Arrays.fill(ar,0);
+      Arrays.fill(ag,0);
+      Arrays.fill(ab,0);
+
+      for(int i=0,n=count;i<n;i++)
+      {
+         /* pixel centers are at .5, shifted by a pixel so the pixel up */
+         /* and left of the particle is never further out than -1 */
+         float sx = x[i] + 0.5f;
+         float sy = y[i] + 0.5f;
+         if((sx < 0) || (sy < 0) || (sx >= width+1) || (sy >= height+1))
+            continue;
+
+         /* that pixel and the 8bit fraction of the way to the next one */
+         int fx = (int)(sx * 256.0f);
+         int fy = (int)(sy * 256.0f);
+         int px = (fx >> 8) - 1;
+         int py = (fy >> 8) - 1;
+         int wx = fx & 0xff;
+         int wy = fy & 0xff;
+
+         /* brightness fades linearly over the particle's life */
+         int fade = (int)((1.0f - (age[i] / life[i])) * 256.0f);
+         int rgb = color[i];
+         int r = (((rgb >> 16) & 0xff) * fade) >> (8 - ACC_SHIFT);
+         int g = (((rgb >> 8) & 0xff) * fade) >> (8 - ACC_SHIFT);
+         int b = ((rgb & 0xff) * fade) >> (8 - ACC_SHIFT);
+
+         /* weights of the four pixels in 8bit fixed point, they sum to 256 */
+         int w11 = (wx * wy) >> 8;
+         int w10 = wx - w11;
+         int w01 = wy - w11;
+         int w00 = 256 - wx - w01;
+
+         int idx = (py*width) + px;
+         if(py >= 0)
+         {
+            if(px >= 0)
+               splat(idx,r,g,b,w00);
+            if(px+1 < width)
+               splat(idx+1,r,g,b,w10);
+         }
+         if(py+1 < height)
+         {
+            if(px >= 0)
+               splat(idx+width,r,g,b,w01);
+            if(px+1 < width)
+               splat(idx+width+1,r,g,b,w11);
+         }
+      }
+
+      /* add to the frame, saturating */
+      for(int i=0;i<size;i++)
+      {
+         int pixel = pixels[i];
+         int r = Math.min(((pixel >> 16) & 0xff) + (Math.min(ar[i],ACC_MAX) >> ACC_SHIFT),255);
+         int g = Math.min(((pixel >> 8) & 0xff) + (Math.min(ag[i],ACC_MAX) >> ACC_SHIFT),255);
+         int b = Math.min((pixel & 0xff) + (Math.min(ab[i],ACC_MAX) >> ACC_SHIFT),255);
+         pixels[i] = (pixel & 0xff000000) | (r << 16) | (g << 8) | b;
+      }
+   }
+
+   /**
+    * Accumulate one weighted corner of a splat.
+    */
+   private void splat(int idx,int r,int g,int b,int w)
+   {
+      accR[idx] += (r * w) >> 8;
+      accG[idx] += (g * w) >> 8;
+      accB[idx] += (b * w) >> 8;
+   }
+}
@@ -0,0 +1,19 @@
+/**
+ * (C) Copyright 2026, David Vogt, All rights reserved.
+ */
+package mv.robotics.sign.animations;
+
+/**
+ * The real time, from System.nanoTime().
+ *
+ * @author David Vogt (david@kondra.com)
+ * @version Oct-18-26
+ */
+public class SystemClock implements AnimationClock
+{
+   @Override
+   public long nanoTime()
+   {
+      return(System.nanoTime());
+   }
+}
@@ -0,0 +1,287 @@
+/**
+ * (C) Copyright 2026, David Vogt, All rights reserved.
+ */
+package mv.robotics.sign.audio;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import javax.sound.sampled.LineUnavailableException;
+
+import mv.robotics.sign.metrics.Counter;
+import mv.robotics.sign.metrics.Histogram;
+import mv.robotics.sign.metrics.Metrics;
+
+/**
+ * Turns the audio from an input into band levels on a background thread.
+ * Every hop's worth of new samples the latest window is read from the
+ * ring, weighted with a Hann window and transformed, and the power is
+ * summed into log spaced bands.  When the analyzer falls behind it skips
+ * straight to the newest window since only the latest levels matter.
+ *
+ * Results are handed to the render thread through three AudioBands that
+ * rotate with atomic swaps: the analyzer fills one, publishes it in
+ * exchange for the spare, and getBands() trades the one the reader holds
+ * for the newest.  Neither side waits or allocates.
+ *
+ * @author David Vogt (david@kondra.com)
+ * @version Oct-18-26
+ */
+public class AudioAnalyzer
+{
+   /* default fft size, about 23ms at 44.1kHz */
+   static public final int FFT_SIZE = 1024;
+
+   /* default number of bands */
+   static public final int BANDS = 10;
+
+   /* frequency range covered by the bands in Hz */
+   static private final float MIN_FREQ = 40;
+   static private final float MAX_FREQ = 16000;
+
+   /* levels map this many decibels below full scale up to full scale */
+   static private final float DB_RANGE = 60;
+
+   /* max time to sleep waiting for samples, in ns */
+   static private final long PARK_NANOS = 5000000;
+
+   /* flag in the exchange state for a newly published buffer */
+   static private final int FRESH = 4;
+
+   /* metrics shared by all analyzers */
+   static private final Counter analyzed = Metrics.counter("audio.analyzed");
+   static private final Counter skipped = Metrics.counter("audio.skippedHops");
+   static private final Histogram latency = Metrics.histogram("audio.latencyNanos");
+
+   private AudioInput input;          /* where the samples come from */
+   private AudioRing ring;            /* the input's samples */
+   private FFT fft;                   /* the transform */
+   private int hop;                   /* new samples between analyses */
+   private float[] window;            /* hann window */
+   private float[] re;                /* fft real parts */
+   private float[] im;                /* fft imaginary parts */
+   private int[] bandStart;           /* first fft bin of each band */
+   private int[] bandEnd;             /* bin past the last of each band */
+   private float scale;               /* normalizes bin power to full scale */
+   private AudioBands[] buffers;      /* the three published buffers */
+   private AtomicInteger exchange;    /* spare buffer index | FRESH */
+   private int writeIndex;            /* buffer the analyzer fills */
+   private int readIndex;             /* buffer the reader holds */
+   private long sequence;             /* number of analyses */
+   private Thread thread;             /* the analysis thread */
+   private volatile boolean running;  /* true while analyzing */
+
+   /**
+    * Create an analyzer with the default size and bands.
+    *
+    * @param input   the audio input
+    */
+   public AudioAnalyzer(AudioInput input)
+   {
+      this(input,FFT_SIZE,BANDS);
+   }
+
+   /**
+    * Create an analyzer.
+    *
+    * @param input   the audio input
+    * @param size    fft size, a power of two
+    * @param bands   number of bands
+    */
+   public AudioAnalyzer(AudioInput input,int size,int bands)
+   {
+      this.input = input;
+      ring = input.getRing();
+      fft = new FFT(size);
+
+      /* a new window every quarter window keeps the latency down */
+      hop = size / 4;
+
+      window = new float[size];
+      for(int i=0;i<size;i++)
+         window[i] = (float)(0.5 - (0.5 * Math.cos(2*Math.PI*i/(size-1))));
+      re = new float[size];
+      im = new float[size];
+
+      /* a full scale sine lands about (size/4)^2 in its bin */
+      scale = 1.0f / ((size/4.0f) * (size/4.0f));
+
+      buildBands(bands,input.getSampleRate());
+
+      buffers = new AudioBands[] { new AudioBands(bands), new AudioBands(bands), new AudioBands(bands) };
+      writeIndex = 0;
+      exchange = new AtomicInteger(1);
+      readIndex = 2;
+   }
+
+   /**
+    * Return the newest analysis.  Only one thread may call this, and the
+    * returned bands are valid until it calls again.  The sequence is 0
+    * until the first analysis.
+    */
+   public AudioBands getBands()
+   {
+      if((exchange.get() & FRESH) != 0)
+         readIndex = exchange.getAndSet(readIndex) & ~FRESH;
+      return(buffers[readIndex]);
+   }
+
+   /**
+    * Start the input and the analysis.  An analyzer can be stopped and
+    * started again.
+    */
+   public synchronized void start() throws LineUnavailableException, IOException
+   {
+      if(running)
+         return;
+
+      /* a thread from a previous run must be gone before the ring gets */
+      /* a new reader */
+      join();
+      running = true;
+
+      thread = new Thread(new Runnable() {
+         public void run() {
+            analyzeThread();
+         }
+      },"audio-analyzer");
+      thread.setDaemon(true);
+      ring.setReader(thread);
+      thread.start();
+
+      /* don't leave the thread running if the input won't start */
+      boolean started = false;
+      try {
+         input.start();
+         started = true;
+      } finally {
+         if(!started)
+            stop();
+      }
+   }
+
+   /**
+    * Stop the input and the analysis, waiting for the analysis thread to
+    * finish.
+    */
+   public synchronized void stop()
+   {
+      running = false;
+      input.stop();
+      join();
+   }
+
+   /**
+    * Wait for the analysis thread to finish and take it off the ring.
+    */
+   private void join()
+   {
+      if(thread == null)
+         return;
+
+      LockSupport.unpark(thread);
+      try {
+         thread.join();
+      } catch(InterruptedException ex) {
+         Thread.currentThread().interrupt();
+      }
+      ring.setReader(null);
+      thread = null;
+   }
+
+   /**
+    * Analyzes windows until stopped.
+    */
+   private void analyzeThread()
+   {
+      int size = fft.getSize();
+      long next = size;
+
+      while(running)
+      {
+         /* wait for another hop of samples */
+         long head = ring.getHead();
+         if(head < next)
+         {
+            LockSupport.parkNanos(PARK_NANOS);
+            continue;
+         }
+
+         /* skip to the newest window if we fell behind */
+         if((head - next) >= hop)
+            skipped.add((head - next) / hop);
+         long end = next + (((head - next) / hop) * hop);
+         next = end + hop;
+         if(!ring.read(end - size,re,0,size))
+            continue;
+
+         analyze();
+         latency.record(System.nanoTime() - input.getLastRead());
+         analyzed.inc();
+      }
+   }
+
+   /**
+    * Transform the window of samples in re and publish the bands.
+    */
+   private void analyze()
+   {
+      int size = fft.getSize();
+
+      /* rms before windowing */
+      float sum = 0;
+      for(int i=0;i<size;i++)
+      {
+         float s = re[i];
+         sum += s*s;
+         re[i] = s * window[i];
+         im[i] = 0;
+      }
+
+      fft.transform(re,im);
+
+      AudioBands out = buffers[writeIndex];
+      float[] levels = out.levels();
+      float[] energies = out.energies();
+      for(int b=0;b<levels.length;b++)
+      {
+         float power = 0;
+         for(int k=bandStart[b];k<bandEnd[b];k++)
+            power += (re[k]*re[k]) + (im[k]*im[k]);
+         power *= scale;
+
+         energies[b] = power;
+         float db = 10.0f * (float)Math.log10(power + 1e-12f);
+         levels[b] = Math.max(0.0f,Math.min(1.0f,(db + DB_RANGE) / DB_RANGE));
+      }
+      out.setRms((float)Math.sqrt(sum / size));
+      out.setTime(input.getLastRead());
+      out.setSequence(++sequence);
+
+      /* publish and take the spare to fill next time */
+      writeIndex = exchange.getAndSet(writeIndex | FRESH) & ~FRESH;
+   }
+
+   /**
+    * Work out the fft bins of log spaced bands, each at least one bin wide.
+    */
+   private void buildBands(int bands,float sampleRate)
+   {
+      int size = fft.getSize();
+      float hz = sampleRate / size;
+      float max = Math.min(MAX_FREQ,sampleRate/2);
+
+      bandStart = new int[bands];
+      bandEnd = new int[bands];
+      int bin = Math.max(1,Math.round(MIN_FREQ / hz));
+      for(int b=0;b<bands;b++)
+      {
+         double f = MIN_FREQ * Math.pow(max / MIN_FREQ,(b+1.0) / bands);
+         int end = Math.min(size/2,Math.max(bin+1,(int)Math.round(f / hz)));
+         bandStart[b] = Math.min(bin,end-1);
+         bandEnd[b] = end;
+         bin = end;
+      }
+   }
+}
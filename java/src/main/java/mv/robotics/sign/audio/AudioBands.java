@@ -0,0 +1,126 @@
+/**
+ * (C) Copyright 2026, David Vogt, All rights reserved.
+ */
+package mv.robotics.sign.audio;
+
+/**
+ * A snapshot of the audio published by the analyzer.  Levels are the
+ * band energies mapped from decibels to 0..1 so animations can use them
+ * directly as brightness, heights and the like.
+ *
+ * @author David Vogt (david@kondra.com)
+ * @version Oct-18-26
+ */
+public class AudioBands
+{
+   private float[] levels;         /* band levels 0..1, low to high */
+   private float[] energies;       /* band power relative to full scale */
+   private float rms;              /* rms of the window */
+   private long time;              /* nanoTime the newest samples were read */
+   private long sequence;          /* analysis number, 0 = none yet */
+
+   AudioBands(int bands)
+   {
+      levels = new float[bands];
+      energies = new float[bands];
+   }
+
+   /**
+    * Return the number of bands.
+    */
+   public int getBandCount()
+   {
+      return(levels.length);
+   }
+
+   /**
+    * Return the level of a band, 0 to 1.
+    *
+    * @param band   the band, 0 is the lowest
+    */
+   public float getLevel(int band)
+   {
+      return(levels[band]);
+   }
+
+   /**
+    * Return the power in a band relative to full scale.
+    *
+    * @param band   the band, 0 is the lowest
+    */
+   public float getEnergy(int band)
+   {
+      return(energies[band]);
+   }
+
+   /**
+    * Return the rms of the window, 0 to 1.
+    */
+   public float getRms()
+   {
+      return(rms);
+   }
+
+   /**
+    * Return the nanoTime the newest samples in the window were read.
+    */
+   public long getTime()
+   {
+      return(time);
+   }
+
+   /**
+    * Return the analysis number, 0 until the first analysis.
+    */
+   public long getSequence()
+   {
+      return(sequence);
+   }
+
+   /**
+    * Return the level array for the analyzer to fill.
+    */
+   float[] levels()
+   {
+      return(levels);
+   }
+
+   /**
+    * Return the energy array for the analyzer to fill.
+    */
+   float[] energies()
+   {
+      return(energies);
+   }
+
+   /**
+    * Set the rms of the window.
+    *
+    * @param rms   the rms
+    */
+   void setRms(float rms)
+   {
+      this.rms = rms;
+   }
+
+   /**
+    * Set the nanoTime the newest samples were read.
+    *
+    * @param time   the time
+    */
+   void setTime(long time)
+   {
+      this.time = time;
+   }
+
+   /**
+    * Set the analysis number.
+    *
+    * @param sequence   the analysis number
+    */
+   void setSequence(long sequence)
+   {
+      this.sequence = sequence;
+   }
+
+}
@@ -0,0 +1,305 @@
+/**
+ * (C) Copyright 2026, David Vogt, All rights reserved.
+ */
+package mv.robotics.sign.audio;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.DataLine;
+import javax.sound.sampled.LineUnavailableException;
+import javax.sound.sampled.TargetDataLine;
+import javax.sound.sampled.UnsupportedAudioFileException;
+
+import mv.robotics.sign.metrics.Counter;
+import mv.robotics.sign.metrics.Metrics;
+
+/**
+ * Reads audio into a ring on a thread of its own, mixed down to mono
+ * floats from -1 to 1.  Audio comes from a capture line (a sound card or
+ * usb microphone) or from a WAV file for testing, which is played back
+ * at its real speed so the sign reacts to it the way it would to live
+ * audio.  Reads are kept small so samples reach the ring within a few
+ * milliseconds, and nothing is allocated once it's running.
+ *
+ * An input can be stopped and started again, the line or file is closed
+ * when it stops and reopened when it starts.
+ *
+ * @author David Vogt (david@kondra.com)
+ * @version Oct-18-26
+ */
+public class AudioInput
+{
+   /* default capture rate */
+   static public final float SAMPLE_RATE = 44100;
+
+   /* frames per read, about 3ms at 44.1kHz */
+   static private final int CHUNK_FRAMES = 128;
+
+   /* size of the ring in samples, about 1.5s at 44.1kHz */
+   static private final int RING_SIZE = 65536;
+
+   /* metrics shared by all inputs */
+   static private final Counter samples = Metrics.counter("audio.samples");
+
+   private AudioRing ring;            /* where the samples go */
+   private float sampleRate;          /* samples per second */
+   private int channels;              /* channels in the stream */
+   private TargetDataLine line;       /* capture line or null */
+   private AudioFormat format;        /* format to open the line with */
+   private Path path;                 /* file to play or null */
+   private boolean loop;              /* true to play the file over and over */
+   private AudioInputStream stream;   /* the open audio stream */
+   private Thread thread;             /* the read thread */
+   private byte[] bytes;              /* raw read buffer */
+   private float[] mono;              /* converted samples */
+   private volatile long lastRead;    /* nanoTime of the newest samples */
+   private volatile boolean running;  /* true while reading */
+
+   private AudioInput(float sampleRate,int channels)
+   {
+      this.sampleRate = sampleRate;
+      this.channels = channels;
+      ring = new AudioRing(RING_SIZE);
+      bytes = new byte[CHUNK_FRAMES*channels*2];
+      mono = new float[CHUNK_FRAMES];
+   }
+
+   /**
+    * Create an input that captures from the default line.
+    *
+    * @param sampleRate   the capture rate
+    */
+   static public AudioInput fromLine(float sampleRate) throws LineUnavailableException
+   {
+      AudioFormat format = new AudioFormat(sampleRate,16,1,true,false);
+      TargetDataLine line = (TargetDataLine)AudioSystem.getLine(
+         new DataLine.Info(TargetDataLine.class,format));
+
+      AudioInput input = new AudioInput(sampleRate,1);
+      input.line = line;
+      input.format = format;
+
+      /* open it now so a missing line fails here rather than at start */
+      input.openLine();
+      return(input);
+   }
+
+   /**
+    * Create an input that plays a WAV file.
+    *
+    * @param path   the file
+    * @param loop   true to start over at the end
+    */
+   static public AudioInput fromFile(Path path,boolean loop) throws IOException
+   {
+      AudioInputStream stream = open(path);
+      AudioFormat format = stream.getFormat();
+      AudioInput input = new AudioInput(format.getSampleRate(),format.getChannels());
+      input.path = path;
+      input.loop = loop;
+      input.stream = stream;
+      return(input);
+   }
+
+   /**
+    * Return the ring the samples are written to.
+    */
+   public AudioRing getRing()
+   {
+      return(ring);
+   }
+
+   /**
+    * Return the number of samples per second.
+    */
+   public float getSampleRate()
+   {
+      return(sampleRate);
+   }
+
+   /**
+    * Return the nanoTime the newest samples were read at.
+    */
+   public long getLastRead()
+   {
+      return(lastRead);
+   }
+
+   /**
+    * Start reading, reopening the line or file if the input was stopped.
+    */
+   public synchronized void start() throws LineUnavailableException, IOException
+   {
+      if(running)
+         return;
+
+      if(stream == null)
+      {
+         if(line != null)
+            openLine();
+         else
+            stream = open(path);
+      }
+      if(line != null)
+         line.start();
+      running = true;
+
+      thread = new Thread(new Runnable() {
+         public void run() {
+            readThread();
+         }
+      },"audio-input");
+      thread.setDaemon(true);
+      thread.setPriority(Thread.MAX_PRIORITY);
+      thread.start();
+   }
+
+   /**
+    * Stop reading and release the line or file, waiting for the read
+    * thread to finish.
+    */
+   public synchronized void stop()
+   {
+      running = false;
+
+      /* closing the line or file breaks the thread out of a read */
+      if(line != null)
+      {
+         line.stop();
+         line.close();
+      }
+      closeStream();
+      if(thread != null)
+      {
+         thread.interrupt();
+         try {
+            thread.join();
+         } catch(InterruptedException ex) {
+            Thread.currentThread().interrupt();
+         }
+         thread = null;
+      }
+
+      /* a looping file may have been reopened on the way out */
+      closeStream();
+      stream = null;
+   }
+
+   /**
+    * Open the capture line.
+    */
+   private void openLine() throws LineUnavailableException
+   {
+      /* a small line buffer keeps the capture latency down */
+      line.open(format,CHUNK_FRAMES*2*4);
+      stream = new AudioInputStream(line);
+   }
+
+   private void closeStream()
+   {
+      try {
+         if(stream != null)
+            stream.close();
+      } catch(IOException ex) {
+         /* nothing more we can do */
+      }
+   }
+
+   /**
+    * Reads chunks into the ring until stopped.
+    */
+   private void readThread()
+   {
+      long start = System.nanoTime();
+      long frames = 0;
+
+      try {
+         while(running)
+         {
+            int cnt = readFrames();
+            if(cnt < 0)
+            {
+               /* end of the file */
+               if(!loop || (path == null))
+                  return;
+               stream.close();
+               stream = open(path);
+               continue;
+            }
+            int n = cnt / (channels*2);
+
+            /* 16bit little endian, channels averaged */
+            for(int i=0,p=0;i<n;i++)
+            {
+               int sum = 0;
+               for(int c=0;c<channels;c++,p+=2)
+                  sum += (short)((bytes[p] & 0xff) | (bytes[p+1] << 8));
+               mono[i] = sum / (32768.0f * channels);
+            }
+
+            /* files play at their real speed */
+            if(line == null)
+            {
+               frames += n;
+               long due = start + (long)(frames * 1000000000.0 / sampleRate);
+               long wait = due - System.nanoTime();
+               if(wait > 0)
+                  Thread.sleep(wait / 1000000,(int)(wait % 1000000));
+            }
+
+            lastRead = System.nanoTime();
+            ring.write(mono,0,n);
+            samples.add(n);
+         }
+      } catch(Exception ex) {
+         if(running)
+            ex.printStackTrace();
+      }
+   }
+
+   /**
+    * Fill the read buffer with whole frames.
+    *
+    * @return the number of bytes read or -1 at the end of the stream
+    */
+   private int readFrames() throws IOException
+   {
+      int frame = channels*2;
+      int cnt = 0;
+      while(cnt < bytes.length)
+      {
+         int n = stream.read(bytes,cnt,bytes.length-cnt);
+         if(n < 0)
+         {
+            cnt -= cnt % frame;
+            return((cnt == 0) ? -1 : cnt);
+         }
+         cnt += n;
+      }
+      return(cnt);
+   }
+
+   /**
+    * Open a WAV file as 16bit little endian pcm.
+    */
+   static private AudioInputStream open(Path path) throws IOException
+   {
+      try {
+         AudioInputStream stream = AudioSystem.getAudioInputStream(
+            new BufferedInputStream(Files.newInputStream(path)));
+         AudioFormat src = stream.getFormat();
+         AudioFormat pcm = new AudioFormat(src.getSampleRate(),16,src.getChannels(),true,false);
+         if(!src.matches(pcm))
+            stream = AudioSystem.getAudioInputStream(pcm,stream);
+         return(stream);
+      } catch(UnsupportedAudioFileException ex) {
+         throw(new IOException("Unsupported audio file: "+path,ex));
+      }
+   }
+}
@@ -0,0 +1,125 @@
+/**
+ * (C) Copyright 2026, David Vogt, All rights reserved.
+ */
+package mv.robotics.sign.audio;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A lock-free ring of audio samples with one writer and one reader.  The
+ * writer never waits, it overwrites the oldest samples when the reader
+ * falls behind, which for analysis is the right call since only recent
+ * audio matters.  Samples are addressed by their absolute position in
+ * the stream so the reader can pick any recent window, and a read that
+ * raced with the writer overwriting it is reported so it can be retried
+ * with newer samples.
+ *
+ * The writer claims the slots it's about to overwrite before it copies
+ * and publishes the new head after, so a reader checking against the
+ * claim also catches a write that was still in progress while it copied.
+ *
+ * @author David Vogt (david@kondra.com)
+ * @version Oct-18-26
+ */
+public class AudioRing
+{
+   private float[] buf;               /* the samples */
+   private int mask;                  /* capacity - 1 */
+   private AtomicLong head;           /* number of samples ever written */
+   private AtomicLong claim;          /* head once the write in progress is done */
+   private volatile Thread reader;    /* woken up when samples arrive */
+
+   /**
+    * Create a ring.
+    *
+    * @param capacity   number of samples, rounded up to a power of two
+    */
+   public AudioRing(int capacity)
+   {
+      int size = Integer.highestOneBit(Math.max(capacity,2) - 1) << 1;
+      buf = new float[size];
+      mask = size - 1;
+      head = new AtomicLong();
+      claim = new AtomicLong();
+   }
+
+   /**
+    * Return the number of samples the ring holds.
+    */
+   public int getCapacity()
+   {
+      return(buf.length);
+   }
+
+   /**
+    * Return the position just past the newest sample.
+    */
+   public long getHead()
+   {
+      return(head.get());
+   }
+
+   /**
+    * Set the thread to wake up when samples are written.
+    */
+   public void setReader(Thread reader)
+   {
+      this.reader = reader;
+   }
+
+   /**
+    * Add samples.  Only one thread may write, and no more than the
+    * capacity at a time.
+    *
+    * @param src      the samples
+    * @param offset   first sample to add
+    * @param len      number of samples to add
+    */
+   public void write(float[] src,int offset,int len)
+   {
+      long h = head.get();
+      int pos = (int)h & mask;
+
+      /* claim the slots first so a reader can tell they're changing */
+      claim.set(h + len);
+
+      /* copy in up to two pieces around the end of the buffer */
+      int first = Math.min(len,buf.length-pos);
+      System.arraycopy(src,offset,buf,pos,first);
+      if(first < len)
+         System.arraycopy(src,offset+first,buf,0,len-first);
+
+      /* publish the samples, then let the reader know */
+      head.lazySet(h + len);
+      Thread t = reader;
+      if(t != null)
+         LockSupport.unpark(t);
+   }
+
+   /**
+    * Copy samples out.  Only one thread may read.
+    *
+    * @param from     position of the first sample
+    * @param dst      where the samples go
+    * @param offset   first index in dst
+    * @param len      number of samples
+    * @return false if the samples aren't all in the ring, either not
+    *         written yet or already overwritten
+    */
+   public boolean read(long from,float[] dst,int offset,int len)
+   {
+      long h = head.get();
+      if((from < 0) || ((from + len) > h) || (from < (claim.get() - buf.length)))
+         return(false);
+
+      int pos = (int)from & mask;
+      int first = Math.min(len,buf.length-pos);
+      System.arraycopy(buf,pos,dst,offset,first);
+      if(first < len)
+         System.arraycopy(buf,0,dst,offset+first,len-first);
+
+      /* the writer may have lapped us or still be writing over our copy */
+      return(from >= (claim.get() - buf.length));
+   }
+}
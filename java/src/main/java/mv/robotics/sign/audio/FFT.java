@@ -0,0 +1,100 @@
+/**
+ * (C) Copyright 2026, David Vogt, All rights reserved.
+ */
+package mv.robotics.sign.audio;
+
+/**
+ * In place radix-2 fast fourier transform.  The twiddle factors and bit
+ * reversal order are worked out once for the size so transform() does
+ * nothing but arithmetic on the caller's arrays.
+ *
+ * @author David Vogt (david@kondra.com)
+ * @version Oct-18-26
+ */
+public class FFT
+{
+   private int size;          /* number of points */
+   private int[] reverse;     /* bit reversed index of each point */
+   private float[] cos;       /* cos(2*pi*k/size) for k < size/2 */
+   private float[] sin;       /* sin(2*pi*k/size) for k < size/2 */
+
+   /**
+    * Create a transform.
+    *
+    * @param size   number of points, a power of two
+    */
+   public FFT(int size)
+   {
+      if((size < 2) || (Integer.bitCount(size) != 1))
+         throw(new IllegalArgumentException("FFT size must be a power of two: "+size));
+      this.size = size;
+
+      int bits = Integer.numberOfTrailingZeros(size);
+      reverse = new int[size];
+      for(int i=0;i<size;i++)
+         reverse[i] = Integer.reverse(i) >>> (32 - bits);
+
+      cos = new float[size/2];
+      sin = new float[size/2];
+      for(int k=0;k<size/2;k++)
+      {
+         cos[k] = (float)Math.cos(2*Math.PI*k/size);
+         sin[k] = (float)Math.sin(2*Math.PI*k/size);
+      }
+   }
+
+   /**
+    * Return the transform size.
+    */
+   public int getSize()
+   {
+      return(size);
+   }
+
+   /**
+    * Transform in place.
+    *
+    * @param re   real parts, size values
+    * @param im   imaginary parts, size values
+    */
+   public void transform(float[] re,float[] im)
+   {
+      /* put the points in bit reversed order */
+      for(int i=0;i<size;i++)
+      {
+         int j = reverse[i];
+         if(j > i)
+         {
+            float t = re[i];
+            re[i] = re[j];
+            re[j] = t;
+            t = im[i];
+            im[i] = im[j];
+            im[j] = t;
+         }
+      }
+
+      /* combine the butterflies a level at a time */
+      for(int len=2;len<=size;len<<=1)
+      {
+         int half = len >> 1;
+         int step = size / len;
+         for(int i=0;i<size;i+=len)
+         {
+            for(int j=0,k=0;j<half;j++,k+=step)
+            {
+               int a = i + j;
+               int b = a + half;
+
+               /* multiply by e^(-2*pi*i*k/size) */
+               float tr = (re[b] * cos[k]) + (im[b] * sin[k]);
+               float ti = (im[b] * cos[k]) - (re[b] * sin[k]);
+               re[b] = re[a] - tr;
+               im[b] = im[a] - ti;
+               re[a] += tr;
+               im[a] += ti;
+            }
+         }
+      }
+   }
+}
@@ -0,0 +1,201 @@
+/**
+ * (C) Copyright 2026, David Vogt, All rights reserved.
+ */
+package mv.robotics.sign.capture;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads a capture log written by FrameRecorder one frame at a time.
+ *
+ * A log is a 12 byte file header followed by the frame records, all
+ * little endian like the wire protocol:
+ * <pre>
+ *   header:  magic (4) version (2) width (2) height (2) reserved (2)
+ *   record:  time ns since the first frame (8) msg type (2) length (4) payload
+ * </pre>
+ * A log cut short by a crash simply ends at the last whole record.
+ *
+ * @author David Vogt (david@kondra.com)
+ * @version Oct-18-26
+ */
+public class FrameLog implements Closeable
+{
+   /* file header values */
+   static final int MAGIC = 0x50414353;   /* "SCAP" */
+   static final int VERSION = 1;
+   static final int HDR_SIZE = 12;
+
+   /* size of the fixed part of a record */
+   static final int RECORD_HDR_SIZE = 14;
+
+   /* size of the read buffer */
+   static private final int BUFFER_SIZE = 65536;
+
+   private FileChannel channel;        /* the log file */
+   private ByteBuffer buf;             /* bytes read but not yet consumed */
+   private int width;                  /* frame width in pixels */
+   private int height;                 /* frame height in pixels */
+   private long time;                  /* time of the current frame */
+   private int msgType;                /* message type of the current frame */
+   private byte[] payload;             /* payload of the current frame */
+   private int length;                 /* length of the current payload */
+
+   /**
+    * Open a log for reading.
+    *
+    * @param path   the log file
+    */
+   public FrameLog(Path path) throws IOException
+   {
+      channel = FileChannel.open(path,StandardOpenOption.READ);
+      buf = ByteBuffer.allocate(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+      payload = new byte[1024];
+
+      try {
+         rewind();
+      } catch(IOException ex) {
+         channel.close();
+         throw(ex);
+      }
+   }
+
+   /**
+    * Return the width of the frames in pixels.
+    */
+   public int getWidth()
+   {
+      return(width);
+   }
+
+   /**
+    * Return the height of the frames in pixels.
+    */
+   public int getHeight()
+   {
+      return(height);
+   }
+
+   /**
+    * Return the time of the current frame in ns since the first frame.
+    */
+   public long getTime()
+   {
+      return(time);
+   }
+
+   /**
+    * Return the message type of the current frame.
+    */
+   public int getMsgType()
+   {
+      return(msgType);
+   }
+
+   /**
+    * Return the buffer holding the current payload.  It's reused by the
+    * next call to next() and may be longer than the payload.
+    */
+   public byte[] getPayload()
+   {
+      return(payload);
+   }
+
+   /**
+    * Return the length of the current payload.
+    */
+   public int getLength()
+   {
+      return(length);
+   }
+
+   /**
+    * Go back to the first frame.
+    */
+   public void rewind() throws IOException
+   {
+      channel.position(0);
+      buf.clear();
+      buf.flip();
+
+      if(!fill(HDR_SIZE) || (buf.getInt() != MAGIC))
+         throw(new IOException("Not a capture log"));
+      int version = buf.getShort() & 0xffff;
+      if(version != VERSION)
+         throw(new IOException("Unsupported capture log version: "+version));
+      width = buf.getShort() & 0xffff;
+      height = buf.getShort() & 0xffff;
+      buf.getShort();
+   }
+
+   /**
+    * Advance to the next frame.
+    *
+    * @return false at the end of the log
+    */
+   public boolean next() throws IOException
+   {
+      if(!fill(RECORD_HDR_SIZE))
+         return(false);
+      long t = buf.getLong();
+      int type = buf.getShort() & 0xffff;
+      int len = buf.getInt();
+      if(len < 0)
+         throw(new IOException("Corrupt capture log"));
+
+      if(payload.length < len)
+         payload = new byte[len];
+
+      /* copy the payload out, refilling as we go for payloads larger */
+      /* than the read buffer */
+      int cnt = 0;
+      while(cnt < len)
+      {
+         if(!buf.hasRemaining() && !fill(1))
+            return(false);
+         int n = Math.min(len-cnt,buf.remaining());
+         buf.get(payload,cnt,n);
+         cnt += n;
+      }
+
+      time = t;
+      msgType = type;
+      length = len;
+      return(true);
+   }
+
+   @Override
+   public void close() throws IOException
+   {
+      channel.close();
+   }
+
+   /**
+    * Make sure the buffer holds at least the specified number of bytes.
+    *
+    * @return false if the file ends first
+    */
+   private boolean fill(int len) throws IOException
+   {
+      if(buf.remaining() >= len)
+         return(true);
+
+      buf.compact();
+      try {
+         while(buf.position() < len)
+         {
+            if(channel.read(buf) < 0)
+               return(false);
+         }
+      } finally {
+         buf.flip();
+      }
+      return(true);
+   }
+}
@@ -0,0 +1,148 @@
+/**
+ * (C) Copyright 2026, David Vogt, All rights reserved.
+ */
+package mv.robotics.sign.capture;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import mv.robotics.sign.metrics.Counter;
+import mv.robotics.sign.metrics.Metrics;
+
+/**
+ * Writes frames to an append-only capture log.  Each record holds the
+ * time of the frame, the message type and the encoded payload exactly
+ * as it goes over the wire, so a log can be replayed to a board or used
+ * as a corpus for codec work.  See FrameLog for the file layout.
+ *
+ * The display records the whole filtered frame encoded as one message,
+ * before FrameSender splits it up.  With a single board that's exactly
+ * what went over the wire.  When the frame is split across several
+ * connections each board only got its own slice of the recorded payload,
+ * and a replay sends the whole frame wherever it's played.
+ *
+ * Records are batched in a direct buffer and written to the file channel
+ * when it fills up, which keeps the cost on the render thread down to a
+ * copy per frame.
+ *
+ * @author David Vogt (david@kondra.com)
+ * @version Oct-18-26
+ */
+public class FrameRecorder implements Closeable
+{
+   /* size of the write buffer */
+   static private final int BUFFER_SIZE = 65536;
+
+   /* metrics shared by all recorders */
+   static private final Counter frames = Metrics.counter("capture.frames");
+   static private final Counter bytes = Metrics.counter("capture.bytes");
+
+   private FileChannel channel;        /* the log file */
+   private ByteBuffer buf;             /* records not yet written */
+   private long firstTime;             /* time of the first frame */
+   private boolean started;            /* true once a frame is recorded */
+
+   /**
+    * Create a new log, replacing any existing file.
+    *
+    * @param path     the file to write
+    * @param width    width of the frames in pixels
+    * @param height   height of the frames in pixels
+    */
+   public FrameRecorder(Path path,int width,int height) throws IOException
+   {
+      channel = FileChannel.open(path,StandardOpenOption.CREATE,
+         StandardOpenOption.WRITE,StandardOpenOption.TRUNCATE_EXISTING);
+      buf = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+
+      buf.putInt(FrameLog.MAGIC);
+      buf.putShort((short)FrameLog.VERSION);
+      buf.putShort((short)width);
+      buf.putShort((short)height);
+      buf.putShort((short)0);
+   }
+
+   /**
+    * Append a frame to the log.  Times are stored relative to the first
+    * frame so any monotonic clock will do.
+    *
+    * @param time      time of the frame in ns
+    * @param msgType   message type the payload is sent as
+    * @param payload   the encoded payload
+    * @param offset    start of the payload
+    * @param len       length of the payload
+    */
+   public synchronized void record(long time,int msgType,byte[] payload,int offset,int len)
+      throws IOException
+   {
+      if(channel == null)
+         throw(new IOException("Recorder is closed"));
+
+      if(!started)
+      {
+         firstTime = time;
+         started = true;
+      }
+
+      /* make room, the odd payload bigger than the buffer goes straight out */
+      if(buf.remaining() < (FrameLog.RECORD_HDR_SIZE + len))
+         drain();
+      buf.putLong(time - firstTime);
+      buf.putShort((short)msgType);
+      buf.putInt(len);
+      if(buf.remaining() < len)
+      {
+         drain();
+         writeFully(ByteBuffer.wrap(payload,offset,len));
+      }
+      else
+         buf.put(payload,offset,len);
+
+      frames.inc();
+      bytes.add(FrameLog.RECORD_HDR_SIZE + len);
+   }
+
+   /**
+    * Write any buffered records to the file.
+    */
+   public synchronized void flush() throws IOException
+   {
+      if(channel != null)
+         drain();
+   }
+
+   @Override
+   public synchronized void close() throws IOException
+   {
+      if(channel == null)
+         return;
+
+      try {
+         drain();
+      } finally {
+         channel.close();
+         channel = null;
+      }
+   }
+
+   /**
+    * Write the buffered records out.
+    */
+   private void drain() throws IOException
+   {
+      buf.flip();
+      writeFully(buf);
+      buf.clear();
+   }
+
+   private void writeFully(ByteBuffer bb) throws IOException
+   {
+      while(bb.hasRemaining())
+         channel.write(bb);
+   }
+}
@@ -0,0 +1,254 @@
+/**
+ * (C) Copyright 2026, David Vogt, All rights reserved.
+ */
+package mv.robotics.sign.capture;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import mv.robotics.sign.metrics.Counter;
+import mv.robotics.sign.metrics.Metrics;
+import mv.robotics.sign.msg.MsgConn;
+import mv.robotics.sign.msg.MsgTransport;
+import mv.robotics.sign.msg.ex.MsgException;
+import mv.robotics.sign.msg.msg.ConnectMsg;
+import mv.robotics.sign.msg.util.MsgBuffer;
+
+/**
+ * A transport that plays a capture log back as incoming traffic.  The
+ * transport opens with a connect request so the service connects it like
+ * any passive client, then each recorded frame arrives as a packet at its
+ * recorded time, or as fast as it's read at max speed.  Added to a relay
+ * this plays a log to the sign, the relay forwards the frames to the
+ * board like it would for a remote renderer.
+ *
+ * Anything written to the transport is discarded.
+ *
+ * @author David Vogt (david@kondra.com)
+ * @version Oct-18-26
+ */
+public class MsgReplayTransport extends MsgTransport
+{
+   /* speed for playing the log as fast as it's read */
+   static public final double MAX_SPEED = 0;
+
+   /* packet framing, see MsgConn */
+   static private final byte START_BYTE = '#';
+   static private final int HDR_SIZE = 8;
+   static private final int CRC_SIZE = 2;
+   static private final int MSG_TYPE_CONNECT_REQ = 0;
+
+   /* metrics shared by all replays */
+   static private final Counter replayed = Metrics.counter("capture.replayed");
+   static private final Counter skipped = Metrics.counter("capture.skipped");
+
+   private Path path;                  /* the log to play */
+   private double speed;               /* playback speed, MAX_SPEED = no pacing */
+   private boolean loop;               /* true to start over at the end */
+   private FrameLog log;               /* the open log */
+   private MsgBuffer packet;           /* packet being read */
+   private int packetPos;              /* read position in the packet */
+   private boolean pending;            /* true if the log's current frame isn't sent yet */
+   private long baseTime;              /* nanoTime the first frame is due */
+   private int timeout;                /* read timeout in ms, 0 = none */
+   private volatile boolean open;      /* true while the log is open */
+
+   /**
+    * Create a replay transport.
+    *
+    * @param path    the log to play
+    * @param speed   1 for the recorded speed, 2 for double speed, etc. or
+    *                MAX_SPEED to play as fast as the frames are read
+    * @param loop    true to start over at the end of the log, otherwise
+    *                the transport goes quiet
+    */
+   public MsgReplayTransport(Path path,double speed,boolean loop)
+   {
+      this.path = path;
+      this.speed = speed;
+      this.loop = loop;
+      packet = new MsgBuffer(HDR_SIZE + MsgConn.MAX_RX_PAYLOAD_SIZE + CRC_SIZE);
+   }
+
+   @Override
+   public boolean isDurable()
+   {
+      return(true);
+   }
+
+   @Override
+   public boolean isPassive()
+   {
+      return(true);
+   }
+
+   @Override
+   public void down()
+   {
+      close();
+
+      super.down();
+   }
+
+   @Override
+   public void attemptUp()
+   {
+      if(open)
+         return;
+
+      try {
+         log = new FrameLog(path);
+      } catch(IOException ex) {
+         /* try again on the next attempt */
+         log = null;
+         return;
+      }
+
+      /* introduce ourselves first */
+      int connId = System.identityHashCode(this) | 1;
+      frame(MSG_TYPE_CONNECT_REQ,new ConnectMsg(connId,MsgConn.MAX_RX_PAYLOAD_SIZE,0));
+      pending = false;
+      baseTime = System.nanoTime();
+      open = true;
+
+      up();
+   }
+
+   @Override
+   public void setReadTimeout(int timeout)
+   {
+      this.timeout = timeout;
+   }
+
+   @Override
+   public int read(byte[] buf,int offset,int len)
+   {
+      long deadline = (timeout > 0) ? (System.currentTimeMillis() + timeout) : 0;
+
+      try {
+         while(true)
+         {
+            /* serve from the current packet */
+            int avail = packet.position() - packetPos;
+            if(avail > 0)
+            {
+               int cnt = Math.min(len,avail);
+               System.arraycopy(packet.array(),packetPos,buf,offset,cnt);
+               packetPos += cnt;
+               return(cnt);
+            }
+
+            if(!open)
+               throw(new MsgException("Replay is closed"));
+
+            /* read ahead to the next frame */
+            if(!pending)
+            {
+               if(log.next())
+                  pending = true;
+               else if(loop)
+               {
+                  log.rewind();
+                  baseTime = System.nanoTime();
+                  continue;
+               }
+            }
+
+            /* wait until the frame is due, or forever at the end of the log */
+            long wait = 0;
+            if(pending && (speed > 0))
+               wait = (baseTime + (long)(log.getTime() / speed) - System.nanoTime()) / 1000000;
+            if(!pending || (wait > 0))
+            {
+               if(deadline > 0)
+               {
+                  long left = deadline - System.currentTimeMillis();
+                  if(left <= 0)
+                     return(0);
+                  wait = pending ? Math.min(wait,left) : left;
+               }
+               synchronized(this) {
+                  if(open)
+                     this.wait(wait);
+               }
+               continue;
+            }
+
+            /* a payload we can't send in one packet can't be played back */
+            pending = false;
+            if(log.getLength() > MsgConn.MAX_RX_PAYLOAD_SIZE)
+            {
+               skipped.inc();
+               continue;
+            }
+            packet.clear();
+            packet.position(HDR_SIZE);
+            packet.putBytes(log.getPayload(),0,log.getLength());
+            header(log.getMsgType());
+            replayed.inc();
+         }
+      } catch(Throwable t) {
+         down();
+         throw((t instanceof MsgException) ? (MsgException)t :
+            new MsgException("Failed to replay "+path,t));
+      }
+   }
+
+   /**
+    * Frame a message as the next packet to read.
+    */
+   private void frame(int msgType,ConnectMsg msg)
+   {
+      packet.clear();
+      packet.position(HDR_SIZE);
+      msg.writeTo(packet);
+      header(msgType);
+   }
+
+   /**
+    * Fill in the header and crc around the payload in the packet buffer.
+    * Replays are unchecksummed so the crc is left zero.
+    */
+   private void header(int msgType)
+   {
+      int len = packet.position() - HDR_SIZE;
+      byte[] bytes = packet.array();
+      bytes[0] = START_BYTE;
+      bytes[1] = (byte)msgType;
+      bytes[2] = 0;
+      bytes[3] = 0;
+      packet.putShort(4,len);
+      packet.putShort(6,0);
+      packet.putShort(0);
+      packetPos = 0;
+   }
+
+   @Override
+   public void write(byte[] buf)
+   {
+      /* nobody's listening */
+   }
+
+   @Override
+   public void write(byte[] buf,int offset,int len)
+   {
+      /* nobody's listening */
+   }
+
+   @Override
+   public void close()
+   {
+      open = false;
+
+      synchronized(this) {
+         this.notifyAll();
+      }
+
+      try {
+         if(log != null)
+            log.close();
+      } catch(IOException ex) {
+         /* nothing more we can do */
+      }
+   }
+}
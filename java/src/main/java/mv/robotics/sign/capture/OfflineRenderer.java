@@ -0,0 +1,114 @@
+/**
+ * (C) Copyright 2026, David Vogt, All rights reserved.
+ */
+package mv.robotics.sign.capture;
+
+import java.awt.image.BufferedImage;
+import java.nio.file.Path;
+
+import mv.robotics.sign.Display;
+import mv.robotics.sign.ImageDataMsg;
+import mv.robotics.sign.animations.Animation;
+import mv.robotics.sign.animations.AnimationTimer;
+import mv.robotics.sign.animations.ManualClock;
+import mv.robotics.sign.msg.util.MsgBuffer;
+import mv.robotics.sign.pipeline.FrameFilter;
+
+/**
+ * Renders an animation to a capture log as fast as possible without a
+ * display or a board.  Frames go through the same filters and encoding
+ * as Display.render() and are stamped with the time they would have been
+ * shown at the frame rate, so the log replays at the right speed.  The
+ * animation runs off a manual clock stepped a frame at a time, so it
+ * moves exactly as it would live no matter how fast it renders.  This
+ * runs fine headless.
+ *
+ * @author David Vogt (david@kondra.com)
+ * @version Oct-18-26
+ */
+public class OfflineRenderer
+{
+   private FrameFilter[] filters;   /* output pipeline stages */
+   private int fps;                 /* frame rate to stamp the frames at */
+
+   /**
+    * Create a renderer.
+    *
+    * @param fps   frame rate the frames are stamped at
+    */
+   public OfflineRenderer(int fps)
+   {
+      this.fps = Math.max(fps,1);
+      filters = new FrameFilter[0];
+   }
+
+   /**
+    * Add a filter to the end of the output pipeline.
+    *
+    * @param filter   the filter to add
+    */
+   public void addFilter(FrameFilter filter)
+   {
+      FrameFilter[] list = new FrameFilter[filters.length+1];
+      System.arraycopy(filters,0,list,0,filters.length);
+      list[filters.length] = filter;
+      filters = list;
+   }
+
+   /**
+    * Run an animation from the start for the specified number of frames.
+    *
+    * @param animation   the animation to render
+    * @param frames      the number of frames to render
+    * @param recorder    where the frames go
+    * @return the time it took in ns
+    */
+   public long render(Animation animation,int frames,FrameRecorder recorder) throws Exception
+   {
+      int[] pixels = new int[Display.WIDTH*Display.HEIGHT];
+      MsgBuffer buf = new MsgBuffer(pixels.length*3);
+      long period = 1000000000L / fps;
+      long start = System.nanoTime();
+      ManualClock clock = new ManualClock();
+      AnimationTimer timer = new AnimationTimer(clock);
+
+      animation.start();
+      try {
+         for(int i=0;i<frames;i++)
+         {
+            clock.set(i*period);
+            BufferedImage img = timer.tick(animation);
+            img.getRGB(0,0,Display.WIDTH,Display.HEIGHT,pixels,0,Display.WIDTH);
+            for(FrameFilter filter : filters)
+               filter.filter(pixels);
+
+            buf.clear();
+            new ImageDataMsg(pixels).writeTo(buf);
+            recorder.record(i*period,Display.MSG_TYPE_IMAGE_DATA,buf.array(),0,buf.position());
+         }
+      } finally {
+         animation.stop();
+      }
+      recorder.flush();
+
+      return(System.nanoTime() - start);
+   }
+
+   /**
+    * Render an animation to a file.
+    *
+    * @param animation   the animation to render
+    * @param frames      the number of frames to render
+    * @param out         the log to write
+    * @return the time it took in ns
+    */
+   public long render(Animation animation,int frames,Path out) throws Exception
+   {
+      FrameRecorder recorder = new FrameRecorder(out,Display.WIDTH,Display.HEIGHT);
+      try {
+         return(render(animation,frames,recorder));
+      } finally {
+         recorder.close();
+      }
+   }
+}
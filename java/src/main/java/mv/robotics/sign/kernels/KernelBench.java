@@ -0,0 +1,134 @@
+/**
+ * (C) Copyright 2026, David Vogt, All rights reserved.
+ */
+package mv.robotics.sign.kernels;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Random;
+
+/**
+ * Times the kernels at a single panel (300 pixels), ten panels and a
+ * hundred panels.  Each kernel runs long enough to get compiled before
+ * it's timed.  Only one implementation is timed per run since the jit
+ * compiles the calls differently once it has seen both, so compare them
+ * with:
+ * <pre>
+ *   java mv.robotics.sign.kernels.KernelBench scalar [millis per run]
+ *   java mv.robotics.sign.kernels.KernelBench swar [millis per run]
+ * </pre>
+ *
+ * @author David Vogt (david@kondra.com)
+ * @version Oct-18-26
+ */
+public class KernelBench
+{
+   /* canvas sizes to time */
+   static private final int[] SIZES = { 300, 3000, 30000 };
+
+   /* default time per kernel and size */
+   static private final long RUN_MILLIS = 500;
+
+   private int[] from;              /* first frame */
+   private int[] to;                /* second frame */
+   private int[] dst;               /* kernel output */
+   private int[] lutR;              /* lookup tables */
+   private int[] lutG;
+   private int[] lutB;
+   private ByteBuffer bytes;        /* packed output */
+
+   private KernelBench(int size)
+   {
+      Random random = new Random(size);
+      from = new int[size];
+      to = new int[size];
+      dst = new int[size];
+      for(int i=0;i<size;i++)
+      {
+         from[i] = random.nextInt();
+         to[i] = random.nextInt();
+      }
+
+      lutR = new int[256];
+      lutG = new int[256];
+      lutB = new int[256];
+      for(int i=0;i<256;i++)
+      {
+         int v = (int)Math.round(Math.pow(i/255.0,2.2)*255);
+         lutR[i] = v << 16;
+         lutG[i] = v << 8;
+         lutB[i] = v;
+      }
+
+      bytes = ByteBuffer.allocate(size*3).order(ByteOrder.LITTLE_ENDIAN);
+   }
+
+   /**
+    * Run one kernel.
+    */
+   private void run(PixelKernels kernels,int op)
+   {
+      int len = from.length;
+      switch(op)
+      {
+         case 0:
+            kernels.blend(from,to,dst,0,len,100);
+            break;
+         case 1:
+            System.arraycopy(from,0,dst,0,len);
+            kernels.scale(dst,0,len,40000);
+            break;
+         case 2:
+            System.arraycopy(from,0,dst,0,len);
+            kernels.lut(dst,0,len,lutR,lutG,lutB);
+            break;
+         default:
+            kernels.packRgb(from,0,len,bytes,0);
+            break;
+      }
+   }
+
+   /**
+    * Return the average ns per pixel for a kernel.
+    */
+   private double time(PixelKernels kernels,int op,long millis)
+   {
+      /* warm up so we're timing compiled code */
+      long end = System.currentTimeMillis() + millis/2;
+      while(System.currentTimeMillis() < end)
+         run(kernels,op);
+
+      long count = 0;
+      long start = System.nanoTime();
+      long stop = start + (millis * 1000000);
+      long now;
+      do {
+         for(int i=0;i<16;i++)
+            run(kernels,op);
+         count += 16;
+         now = System.nanoTime();
+      } while(now < stop);
+
+      return((double)(now - start) / (count * from.length));
+   }
+
+   static public void main(String[] args)
+   {
+      PixelKernels kernels = PixelKernels.get();
+      if(args.length > 0)
+         kernels = args[0].equals("scalar") ? PixelKernels.scalar() : PixelKernels.swar();
+      long millis = (args.length > 1) ? Long.parseLong(args[1]) : RUN_MILLIS;
+      String[] ops = { "blend", "scale", "lut", "packRgb" };
+
+      System.out.println(kernels.getName()+" kernels, selected: "+PixelKernels.get().getName());
+      System.out.println(String.format("%-8s %6s %8s","kernel","pixels","ns/px"));
+      for(int op=0;op<ops.length;op++)
+      {
+         for(int size : SIZES)
+         {
+            KernelBench bench = new KernelBench(size);
+            System.out.println(String.format("%-8s %6d %8.3f",ops[op],size,bench.time(kernels,op,millis)));
+         }
+      }
+   }
+}
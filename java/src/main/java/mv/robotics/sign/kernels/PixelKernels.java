@@ -0,0 +1,197 @@
+/**
+ * (C) Copyright 2026, David Vogt, All rights reserved.
+ */
+package mv.robotics.sign.kernels;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * The per pixel integer math shared by compositing, the output pipeline
+ * and the encoder.  Pixels are ARGB ints stacked in horizontal rows and
+ * every kernel works on a range of them so callers can split large
+ * canvases up however they like.
+ *
+ * There are two implementations.  The scalar one works a channel at a
+ * time and is the reference.  The SWAR one packs several channels into
+ * each int so one operation does the work of several.  get()
+ * picks the SWAR kernels unless -Dsign.kernels=scalar is given or they
+ * don't match the reference on this jvm, which is checked once up front.
+ * Both give bit for bit the same results.
+ *
+ * @author David Vogt (david@kondra.com)
+ * @version Oct-18-26
+ */
+abstract public class PixelKernels
+{
+   /* alpha that takes all of the second frame in blend() */
+   static public final int ALPHA_ONE = 256;
+
+   /* scale that leaves the channels alone in scale() */
+   static public final int SCALE_ONE = 65536;
+
+   /* number of pixels in the self check */
+   static private final int CHECK_SIZE = 67;
+
+   static private final PixelKernels SCALAR = new ScalarKernels();
+   static private final PixelKernels SWAR = new SwarKernels();
+   static private final PixelKernels SELECTED = select();
+
+   /**
+    * Return the kernels selected for this jvm.
+    */
+   static public PixelKernels get()
+   {
+      return(SELECTED);
+   }
+
+   /**
+    * Return the scalar reference kernels.
+    */
+   static public PixelKernels scalar()
+   {
+      return(SCALAR);
+   }
+
+   /**
+    * Return the SWAR kernels.
+    */
+   static public PixelKernels swar()
+   {
+      return(SWAR);
+   }
+
+   /**
+    * Return the name of the implementation.
+    */
+   abstract public String getName();
+
+   /**
+    * Blend two frames, dst = from + (to - from) * alpha / 256 for each
+    * channel including alpha.  The destination may be either source.
+    *
+    * @param from     the frame at alpha 0
+    * @param to       the frame at alpha ALPHA_ONE
+    * @param dst      where the result goes
+    * @param offset   first pixel to blend
+    * @param len      number of pixels to blend
+    * @param alpha    0 to ALPHA_ONE
+    */
+   abstract public void blend(int[] from,int[] to,int[] dst,int offset,int len,int alpha);
+
+   /**
+    * Scale the color channels in place, alpha is left alone.
+    *
+    * @param pixels   the pixel data
+    * @param offset   first pixel to scale
+    * @param len      number of pixels to scale
+    * @param scale    16.16 fixed point scale from 0 to SCALE_ONE
+    */
+   abstract public void scale(int[] pixels,int offset,int len,int scale);
+
+   /**
+    * Map each color channel through a lookup table in place, alpha is
+    * left alone.  The tables hold 256 values already shifted into their
+    * channel's position (0xRR0000, 0xGG00 and 0xBB) so the results just
+    * get or'ed together.
+    *
+    * @param pixels   the pixel data
+    * @param offset   first pixel to map
+    * @param len      number of pixels to map
+    * @param lutR     red table
+    * @param lutG     green table
+    * @param lutB     blue table
+    */
+   abstract public void lut(int[] pixels,int offset,int len,int[] lutR,int[] lutG,int[] lutB);
+
+   /**
+    * Pack pixels as r,g,b bytes, dropping alpha.
+    *
+    * @param pixels   the pixel data
+    * @param offset   first pixel to pack
+    * @param len      number of pixels to pack
+    * @param dst      little endian buffer with room for len*3 bytes at pos
+    * @param pos      where the bytes go
+    */
+   abstract public void packRgb(int[] pixels,int offset,int len,ByteBuffer dst,int pos);
+
+   /**
+    * Pick the kernels to use.
+    */
+   static private PixelKernels select()
+   {
+      String name = System.getProperty("sign.kernels","swar");
+      if(name.equals("scalar"))
+         return(SCALAR);
+
+      if(!matches(SWAR,SCALAR))
+      {
+         System.out.println("swar pixel kernels failed their self check, using scalar");
+         return(SCALAR);
+      }
+      return(SWAR);
+   }
+
+   /**
+    * Return true if two implementations agree on every kernel.  The odd
+    * size and offset cover the tails of the unrolled loops.
+    */
+   static private boolean matches(PixelKernels a,PixelKernels b)
+   {
+      Random random = new Random(42);
+      int[] src = new int[CHECK_SIZE];
+      int[] dst = new int[CHECK_SIZE];
+      for(int i=0;i<CHECK_SIZE;i++)
+      {
+         src[i] = random.nextInt();
+         dst[i] = random.nextInt();
+      }
+      src[0] = 0xffffffff;
+      dst[0] = 0;
+
+      int[] lutR = new int[256];
+      int[] lutG = new int[256];
+      int[] lutB = new int[256];
+      for(int i=0;i<256;i++)
+      {
+         lutR[i] = (255-i) << 16;
+         lutG[i] = ((i*i) >> 8) << 8;
+         lutB[i] = i >> 1;
+      }
+
+      for(int alpha : new int[] { 0, 1, 128, 255, ALPHA_ONE })
+      {
+         int[] x = dst.clone();
+         int[] y = dst.clone();
+         a.blend(x,src,x,1,CHECK_SIZE-1,alpha);
+         b.blend(y,src,y,1,CHECK_SIZE-1,alpha);
+         if(!Arrays.equals(x,y))
+            return(false);
+      }
+
+      for(int scale : new int[] { 0, 1, 32768, 65535, SCALE_ONE })
+      {
+         int[] x = src.clone();
+         int[] y = src.clone();
+         a.scale(x,1,CHECK_SIZE-1,scale);
+         b.scale(y,1,CHECK_SIZE-1,scale);
+         if(!Arrays.equals(x,y))
+            return(false);
+      }
+
+      int[] x = src.clone();
+      int[] y = src.clone();
+      a.lut(x,1,CHECK_SIZE-1,lutR,lutG,lutB);
+      b.lut(y,1,CHECK_SIZE-1,lutR,lutG,lutB);
+      if(!Arrays.equals(x,y))
+         return(false);
+
+      ByteBuffer bx = ByteBuffer.allocate(CHECK_SIZE*3+1).order(ByteOrder.LITTLE_ENDIAN);
+      ByteBuffer by = ByteBuffer.allocate(CHECK_SIZE*3+1).order(ByteOrder.LITTLE_ENDIAN);
+      a.packRgb(src,1,CHECK_SIZE-1,bx,1);
+      b.packRgb(src,1,CHECK_SIZE-1,by,1);
+      return(bx.equals(by));
+   }
+}
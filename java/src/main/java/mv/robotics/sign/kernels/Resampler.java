@@ -0,0 +1,382 @@
+/**
+ * (C) Copyright 2026, David Vogt, All rights reserved.
+ */
+package mv.robotics.sign.kernels;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Scales ARGB images with an area average or Lanczos filter.  Scaling is
+ * separable, each row is filtered horizontally into a scratch buffer and
+ * the scratch columns are then filtered vertically.  Which source pixels
+ * feed each output pixel and how much is worked out once per geometry as
+ * 14bit fixed point weights that sum to exactly one, so the per pixel work
+ * is integer multiply and add.  The weight tables are shared by every
+ * resampler with the same geometry.
+ *
+ * Area averaging weighs each source pixel by how much of the output pixel
+ * it covers, which is the right thing for shrinking a large image down to
+ * the leds.  Lanczos keeps more detail and edges sharper, at the cost of
+ * a little ringing.
+ *
+ * A resampler keeps its scratch buffer, so it isn't thread safe.
+ *
+ * @author David Vogt (david@kondra.com)
+ * @version Oct-18-26
+ */
+public class Resampler
+{
+   /**
+    * Resampling filters.
+    */
+   public enum Filter
+   {
+      AREA,             /* average of the covered source area */
+      LANCZOS           /* windowed sinc, 3 lobes */
+   }
+
+   /* fractional bits of the weights */
+   static private final int WEIGHT_BITS = 14;
+   static private final int WEIGHT_ONE = 1 << WEIGHT_BITS;
+
+   /* fractional bits kept between the passes */
+   static private final int MID_BITS = 6;
+
+   /* lobes of the Lanczos filter */
+   static private final int LANCZOS_LOBES = 3;
+
+   /* max number of weight tables kept */
+   static private final int MAX_TABLES = 32;
+
+   /* tables by geometry, see weights() */
+   static private final Map<String,Weights> tables = new HashMap<>();
+
+   /**
+    * The weights for one dimension.  Output pixel i takes count[i] source
+    * pixels starting at start[i], weighted by weight[i*taps] onward.
+    */
+   static private class Weights
+   {
+      int taps;                       /* max source pixels per output pixel */
+      int[] start;                    /* first source pixel */
+      int[] count;                    /* number of source pixels */
+      int[] weight;                   /* weights, taps per output pixel */
+   }
+
+   private int srcWidth;              /* source size */
+   private int srcHeight;
+   private int dstWidth;              /* output size */
+   private int dstHeight;
+   private Weights horz;              /* weights across */
+   private Weights vert;              /* weights down */
+   private int[] mid;                 /* horizontally filtered rows, 4 ints a pixel */
+
+   /**
+    * Create a resampler for a geometry.
+    *
+    * @param srcWidth    width of the source
+    * @param srcHeight   height of the source
+    * @param dstWidth    width of the output
+    * @param dstHeight   height of the output
+    * @param filter      the filter to use
+    */
+   public Resampler(int srcWidth,int srcHeight,int dstWidth,int dstHeight,Filter filter)
+   {
+      if((srcWidth <= 0) || (srcHeight <= 0) || (dstWidth <= 0) || (dstHeight <= 0))
+         throw(new IllegalArgumentException("Bad geometry "+srcWidth+"x"+srcHeight+" to "+dstWidth+"x"+dstHeight));
+
+      this.srcWidth = srcWidth;
+      this.srcHeight = srcHeight;
+      this.dstWidth = dstWidth;
+      this.dstHeight = dstHeight;
+      horz = weights(srcWidth,dstWidth,filter);
+      vert = weights(srcHeight,dstHeight,filter);
+      mid = new int[srcHeight*dstWidth*4];
+   }
+
+   /**
+    * Return the width of the source.
+    */
+   public int getSrcWidth()
+   {
+      return(srcWidth);
+   }
+
+   /**
+    * Return the height of the source.
+    */
+   public int getSrcHeight()
+   {
+      return(srcHeight);
+   }
+
+   /**
+    * Return the width of the output.
+    */
+   public int getDstWidth()
+   {
+      return(dstWidth);
+   }
+
+   /**
+    * Return the height of the output.
+    */
+   public int getDstHeight()
+   {
+      return(dstHeight);
+   }
+
+   /**
+    * Scale an image to a new size.
+    *
+    * @param src      the image
+    * @param width    width of the result
+    * @param height   height of the result
+    * @param filter   the filter to use
+    * @return a new ARGB image
+    */
+   static public BufferedImage scale(BufferedImage src,int width,int height,Filter filter)
+   {
+      return(new Resampler(src.getWidth(),src.getHeight(),width,height,filter).resample(src));
+   }
+
+   /**
+    * Scale an image.
+    *
+    * @param src   the image, the size this resampler was created for
+    * @return a new ARGB image
+    */
+   public BufferedImage resample(BufferedImage src)
+   {
+      int[] in = src.getRGB(0,0,srcWidth,srcHeight,null,0,srcWidth);
+      BufferedImage dst = new BufferedImage(dstWidth,dstHeight,BufferedImage.TYPE_INT_ARGB);
+      int[] out = ((DataBufferInt)dst.getRaster().getDataBuffer()).getData();
+      resample(in,0,srcWidth,out,0,dstWidth);
+      return(dst);
+   }
+
+   /**
+    * Scale ARGB pixels.
+    *
+    * @param src         source pixels
+    * @param srcOff      first source pixel
+    * @param srcStride   distance between source rows
+    * @param dst         output pixels
+    * @param dstOff      first output pixel
+    * @param dstStride   distance between output rows
+    */
+   public void resample(int[] src,int srcOff,int srcStride,int[] dst,int dstOff,int dstStride)
+   {
+      /* across, keeping MID_BITS of fraction */
+      int[] hs = horz.start;
+      int[] hc = horz.count;
+      int[] hw = horz.weight;
+      int ht = horz.taps;
+      int round = 1 << (WEIGHT_BITS - MID_BITS - 1);
+      for(int y=0,m=0;y<srcHeight;y++)
+      {
+         int row = srcOff + (y*srcStride);
+         for(int x=0;x<dstWidth;x++,m+=4)
+         {
+            int a = round;
+            int r = round;
+            int g = round;
+            int b = round;
+            int s = row + hs[x];
+            for(int k=0,w=x*ht,n=hc[x];k<n;k++,w++)
+            {
+               int pixel = src[s+k];
+               int wt = hw[w];
+               a += (pixel >>> 24) * wt;
+               r += ((pixel >> 16) & 0xff) * wt;
+               g += ((pixel >> 8) & 0xff) * wt;
+               b += (pixel & 0xff) * wt;
+            }
+            mid[m] = a >> (WEIGHT_BITS - MID_BITS);
+            mid[m+1] = r >> (WEIGHT_BITS - MID_BITS);
+            mid[m+2] = g >> (WEIGHT_BITS - MID_BITS);
+            mid[m+3] = b >> (WEIGHT_BITS - MID_BITS);
+         }
+      }
+
+      /* down, dropping the fraction and clamping the Lanczos overshoot */
+      int[] vs = vert.start;
+      int[] vc = vert.count;
+      int[] vw = vert.weight;
+      int vt = vert.taps;
+      int shift = WEIGHT_BITS + MID_BITS;
+      round = 1 << (shift - 1);
+      int rowInts = dstWidth*4;
+      for(int y=0;y<dstHeight;y++)
+      {
+         int out = dstOff + (y*dstStride);
+         int first = vs[y]*rowInts;
+         int n = vc[y];
+         int w0 = y*vt;
+         for(int x=0,col=first;x<dstWidth;x++,col+=4)
+         {
+            int a = round;
+            int r = round;
+            int g = round;
+            int b = round;
+            for(int k=0,m=col;k<n;k++,m+=rowInts)
+            {
+               int wt = vw[w0+k];
+               a += mid[m] * wt;
+               r += mid[m+1] * wt;
+               g += mid[m+2] * wt;
+               b += mid[m+3] * wt;
+            }
+            dst[out+x] = (clamp(a >> shift) << 24) | (clamp(r >> shift) << 16) |
+               (clamp(g >> shift) << 8) | clamp(b >> shift);
+         }
+      }
+   }
+
+   /**
+    * Clamp a channel to 0-255.
+    */
+   static private int clamp(int v)
+   {
+      return((v < 0) ? 0 : ((v > 255) ? 255 : v));
+   }
+
+   /**
+    * Return the weights for scaling one dimension, from the table cache if
+    * they've been worked out before.
+    */
+   static private Weights weights(int src,int dst,Filter filter)
+   {
+      String key = filter+":"+src+":"+dst;
+      synchronized(tables) {
+         Weights w = tables.get(key);
+         if(w == null)
+         {
+            w = (filter == Filter.AREA) ? areaWeights(src,dst) : lanczosWeights(src,dst);
+            if(tables.size() >= MAX_TABLES)
+               tables.clear();
+            tables.put(key,w);
+         }
+         return(w);
+      }
+   }
+
+   /**
+    * Work out area average weights.  Output pixel i covers source pixels
+    * i*src/dst to (i+1)*src/dst and each source pixel is weighed by how
+    * much of that span it covers.
+    */
+   static private Weights areaWeights(int src,int dst)
+   {
+      double span = (double)src / dst;
+      int taps = (int)Math.ceil(span) + 1;
+      double[] f = new double[taps];
+
+      Weights w = alloc(dst,taps);
+      for(int i=0;i<dst;i++)
+      {
+         double lo = i*span;
+         double hi = Math.min((i+1)*span,src);
+         int first = (int)Math.floor(lo);
+         int n = 0;
+         for(int j=first;(j<hi) && (j<src);j++)
+            f[n++] = Math.min(j+1,hi) - Math.max(j,lo);
+         store(w,i,first,f,n);
+      }
+      return(w);
+   }
+
+   /**
+    * Work out Lanczos weights.  When shrinking, the filter is stretched
+    * to the size of an output pixel so every source pixel contributes.
+    * Taps that fall off the edge are folded onto the edge pixel.
+    */
+   static private Weights lanczosWeights(int src,int dst)
+   {
+      double scale = Math.min((double)dst / src,1.0);
+      double support = LANCZOS_LOBES / scale;
+      int taps = Math.min((int)Math.ceil(support*2) + 1,src);
+      double[] f = new double[taps];
+
+      Weights w = alloc(dst,taps);
+      for(int i=0;i<dst;i++)
+      {
+         double center = (i + 0.5) * src / dst;
+         int lo = (int)Math.floor(center - support);
+         int hi = (int)Math.ceil(center + support);
+         int first = Math.max(lo,0);
+         int last = Math.min(hi,src-1);
+         while(last-first+1 > taps)
+         {
+            /* trim the tap furthest from the center */
+            if((center - (first + 0.5)) > ((last + 0.5) - center))
+               first++;
+            else
+               last--;
+         }
+         int n = last - first + 1;
+         for(int k=0;k<n;k++)
+            f[k] = 0;
+         for(int j=lo;j<=hi;j++)
+         {
+            int k = Math.min(Math.max(j,first),last) - first;
+            f[k] += lanczos((j + 0.5 - center) * scale);
+         }
+         store(w,i,first,f,n);
+      }
+      return(w);
+   }
+
+   /**
+    * The Lanczos kernel.
+    */
+   static private double lanczos(double x)
+   {
+      if(x == 0)
+         return(1);
+      if((x <= -LANCZOS_LOBES) || (x >= LANCZOS_LOBES))
+         return(0);
+      double px = Math.PI * x;
+      return(LANCZOS_LOBES * Math.sin(px) * Math.sin(px / LANCZOS_LOBES) / (px * px));
+   }
+
+   static private Weights alloc(int dst,int taps)
+   {
+      Weights w = new Weights();
+      w.taps = taps;
+      w.start = new int[dst];
+      w.count = new int[dst];
+      w.weight = new int[dst*taps];
+      return(w);
+   }
+
+   /**
+    * Convert one output pixel's weights to fixed point.  The rounding error
+    * goes to the largest weight so they always sum to exactly one and flat
+    * areas stay flat.
+    */
+   static private void store(Weights w,int i,int first,double[] f,int n)
+   {
+      double sum = 0;
+      for(int k=0;k<n;k++)
+         sum += f[k];
+
+      int base = i*w.taps;
+      int total = 0;
+      int biggest = 0;
+      for(int k=0;k<n;k++)
+      {
+         int v = (int)Math.round(f[k] * WEIGHT_ONE / sum);
+         w.weight[base+k] = v;
+         total += v;
+         if(v > w.weight[base+biggest])
+            biggest = k;
+      }
+      w.weight[base+biggest] += WEIGHT_ONE - total;
+      w.start[i] = first;
+      w.count[i] = n;
+   }
+}
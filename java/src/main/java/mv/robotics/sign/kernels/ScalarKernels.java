@@ -0,0 +1,73 @@
+/**
+ * (C) Copyright 2026, David Vogt, All rights reserved.
+ */
+package mv.robotics.sign.kernels;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Reference kernels that work a channel at a time.
+ *
+ * @author David Vogt (david@kondra.com)
+ * @version Oct-18-26
+ */
+class ScalarKernels extends PixelKernels
+{
+   @Override
+   public String getName()
+   {
+      return("scalar");
+   }
+
+   @Override
+   public void blend(int[] from,int[] to,int[] dst,int offset,int len,int alpha)
+   {
+      int inv = ALPHA_ONE - alpha;
+      for(int i=offset,end=offset+len;i<end;i++)
+      {
+         int f = from[i];
+         int t = to[i];
+         int a = (((f >>> 24) * inv) + ((t >>> 24) * alpha)) >> 8;
+         int r = ((((f >> 16) & 0xff) * inv) + (((t >> 16) & 0xff) * alpha)) >> 8;
+         int g = ((((f >> 8) & 0xff) * inv) + (((t >> 8) & 0xff) * alpha)) >> 8;
+         int b = (((f & 0xff) * inv) + ((t & 0xff) * alpha)) >> 8;
+         dst[i] = (a << 24) | (r << 16) | (g << 8) | b;
+      }
+   }
+
+   @Override
+   public void scale(int[] pixels,int offset,int len,int scale)
+   {
+      for(int i=offset,end=offset+len;i<end;i++)
+      {
+         int pixel = pixels[i];
+         int r = (((pixel >> 16) & 0xff) * scale) >>> 16;
+         int g = (((pixel >> 8) & 0xff) * scale) >>> 16;
+         int b = ((pixel & 0xff) * scale) >>> 16;
+         pixels[i] = (pixel & 0xff000000) | (r << 16) | (g << 8) | b;
+      }
+   }
+
+   @Override
+   public void lut(int[] pixels,int offset,int len,int[] lutR,int[] lutG,int[] lutB)
+   {
+      for(int i=offset,end=offset+len;i<end;i++)
+      {
+         int pixel = pixels[i];
+         pixels[i] = (pixel & 0xff000000) | lutR[(pixel >> 16) & 0xff] |
+            lutG[(pixel >> 8) & 0xff] | lutB[pixel & 0xff];
+      }
+   }
+
+   @Override
+   public void packRgb(int[] pixels,int offset,int len,ByteBuffer dst,int pos)
+   {
+      for(int i=offset,end=offset+len;i<end;i++,pos+=3)
+      {
+         int pixel = pixels[i];
+         dst.put(pos,(byte)(pixel >> 16));
+         dst.put(pos+1,(byte)(pixel >> 8));
+         dst.put(pos+2,(byte)pixel);
+      }
+   }
+}
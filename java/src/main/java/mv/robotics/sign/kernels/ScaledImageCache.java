@@ -0,0 +1,124 @@
+/**
+ * (C) Copyright 2026, David Vogt, All rights reserved.
+ */
+package mv.robotics.sign.kernels;
+
+import java.awt.image.BufferedImage;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Keeps recently scaled copies of images so animations that show the same
+ * image at the same size over and over only pay for the resampling once.
+ * Entries are found by source image (by identity, not contents), size and
+ * filter, and the least recently used ones are dropped when the cached
+ * images add up to more than the pixel budget.  The cache holds on to the
+ * source images of its entries.
+ *
+ * @author David Vogt (david@kondra.com)
+ * @version Oct-18-26
+ */
+public class ScaledImageCache
+{
+   /**
+    * What an entry was scaled from and to.
+    */
+   static private class Key
+   {
+      BufferedImage src;
+      int width;
+      int height;
+      Resampler.Filter filter;
+
+      Key(BufferedImage src,int width,int height,Resampler.Filter filter)
+      {
+         this.src = src;
+         this.width = width;
+         this.height = height;
+         this.filter = filter;
+      }
+
+      @Override
+      public boolean equals(Object o)
+      {
+         if(!(o instanceof Key))
+            return(false);
+         Key k = (Key)o;
+         return((k.src == src) && (k.width == width) && (k.height == height) && (k.filter == filter));
+      }
+
+      @Override
+      public int hashCode()
+      {
+         return((((System.identityHashCode(src)*31) + width)*31 + height)*31 + filter.ordinal());
+      }
+   }
+
+   private Map<Key,BufferedImage> entries;   /* scaled images, least recent first */
+   private long maxPixels;            /* pixel budget */
+   private long pixels;               /* pixels cached */
+
+   /**
+    * Create a cache.
+    *
+    * @param maxPixels   max number of scaled pixels to keep
+    */
+   public ScaledImageCache(long maxPixels)
+   {
+      this.maxPixels = maxPixels;
+      entries = new LinkedHashMap<>(16,0.75f,true);
+   }
+
+   /**
+    * Return the number of scaled pixels held.
+    */
+   public synchronized long getPixels()
+   {
+      return(pixels);
+   }
+
+   /**
+    * Return an image scaled to a size, scaling it if it isn't cached.  The
+    * returned image is shared and must not be modified.
+    *
+    * @param src      the image
+    * @param width    width to scale to
+    * @param height   height to scale to
+    * @param filter   the filter to use
+    * @return the scaled image, or src itself if it's already that size
+    */
+   public synchronized BufferedImage get(BufferedImage src,int width,int height,Resampler.Filter filter)
+   {
+      if((src.getWidth() == width) && (src.getHeight() == height))
+         return(src);
+
+      Key key = new Key(src,width,height,filter);
+      BufferedImage img = entries.get(key);
+      if(img != null)
+         return(img);
+
+      img = Resampler.scale(src,width,height,filter);
+      entries.put(key,img);
+      pixels += (long)width*height;
+
+      /* drop the least recently used, but always keep the new one */
+      Iterator<Map.Entry<Key,BufferedImage>> it = entries.entrySet().iterator();
+      while((pixels > maxPixels) && (entries.size() > 1))
+      {
+         Key k = it.next().getKey();
+         pixels -= (long)k.width*k.height;
+         it.remove();
+      }
+      return(img);
+   }
+
+   /**
+    * Drop everything.
+    */
+   public synchronized void clear()
+   {
+      entries.clear();
+      pixels = 0;
+   }
+}
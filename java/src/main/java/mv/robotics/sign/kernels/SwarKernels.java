@@ -0,0 +1,73 @@
+/**
+ * (C) Copyright 2026, David Vogt, All rights reserved.
+ */
+package mv.robotics.sign.kernels;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Kernels that work on several channels per operation (SIMD within a
+ * register).  blend() splits a pixel into r,b and a,g pairs with 16 bits
+ * of room per channel so the products never carry into the next channel,
+ * two multiplies per pixel instead of eight.  packRgb() turns four pixels
+ * into three word sized stores.
+ *
+ * scale() and lut() are the scalar ones.  Lookups have no packed form,
+ * and scale's 24 bit products only fit two to a long, which measured
+ * far slower than the plain int loop the jit already vectorizes.
+ *
+ * @author David Vogt (david@kondra.com)
+ * @version Oct-18-26
+ */
+class SwarKernels extends ScalarKernels
+{
+   /* mask for the r,b and a,g channel pairs */
+   static private final int RB_MASK = 0x00ff00ff;
+
+   @Override
+   public String getName()
+   {
+      return("swar");
+   }
+
+   @Override
+   public void blend(int[] from,int[] to,int[] dst,int offset,int len,int alpha)
+   {
+      /* a channel is at most 255*256 so the pair never spills over */
+      int inv = ALPHA_ONE - alpha;
+      for(int i=offset,end=offset+len;i<end;i++)
+      {
+         int f = from[i];
+         int t = to[i];
+         int rb = ((((f & RB_MASK) * inv) + ((t & RB_MASK) * alpha)) >>> 8) & RB_MASK;
+         int ag = (((((f >>> 8) & RB_MASK) * inv) + (((t >>> 8) & RB_MASK) * alpha)) >>> 8) & RB_MASK;
+         dst[i] = rb | (ag << 8);
+      }
+   }
+
+   @Override
+   public void packRgb(int[] pixels,int offset,int len,ByteBuffer dst,int pos)
+   {
+      int i = offset;
+      int end = offset + len;
+      int p = pos;
+
+      /* four pixels (12 bytes) per iteration */
+      for(;i+4<=end;i+=4,p+=12)
+      {
+         int p0 = pixels[i];
+         int p1 = pixels[i+1];
+         int p2 = pixels[i+2];
+         int p3 = pixels[i+3];
+
+         /* bytes r0 g0 b0 r1 | g1 b1 r2 g2 | b2 r3 g3 b3 in little endian order */
+         dst.putInt(p,((p0 >> 16) & 0xff) | (p0 & 0xff00) | ((p0 & 0xff) << 16) | ((p1 & 0xff0000) << 8));
+         dst.putInt(p+4,((p1 >> 8) & 0xff) | ((p1 & 0xff) << 8) | (p2 & 0xff0000) | ((p2 & 0xff00) << 16));
+         dst.putInt(p+8,(p2 & 0xff) | ((p3 >> 8) & 0xff00) | ((p3 & 0xff00) << 8) | (p3 << 24));
+      }
+
+      /* whatever is left a byte at a time */
+      if(i < end)
+         super.packRgb(pixels,i,end-i,dst,p);
+   }
+}
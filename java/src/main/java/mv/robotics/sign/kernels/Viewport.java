@@ -0,0 +1,359 @@
+/**
+ * (C) Copyright 2026, David Vogt, All rights reserved.
+ */
+package mv.robotics.sign.kernels;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+
+/**
+ * A window onto a source image that can be panned, zoomed and rotated by
+ * fractions of a pixel.  Each output pixel is mapped back into the source
+ * and bilinearly filtered from the four source pixels around that spot, so
+ * slow motion glides instead of stepping a whole led at a time.
+ *
+ * The mapping is stepped across each row in 16.16 fixed point and the
+ * filter uses 8bit weights on channel pairs like the SWAR kernels, so an
+ * output pixel costs a few adds, shifts and six multiplies.  Zooming out
+ * more than 2:1 samples a copy of the source area averaged down to within
+ * 2:1 of the zoom, so distant views don't alias.  The copies come from a
+ * ScaledImageCache.
+ *
+ * A viewport isn't thread safe.
+ *
+ * @author David Vogt (david@kondra.com)
+ * @version Oct-18-26
+ */
+public class Viewport
+{
+   /**
+    * What the view shows outside the source.
+    */
+   public enum Edge
+   {
+      CLAMP,            /* the nearest edge pixel */
+      WRAP,             /* the source repeats */
+      BACKGROUND        /* the background color */
+   }
+
+   /* mask for the r,b and a,g channel pairs */
+   static private final int RB_MASK = 0x00ff00ff;
+
+   /* fixed point one */
+   static private final int ONE = 1 << 16;
+
+   /* default pixels of reduced copies kept */
+   static private final int CACHE_PIXELS = 1 << 20;
+
+   private int width;                 /* output size */
+   private int height;
+   private BufferedImage source;      /* the source image */
+   private ScaledImageCache cache;    /* reduced copies of the source */
+   private int[] pixels;              /* the sampled level's pixels */
+   private int levelWidth;            /* the sampled level's size */
+   private int levelHeight;
+   private double centerX;            /* source point at the center of the view */
+   private double centerY;
+   private double zoom;               /* output pixels per source pixel */
+   private double rotation;           /* radians, counterclockwise on screen */
+   private Edge edge;                 /* what's outside the source */
+   private int background;            /* ARGB outside the source */
+
+   /**
+    * Create a viewport.
+    *
+    * @param width    width of the output
+    * @param height   height of the output
+    */
+   public Viewport(int width,int height)
+   {
+      this(width,height,new ScaledImageCache(CACHE_PIXELS));
+   }
+
+   /**
+    * Create a viewport that shares a cache of reduced images.
+    *
+    * @param width    width of the output
+    * @param height   height of the output
+    * @param cache    where reduced copies of sources are kept
+    */
+   public Viewport(int width,int height,ScaledImageCache cache)
+   {
+      this.width = width;
+      this.height = height;
+      this.cache = cache;
+      zoom = 1;
+      edge = Edge.CLAMP;
+   }
+
+   /**
+    * Return the width of the output.
+    */
+   public int getWidth()
+   {
+      return(width);
+   }
+
+   /**
+    * Return the height of the output.
+    */
+   public int getHeight()
+   {
+      return(height);
+   }
+
+   /**
+    * Return the image being viewed.
+    */
+   public BufferedImage getSource()
+   {
+      return(source);
+   }
+
+   /**
+    * Return the source x shown at the center of the view.
+    */
+   public double getCenterX()
+   {
+      return(centerX);
+   }
+
+   /**
+    * Return the source y shown at the center of the view.
+    */
+   public double getCenterY()
+   {
+      return(centerY);
+   }
+
+   /**
+    * Return the zoom in output pixels per source pixel.
+    */
+   public double getZoom()
+   {
+      return(zoom);
+   }
+
+   /**
+    * Set the zoom in output pixels per source pixel.
+    *
+    * @param zoom   the zoom, above 1 magnifies
+    */
+   public void setZoom(double zoom)
+   {
+      this.zoom = zoom;
+   }
+
+   /**
+    * Return the rotation in radians, counterclockwise on screen.
+    */
+   public double getRotation()
+   {
+      return(rotation);
+   }
+
+   /**
+    * Set the rotation in radians, counterclockwise on screen.
+    *
+    * @param rotation   the rotation
+    */
+   public void setRotation(double rotation)
+   {
+      this.rotation = rotation;
+   }
+
+   /**
+    * Return what the view shows outside the source.
+    */
+   public Edge getEdge()
+   {
+      return(edge);
+   }
+
+   /**
+    * Set what the view shows outside the source.
+    *
+    * @param edge   the edge mode
+    */
+   public void setEdge(Edge edge)
+   {
+      this.edge = edge;
+   }
+
+   /**
+    * Return the color shown outside the source with Edge.BACKGROUND.
+    */
+   public int getBackground()
+   {
+      return(background);
+   }
+
+   /**
+    * Set the color shown outside the source with Edge.BACKGROUND.
+    *
+    * @param background   ARGB color
+    */
+   public void setBackground(int background)
+   {
+      this.background = background;
+   }
+
+   /**
+    * Set the image to view.  Sources are sampled as ARGB ints, other
+    * image types are converted once here.
+    *
+    * @param source   the image
+    */
+   public void setSource(BufferedImage source)
+   {
+      if(source.getType() != BufferedImage.TYPE_INT_ARGB)
+      {
+         BufferedImage copy = new BufferedImage(source.getWidth(),source.getHeight(),BufferedImage.TYPE_INT_ARGB);
+         int[] data = ((DataBufferInt)copy.getRaster().getDataBuffer()).getData();
+         source.getRGB(0,0,source.getWidth(),source.getHeight(),data,0,source.getWidth());
+         source = copy;
+      }
+      this.source = source;
+      pixels = null;
+   }
+
+   /**
+    * Set the source point shown at the center of the view.  Pixel x covers
+    * x to x+1 so the middle of the top left pixel is 0.5,0.5.
+    *
+    * @param x   source x
+    * @param y   source y
+    */
+   public void setCenter(double x,double y)
+   {
+      centerX = x;
+      centerY = y;
+   }
+
+   /**
+    * Render the view.
+    *
+    * @param dst      ARGB output pixels
+    * @param offset   first output pixel
+    * @param stride   distance between output rows
+    */
+   public void render(int[] dst,int offset,int stride)
+   {
+      selectLevel();
+
+      /* steps through the level per output pixel across and down */
+      double sx = (double)levelWidth / source.getWidth();
+      double sy = (double)levelHeight / source.getHeight();
+      double cos = Math.cos(rotation) / zoom;
+      double sin = Math.sin(rotation) / zoom;
+      int dux = fixed(cos * sx);
+      int dvx = fixed(sin * sy);
+      int duy = fixed(-sin * sx);
+      int dvy = fixed(cos * sy);
+
+      /* the level point under the middle of the top left output pixel, */
+      /* less half a pixel so integer coordinates land on pixel centers */
+      double ox = 0.5 - (width / 2.0);
+      double oy = 0.5 - (height / 2.0);
+      int u0 = fixed(((centerX + (ox * cos) - (oy * sin)) * sx) - 0.5);
+      int v0 = fixed(((centerY + (ox * sin) + (oy * cos)) * sy) - 0.5);
+
+      int[] src = pixels;
+      int w = levelWidth;
+      int maxX = levelWidth - 1;
+      int maxY = levelHeight - 1;
+      for(int y=0;y<height;y++,u0+=duy,v0+=dvy)
+      {
+         int out = offset + (y*stride);
+         int u = u0;
+         int v = v0;
+         for(int x=0;x<width;x++,u+=dux,v+=dvx)
+         {
+            int ix = u >> 16;
+            int iy = v >> 16;
+            int p00, p10, p01, p11;
+            if((ix >= 0) && (iy >= 0) && (ix < maxX) && (iy < maxY))
+            {
+               int i = (iy*w) + ix;
+               p00 = src[i];
+               p10 = src[i+1];
+               p01 = src[i+w];
+               p11 = src[i+w+1];
+            }
+            else
+            {
+               p00 = fetch(ix,iy);
+               p10 = fetch(ix+1,iy);
+               p01 = fetch(ix,iy+1);
+               p11 = fetch(ix+1,iy+1);
+            }
+            int fx = (u >> 8) & 0xff;
+            int fy = (v >> 8) & 0xff;
+            dst[out+x] = lerp(lerp(p00,p10,fx),lerp(p01,p11,fx),fy);
+         }
+      }
+   }
+
+   /**
+    * Pick the source or the reduced copy to sample for the zoom.
+    */
+   private void selectLevel()
+   {
+      int w = source.getWidth();
+      int h = source.getHeight();
+
+      /* halve until the zoom is within 2:1 of the level */
+      double scale = 1;
+      while((zoom < scale*0.5) && ((w*scale*0.5 >= 1) || (h*scale*0.5 >= 1)))
+         scale *= 0.5;
+      int lw = Math.max((int)Math.round(w*scale),1);
+      int lh = Math.max((int)Math.round(h*scale),1);
+      if((pixels != null) && (lw == levelWidth) && (lh == levelHeight))
+         return;
+
+      BufferedImage level = (scale == 1) ? source : cache.get(source,lw,lh,Resampler.Filter.AREA);
+      pixels = ((DataBufferInt)level.getRaster().getDataBuffer()).getData();
+      levelWidth = lw;
+      levelHeight = lh;
+   }
+
+   /**
+    * Return a level pixel, anywhere.
+    */
+   private int fetch(int x,int y)
+   {
+      if((x < 0) || (y < 0) || (x >= levelWidth) || (y >= levelHeight))
+      {
+         switch(edge)
+         {
+            case WRAP:
+               x = Math.floorMod(x,levelWidth);
+               y = Math.floorMod(y,levelHeight);
+               break;
+            case BACKGROUND:
+               return(background);
+            default:
+               x = Math.min(Math.max(x,0),levelWidth-1);
+               y = Math.min(Math.max(y,0),levelHeight-1);
+               break;
+         }
+      }
+      return(pixels[(y*levelWidth) + x]);
+   }
+
+   /**
+    * Blend two pixels, a + (b - a) * f / 256 for each channel.
+    */
+   static private int lerp(int a,int b,int f)
+   {
+      int inv = 256 - f;
+      int rb = ((((a & RB_MASK) * inv) + ((b & RB_MASK) * f)) >>> 8) & RB_MASK;
+      int ag = (((((a >>> 8) & RB_MASK) * inv) + (((b >>> 8) & RB_MASK) * f)) >>> 8) & RB_MASK;
+      return(rb | (ag << 8));
+   }
+
+   static private int fixed(double v)
+   {
+      return((int)Math.floor(v * ONE));
+   }
+}
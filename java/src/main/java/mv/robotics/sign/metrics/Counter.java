@@ -0,0 +1,49 @@
+/**
+ * (C) Copyright 2026, David Vogt, All rights reserved.
+ */
+package mv.robotics.sign.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A monotonically increasing counter.  Backed by a LongAdder so it can
+ * be bumped from any number of threads without contention.
+ * 
+ * @author David Vogt (david@kondra.com)
+ * @version Oct-18-26
+ */
+public class Counter
+{
+   private LongAdder adder;            /* the count */
+   
+   Counter()
+   {
+      adder = new LongAdder();
+   }
+   
+   /**
+    * Add one to the counter.
+    */
+   public void inc()
+   {
+      adder.increment();
+   }
+   
+   /**
+    * Add the specified amount to the counter.
+    * 
+    * @param n   the amount to add
+    */
+   public void add(long n)
+   {
+      adder.add(n);
+   }
+   
+   /**
+    * Return the current count.
+    */
+   public long get()
+   {
+      return(adder.sum());
+   }
+}
@@ -0,0 +1,19 @@
+/**
+ * (C) Copyright 2026, David Vogt, All rights reserved.
+ */
+package mv.robotics.sign.metrics;
+
+/**
+ * A value that is sampled when metrics are read rather than updated
+ * on the hot path.
+ * 
+ * @author David Vogt (david@kondra.com)
+ * @version Oct-18-26
+ */
+public interface Gauge
+{
+   /**
+    * Return the current value.
+    */
+   public long get();
+}
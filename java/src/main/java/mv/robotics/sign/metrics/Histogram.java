@@ -0,0 +1,143 @@
+/**
+ * (C) Copyright 2026, David Vogt, All rights reserved.
+ */
+package mv.robotics.sign.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A lock-free histogram for latencies in the style of HdrHistogram.  Values
+ * are placed in log-linear buckets: every power of two is split into 16
+ * linear sub-buckets so recorded values keep about 6% precision across the
+ * full range of a long with a fixed, small footprint.  Recording is a
+ * couple of bit operations and an atomic increment.
+ *
+ * @author David Vogt (david@kondra.com)
+ * @version Oct-18-26
+ */
+public class Histogram
+{
+   /* number of bits of precision within each power of two */
+   static private final int SUB_BITS = 4;
+   static private final int SUB_COUNT = 1 << SUB_BITS;
+
+   /* total number of buckets needed to cover all positive longs */
+   static private final int BUCKET_COUNT = (64 - SUB_BITS) * SUB_COUNT;
+
+   private AtomicLongArray buckets;    /* counts per bucket */
+   private LongAdder count;            /* total number of values */
+   private LongAdder sum;              /* total of all values */
+   private AtomicLong max;             /* largest value seen */
+
+   Histogram()
+   {
+      buckets = new AtomicLongArray(BUCKET_COUNT);
+      count = new LongAdder();
+      sum = new LongAdder();
+      max = new AtomicLong();
+   }
+
+   /**
+    * Record a value.  Negative values are recorded as zero.
+    *
+    * @param value   the value to record
+    */
+   public void record(long value)
+   {
+      if(value < 0)
+         value = 0;
+
+      buckets.incrementAndGet(index(value));
+      count.increment();
+      sum.add(value);
+
+      /* only contend on the max when it actually changes */
+      long m;
+      while((value > (m = max.get())) && !max.compareAndSet(m,value))
+         ;
+   }
+
+   /**
+    * Return the number of recorded values.
+    */
+   public long getCount()
+   {
+      return(count.sum());
+   }
+
+   /**
+    * Return the largest recorded value.
+    */
+   public long getMax()
+   {
+      return(max.get());
+   }
+
+   /**
+    * Return the mean of the recorded values.
+    */
+   public double getMean()
+   {
+      long n = count.sum();
+      return((n == 0) ? 0 : ((double)sum.sum() / n));
+   }
+
+   /**
+    * Return the value at the specified percentile.  The result is the
+    * upper bound of the bucket containing the percentile.
+    *
+    * @param percentile   the percentile in the range 0..100
+    */
+   public long getPercentile(double percentile)
+   {
+      /* count the buckets up front since recording may be going on */
+      long total = 0;
+      for(int i=0;i<BUCKET_COUNT;i++)
+         total += buckets.get(i);
+      if(total == 0)
+         return(0);
+
+      /* walk the buckets until we reach the target count */
+      long target = Math.max(1,(long)Math.ceil((percentile / 100.0) * total));
+      long seen = 0;
+      for(int i=0;i<BUCKET_COUNT;i++)
+      {
+         seen += buckets.get(i);
+         if(seen >= target)
+            return(Math.min(upperBound(i),max.get()));
+      }
+      return(max.get());
+   }
+
+   /**
+    * Return the bucket for a value.
+    */
+   static private int index(long value)
+   {
+      /* small values each get their own bucket */
+      if(value < SUB_COUNT)
+         return((int)value);
+
+      /* otherwise the top bit picks the power of two and the next */
+      /* SUB_BITS bits pick the linear sub-bucket within it */
+      int exp = 63 - Long.numberOfLeadingZeros(value);
+      int sub = (int)(value >>> (exp - SUB_BITS)) & (SUB_COUNT - 1);
+      return(((exp - SUB_BITS + 1) * SUB_COUNT) + sub);
+   }
+
+   /**
+    * Return the largest value that maps to the specified bucket.
+    */
+   static private long upperBound(int index)
+   {
+      if(index < SUB_COUNT)
+         return(index);
+
+      int exp = (index / SUB_COUNT) + SUB_BITS - 1;
+      int sub = index % SUB_COUNT;
+      long lower = ((long)(SUB_COUNT + sub)) << (exp - SUB_BITS);
+      return(lower + (1L << (exp - SUB_BITS)) - 1);
+   }
+}
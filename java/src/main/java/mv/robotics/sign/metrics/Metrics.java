@@ -0,0 +1,193 @@
+/**
+ * (C) Copyright 2026, David Vogt, All rights reserved.
+ */
+package mv.robotics.sign.metrics;
+
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.ObjectName;
+
+/**
+ * Process wide registry of named counters, gauges and histograms.  Hot
+ * paths should look up their metrics once (typically into static final
+ * fields) and then update them directly; the registry itself is only
+ * touched at startup and when metrics are read.
+ *
+ * Metrics can be read through JMX (see registerMBean()) or dumped to the
+ * console periodically (see startReporter()).
+ *
+ * @author David Vogt (david@kondra.com)
+ * @version Oct-18-26
+ */
+public class Metrics
+{
+   /* the jmx name the metrics are published under */
+   static public final String MBEAN_NAME = "mv.robotics.sign:type=Metrics";
+
+   static private final ConcurrentMap<String,Counter> counters = new ConcurrentHashMap<>();
+   static private final ConcurrentMap<String,Histogram> histograms = new ConcurrentHashMap<>();
+   static private final ConcurrentMap<String,Gauge> gauges = new ConcurrentHashMap<>();
+   static private ScheduledExecutorService reporter;
+
+   private Metrics()
+   {
+   }
+
+   /**
+    * Get or create the named counter.
+    *
+    * @param name   the counter name
+    */
+   static public Counter counter(String name)
+   {
+      Counter counter = counters.get(name);
+      if(counter == null)
+      {
+         counters.putIfAbsent(name,new Counter());
+         counter = counters.get(name);
+      }
+      return(counter);
+   }
+
+   /**
+    * Get or create the named histogram.
+    *
+    * @param name   the histogram name
+    */
+   static public Histogram histogram(String name)
+   {
+      Histogram histogram = histograms.get(name);
+      if(histogram == null)
+      {
+         histograms.putIfAbsent(name,new Histogram());
+         histogram = histograms.get(name);
+      }
+      return(histogram);
+   }
+
+   /**
+    * Register a gauge, replacing any existing gauge with the same name.
+    *
+    * @param name    the gauge name
+    * @param gauge   the gauge
+    */
+   static public void gauge(String name,Gauge gauge)
+   {
+      gauges.put(name,gauge);
+   }
+
+   /**
+    * Remove a gauge.
+    *
+    * @param name   the gauge name
+    */
+   static public void removeGauge(String name)
+   {
+      gauges.remove(name);
+   }
+
+   /**
+    * Take a snapshot of every metric as a flat, sorted map of values.
+    * Histograms are expanded into count, mean, p50, p99 and max entries.
+    */
+   static public Map<String,Number> snapshot()
+   {
+      Map<String,Number> values = new TreeMap<>();
+
+      for(Map.Entry<String,Counter> e : counters.entrySet())
+         values.put(e.getKey(),e.getValue().get());
+
+      for(Map.Entry<String,Gauge> e : gauges.entrySet())
+      {
+         try {
+            values.put(e.getKey(),e.getValue().get());
+         } catch(Exception ex) {
+            /* a broken gauge shouldn't stop the rest from being read */
+         }
+      }
+
+      for(Map.Entry<String,Histogram> e : histograms.entrySet())
+      {
+         Histogram h = e.getValue();
+         values.put(e.getKey()+".count",h.getCount());
+         values.put(e.getKey()+".mean",h.getMean());
+         values.put(e.getKey()+".p50",h.getPercentile(50));
+         values.put(e.getKey()+".p99",h.getPercentile(99));
+         values.put(e.getKey()+".max",h.getMax());
+      }
+      return(values);
+   }
+
+   /**
+    * Write every metric to the specified stream, one per line.
+    *
+    * @param out   the stream to write to
+    */
+   static public void dump(PrintStream out)
+   {
+      StringBuilder sb = new StringBuilder("metrics:\n");
+      for(Map.Entry<String,Number> e : snapshot().entrySet())
+         sb.append("   ").append(e.getKey()).append(" = ").append(e.getValue()).append('\n');
+      out.print(sb);
+   }
+
+   /**
+    * Publish the metrics through the platform MBean server.
+    */
+   static public void registerMBean()
+   {
+      try {
+         ObjectName name = new ObjectName(MBEAN_NAME);
+         if(!ManagementFactory.getPlatformMBeanServer().isRegistered(name))
+            ManagementFactory.getPlatformMBeanServer().registerMBean(new MetricsBean(),name);
+      } catch(Exception ex) {
+         ex.printStackTrace();
+      }
+   }
+
+   /**
+    * Start dumping metrics to the console periodically.
+    *
+    * @param interval   ms between dumps
+    */
+   static synchronized public void startReporter(long interval)
+   {
+      if(reporter != null)
+         return;
+
+      /* daemon thread so the reporter never keeps the app alive */
+      reporter = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+         public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r,"metrics-reporter");
+            thread.setDaemon(true);
+            return(thread);
+         }
+      });
+      reporter.scheduleAtFixedRate(new Runnable() {
+         public void run() {
+            dump(System.out);
+         }
+      },interval,interval,TimeUnit.MILLISECONDS);
+   }
+
+   /**
+    * Stop the periodic reporter.
+    */
+   static synchronized public void stopReporter()
+   {
+      if(reporter != null)
+      {
+         reporter.shutdown();
+         reporter = null;
+      }
+   }
+}
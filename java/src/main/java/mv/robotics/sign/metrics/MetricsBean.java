@@ -0,0 +1,82 @@
+/**
+ * (C) Copyright 2026, David Vogt, All rights reserved.
+ */
+package mv.robotics.sign.metrics;
+
+import java.util.Map;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanOperationInfo;
+
+/**
+ * Exposes the metrics registry over JMX.  Every value in a registry
+ * snapshot becomes a read only attribute, so metrics registered after
+ * startup show up the next time a client reads the MBean info.
+ * 
+ * @author David Vogt (david@kondra.com)
+ * @version Oct-18-26
+ */
+class MetricsBean implements DynamicMBean
+{
+   @Override
+   public Object getAttribute(String attribute) throws AttributeNotFoundException
+   {
+      Number value = Metrics.snapshot().get(attribute);
+      if(value == null)
+         throw(new AttributeNotFoundException(attribute));
+      return(value);
+   }
+
+   @Override
+   public AttributeList getAttributes(String[] attributes)
+   {
+      /* take a single snapshot so the values are consistent with each other */
+      Map<String,Number> values = Metrics.snapshot();
+      AttributeList list = new AttributeList();
+      for(String name : attributes)
+      {
+         Number value = values.get(name);
+         if(value != null)
+            list.add(new Attribute(name,value));
+      }
+      return(list);
+   }
+
+   @Override
+   public MBeanInfo getMBeanInfo()
+   {
+      Map<String,Number> values = Metrics.snapshot();
+      MBeanAttributeInfo[] attrs = new MBeanAttributeInfo[values.size()];
+      int i = 0;
+      for(Map.Entry<String,Number> e : values.entrySet())
+      {
+         attrs[i++] = new MBeanAttributeInfo(e.getKey(),e.getValue().getClass().getName(),
+            e.getKey(),true,false,false);
+      }
+      return(new MBeanInfo(getClass().getName(),"Sign metrics",attrs,null,
+         new MBeanOperationInfo[0],null));
+   }
+
+   @Override
+   public Object invoke(String actionName,Object[] params,String[] signature)
+   {
+      throw(new UnsupportedOperationException(actionName));
+   }
+
+   @Override
+   public void setAttribute(Attribute attribute) throws AttributeNotFoundException
+   {
+      throw(new AttributeNotFoundException("Metrics are read only"));
+   }
+
+   @Override
+   public AttributeList setAttributes(AttributeList attributes)
+   {
+      return(new AttributeList());
+   }
+}
@@ -0,0 +1,73 @@
+/**
+ * (C) Copyright 2026, David Vogt, All rights reserved.
+ */
+package mv.robotics.sign.msg;
+
+/**
+ * Measures how many bytes/sec a connection can actually move.  The probe
+ * writes full sized packets of a message type nobody handles for a short
+ * time and times how long the transport takes to accept them.  Once the
+ * transport's buffers fill the writes block at the pace of the link, so
+ * the result reflects the real link rather than the nominal baud rate,
+ * which usb cdc devices ignore anyway.
+ *
+ * @author David Vogt (david@kondra.com)
+ * @version Oct-18-26
+ */
+public class LinkProbe
+{
+   private MsgConn conn;         /* connection being measured */
+   private long duration;        /* how long to probe for, in ms */
+
+   /**
+    * Create a probe for a connection.
+    *
+    * @param conn       the connection to measure
+    * @param duration   how long to send for, in ms
+    */
+   public LinkProbe(MsgConn conn,long duration)
+   {
+      this.conn = conn;
+      this.duration = duration;
+   }
+
+   /**
+    * Run the probe.  This blocks for about the probe duration.
+    *
+    * @return the measured capacity in bytes/sec including packet overhead
+    */
+   public long measure()
+   {
+      byte[] payload = new byte[probeSize()];
+      long bytes = 0;
+      long start = System.nanoTime();
+      long end = start + (duration * 1000000L);
+      long now;
+
+      /* send until the time is up, flushing so nothing sits in a buffer */
+      do {
+         conn.sendPayload(MsgService.MSG_TYPE_PROBE,payload,0,payload.length);
+         conn.flush();
+         bytes += payload.length + MsgConn.PACKET_OVERHEAD;
+         now = System.nanoTime();
+      } while(now < end);
+
+      return((bytes * 1000000000L) / Math.max(now - start,1));
+   }
+
+   /**
+    * Pick the probe packet size, the largest payload the remote side can
+    * take trimmed to a whole number of its preferred chunks.
+    */
+   private int probeSize()
+   {
+      int size = conn.getRemoteMaxPayloadSize();
+      if((size <= 0) || (size > MsgConn.MAX_RX_PAYLOAD_SIZE))
+         size = MsgConn.MAX_RX_PAYLOAD_SIZE;
+
+      int chunk = conn.getRemoteChunkSize();
+      if((chunk > 0) && (size + MsgConn.PACKET_OVERHEAD > chunk))
+         size = (((size + MsgConn.PACKET_OVERHEAD) / chunk) * chunk) - MsgConn.PACKET_OVERHEAD;
+      return(size);
+   }
+}
@@ -3,6 +3,8 @@
  */
 package mv.robotics.sign.msg;
 
+import mv.robotics.sign.msg.util.MsgBuffer;
+
 /**
  * Base class for beans that we can receive.
  * 
@@ -28,10 +30,39 @@ abstract public class Msg
       return(new byte[0]);
    }
    
+   /**
+    * Append the byte representation of this bean to a buffer.  Override
+    * this to serialize without an intermediate array; the default appends
+    * the result of toBytes().
+    * 
+    * @param buf   the buffer to append to
+    */
+   public void writeTo(MsgBuffer buf)
+   {
+      byte[] bytes = toBytes();
+      buf.putBytes(bytes,0,bytes.length);
+   }
+   
    /**
     * Populate the bean from a byte representation.
     */
    public void fromBytes(byte[] bytes)
    {
    }
+   
+   /**
+    * Populate the bean from a range of a larger buffer such as the receive
+    * buffer.  Override this to decode fields in place; the default copies
+    * the range and calls fromBytes(byte[]).
+    * 
+    * @param bytes    the buffer
+    * @param offset   start of the message in the buffer
+    * @param len      length of the message
+    */
+   public void fromBytes(byte[] bytes,int offset,int len)
+   {
+      byte[] copy = new byte[len];
+      System.arraycopy(bytes,offset,copy,0,len);
+      fromBytes(copy);
+   }
 }
@@ -0,0 +1,84 @@
+/**
+ * (C) Copyright 2026, David Vogt, All rights reserved.
+ */
+package mv.robotics.sign.msg;
+
+import java.lang.reflect.Constructor;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import mv.robotics.sign.msg.ex.MsgException;
+
+/**
+ * Registry of message factories.  Message types should register a
+ * factory at startup so that handlers can create instances without
+ * reflection.  Unregistered types fall back to a factory that looks up
+ * the no-arg constructor once and reuses it.
+ * 
+ * @author David Vogt (david@kondra.com)
+ * @version Oct-18-26
+ */
+public class MsgCodecs
+{
+   static private final ConcurrentMap<Class<?>,MsgFactory<?>> factories = new ConcurrentHashMap<>();
+   
+   private MsgCodecs()
+   {
+   }
+   
+   /**
+    * Register a factory for the specified message class.
+    * 
+    * @param clazz     the message class
+    * @param factory   the factory that creates instances of it
+    */
+   static public <T extends Msg> void register(Class<T> clazz,MsgFactory<T> factory)
+   {
+      factories.put(clazz,factory);
+   }
+   
+   /**
+    * Return the factory for the specified message class.
+    * 
+    * @param clazz   the message class
+    */
+   @SuppressWarnings("unchecked")
+   static public <T extends Msg> MsgFactory<T> factory(Class<T> clazz)
+   {
+      MsgFactory<T> factory = (MsgFactory<T>)factories.get(clazz);
+      if(factory == null)
+      {
+         factories.putIfAbsent(clazz,new ReflectiveFactory<T>(clazz));
+         factory = (MsgFactory<T>)factories.get(clazz);
+      }
+      return(factory);
+   }
+   
+   /**
+    * Fallback factory for message classes that didn't register one.
+    */
+   static private class ReflectiveFactory <T extends Msg> implements MsgFactory<T>
+   {
+      private Constructor<T> constructor;    /* the no-arg constructor */
+      
+      private ReflectiveFactory(Class<T> clazz)
+      {
+         try {
+            constructor = clazz.getDeclaredConstructor();
+            constructor.setAccessible(true);
+         } catch(Exception ex) {
+            throw(new MsgException("No default constructor for "+clazz.getName(),ex));
+         }
+      }
+      
+      @Override
+      public T create()
+      {
+         try {
+            return(constructor.newInstance());
+         } catch(Exception ex) {
+            throw(new MsgException("Failed to create "+constructor.getName(),ex));
+         }
+      }
+   }
+}
@@ -3,13 +3,18 @@
  */
 package mv.robotics.sign.msg;
 
-import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledFuture;
 
+import mv.robotics.sign.metrics.Counter;
+import mv.robotics.sign.metrics.Metrics;
 import mv.robotics.sign.msg.ex.InvalidResponseException;
 import mv.robotics.sign.msg.ex.MsgException;
 import mv.robotics.sign.msg.ex.PayloadTooBigException;
+import mv.robotics.sign.msg.msg.ConnectMsg;
 import mv.robotics.sign.msg.util.ByteUtil;
+import mv.robotics.sign.msg.util.MsgBuffer;
 
 /**
  * A serial message passing connection.
@@ -31,22 +36,71 @@ public class MsgConn
    /* the start byte for packets */
    static private final byte START_BYTE = '#';
    
-   /* max receive size */
-   static private final int MAX_RX_PAYLOAD_SIZE = 4096;
+   /* bytes each packet adds to its payload on the wire */
+   static public final int PACKET_OVERHEAD = HDR_SIZE + CRC_SIZE;
+   
+   /* max receive size, advertised to the remote side when connecting */
+   static public final int MAX_RX_PAYLOAD_SIZE = 4096;
+   
+   /* max number of idle receive buffers to keep */
+   static private final int RX_POOL_SIZE = 8;
+   
+   /* packet flags (header byte 3), only used with peers that advertise */
+   /* fragment support since older firmware leaves the byte undefined */
+   static private final int FLAG_FRAGMENT = 0x01;   /* part of a larger message */
+   static private final int FLAG_LAST     = 0x02;   /* last fragment of the message */
+   
+   /* max size of a fragmented message once reassembled */
+   static public final int MAX_FRAGMENTED_SIZE = 65536;
+   
+   /* max number of idle reassembly buffers to keep */
+   static private final int FRAG_POOL_SIZE = 2;
+   
+   /* metrics shared by all connections */
+   static private final Counter txPackets = Metrics.counter("msg.tx.packets");
+   static private final Counter txBytes = Metrics.counter("msg.tx.bytes");
+   static private final Counter txErrors = Metrics.counter("msg.tx.errors");
+   static private final Counter rxPackets = Metrics.counter("msg.rx.packets");
+   static private final Counter rxBytes = Metrics.counter("msg.rx.bytes");
+   static private final Counter rxCrcFailures = Metrics.counter("msg.rx.crcFailures");
+   static private final Counter rxBadHeaders = Metrics.counter("msg.rx.badHeaders");
+   static private final Counter rxErrors = Metrics.counter("msg.rx.errors");
+   static private final Counter rxTimeouts = Metrics.counter("msg.rx.timeouts");
+   static private final Counter txFragmented = Metrics.counter("msg.tx.fragmented");
+   static private final Counter rxReassembled = Metrics.counter("msg.rx.reassembled");
+   static private final Counter rxFragmentLoss = Metrics.counter("msg.rx.fragmentLoss");
 
    private MsgTransport transport;        /* the underlying transport */
    private int connType;                  /* the connection type to advertise */
    private byte nextMsgId;                /* next available message id */
    private List<MsgHandler<?>> handlers;  /* message handlers */
    private boolean closed;                /* true when closed */
+   private byte[] rxHdr;                  /* receive header buffer */
+   private byte[] rxCrc;                  /* receive crc buffer */
+   private MsgPayload.Pool rxPool;        /* receive payload buffers */
+   private MsgPayload.Pool fragPool;      /* reassembly buffers */
+   private MsgPayload rxFrag;             /* message being reassembled or null */
+   private int rxFragType;                /* type of the message being reassembled */
+   private int rxFragId;                  /* id of the message being reassembled */
+   private int rxFragIndex;               /* next expected fragment index */
+   private MsgBuffer txBuf;               /* packet being sent, guarded by this */
    protected int connectAttempts;         /* number of connect attempts */
+   protected int connectCount;            /* number of times we've connected */
    protected long connectTime;            /* when we last connected */
+   protected volatile long lastRx;        /* when we last received a packet */
+   protected int retries;                 /* attempts since the link was last up */
+   protected ScheduledFuture<?> checkTask;   /* next liveness check */
    protected boolean connected;           /* true when connected */
    protected MsgService service;          /* the service the connection is linked to */
    protected int connId;                  /* unique id for this connection */
    protected int remoteConnId;            /* unique id for the remote side of the connection */
    protected int remoteConnType;          /* type of the remote connection */
    protected int remoteMaxPayloadSize;    /* the max payload size the other side can handle */
+   protected boolean remoteLinkParams;    /* true if the other side sent link parameters */
+   protected volatile int remoteFlags;    /* link flags the other side sent */
+   protected int remoteChunkSize;         /* write size the other side prefers, 0 = none */
+   protected int remoteCodecs;            /* payload codecs the other side supports */
+   private volatile long linkRate;        /* measured link capacity in bytes/sec, 0 = unknown */
    
    /**
     * Create a new connection for the specified serial port.
@@ -66,7 +120,17 @@ public class MsgConn
       transport.setReadTimeout(RECEIVE_TIMEOUT);
 
       /* setup the handler list */
-      handlers = new LinkedList<>();
+      handlers = new CopyOnWriteArrayList<>();
+      
+      /* receive buffers are reused for every packet, payloads are */
+      /* returned to the pool once they have been handled */
+      rxHdr = new byte[HDR_SIZE];
+      rxCrc = new byte[CRC_SIZE];
+      rxPool = new MsgPayload.Pool(MAX_RX_PAYLOAD_SIZE,RX_POOL_SIZE);
+      fragPool = new MsgPayload.Pool(MAX_FRAGMENTED_SIZE,FRAG_POOL_SIZE);
+      
+      /* packets are assembled in place in a single reusable buffer */
+      txBuf = new MsgBuffer(HDR_SIZE + MAX_RX_PAYLOAD_SIZE + CRC_SIZE);
       
       /* start the receiver thread */
       Thread thread = new Thread(new Runnable() {
@@ -132,6 +196,80 @@ public class MsgConn
       return(remoteConnType);
    }
    
+   /**
+    * Get the max payload size the remote side can handle or 0 if unknown.
+    */
+   public int getRemoteMaxPayloadSize()
+   {
+      return(remoteMaxPayloadSize);
+   }
+   
+   /**
+    * Get the write size the remote side prefers or 0 if it has no
+    * preference.  Writes that are a multiple of this fill whole packets
+    * on the underlying link.
+    */
+   public int getRemoteChunkSize()
+   {
+      return(remoteChunkSize);
+   }
+   
+   /**
+    * Return true if the remote side supports the specified payload codec.
+    * Peers that don't send link parameters only understand RGB888.
+    * 
+    * @param codec   one of the ConnectMsg.CODEC_* values
+    */
+   public boolean supportsCodec(int codec)
+   {
+      if(!remoteLinkParams)
+         return(codec == ConnectMsg.CODEC_RGB888);
+      return((remoteCodecs & codec) != 0);
+   }
+   
+   /**
+    * Return true if packets on this connection carry checksums.  That's
+    * the case when the transport wants them and the remote side either
+    * asked for them too or predates link parameters.
+    */
+   public boolean isChecksummed()
+   {
+      if(!transport.includeChecksum())
+         return(false);
+      return(!remoteLinkParams || ((remoteFlags & ConnectMsg.FLAG_CHECKSUM) != 0));
+   }
+   
+   /**
+    * Get the measured link capacity in bytes/sec or 0 if it hasn't been
+    * measured.
+    */
+   public long getLinkRate()
+   {
+      return(linkRate);
+   }
+   
+   /**
+    * Set the measured link capacity.
+    * 
+    * @param linkRate   the capacity in bytes/sec
+    */
+   public void setLinkRate(long linkRate)
+   {
+      this.linkRate = linkRate;
+   }
+   
+   /**
+    * Add a handler that only sees messages from this connection.
+    * Connection handlers take precedence over the service handlers for
+    * the same message type.
+    * 
+    * @param handler   the handler to add
+    */
+   public void addHandler(MsgHandler<?> handler)
+   {
+      handlers.add(handler);
+   }
+   
    /**
     * Send a message without a response.
     */
@@ -141,75 +279,157 @@ public class MsgConn
    }
    
    /**
-    * Send a message and wait for a response of the specified type.
+    * Send an already encoded payload without a response.  This allows
+    * callers to encode messages ahead of time or on other threads.
     */
-   public <T extends Msg> T sendMsg(int msgType,Msg msg,Class<T> responseClass)
+   public void sendPayload(int msgType,byte[] payload,int offset,int len)
    {
-      byte msgId = 0;
-      byte[] bytes = null;
+      /* if closed, do nothing */
+      if(closed)
+         return;
       
-      /* if we have a valid message, get the relevant bits */
-      if(msg != null)
-      {
-         msgId = msg.getMsgId();
-         bytes = msg.toBytes();
+      byte msgId = nextMsgId();
+      synchronized(this) {
+         txBuf.clear();
+         txBuf.position(HDR_SIZE);
+         txBuf.putBytes(payload,offset,len);
+         sendPacket(msgType,msgId);
       }
-      
-      return(sendMsg(msgType,msgId,bytes,responseClass));
    }
    
    /**
-    * Send the message.
+    * Push anything buffered by the transport out immediately.  Call this
+    * after sending latency critical messages.
+    */
+   public void flush()
+   {
+      if(!closed)
+         transport.flush();
+   }
+   
+   /**
+    * Send a message and wait for a response of the specified type.
     */
-   private <T extends Msg> T sendMsg(int msgType,byte msgId,byte[] payload,
-      Class<T> responseClass)
+   public <T extends Msg> T sendMsg(int msgType,Msg msg,Class<T> responseClass)
    {
       /* if closed, do nothing */
       if(closed)
          return(null);
       
       /* if no msgId, allocate one */
+      byte msgId = (msg != null) ? msg.getMsgId() : 0;
       if(msgId == 0)
          msgId = nextMsgId();
       
-      /* if no payload, use an empty one */
-      if(payload == null)
-         payload = new byte[0];
+      /* serialize the message straight into the packet buffer after the header */
+      synchronized(this) {
+         txBuf.clear();
+         txBuf.position(HDR_SIZE);
+         if(msg != null)
+            msg.writeTo(txBuf);
+         sendPacket(msgType,msgId);
+      }
+      
+      /* if a response is expected, get the request out now and wait for it */
+      if(responseClass != null)
+      {
+         transport.flush();
+         return(receiveMsg(msgType,msgId,responseClass));
+      }
+      return(null);
+   }
+   
+   /**
+    * Finish the packet in the transmit buffer (the payload follows the
+    * reserved header space) and write it to the transport in one call.
+    * Payloads that are too big for the receiver are sent as a series of
+    * fragments if the receiver can reassemble them.  Must be called while
+    * holding the connection lock.
+    */
+   private void sendPacket(int msgType,byte msgId)
+   {
+      int payloadLen = txBuf.position() - HDR_SIZE;
+      
+      /* room for the crc after the payload */
+      txBuf.ensure(CRC_SIZE);
       
       /* make sure the payload is within the size constraints of the receiver */
-      if((remoteMaxPayloadSize > 0) && (payload.length > remoteMaxPayloadSize))
-         throw(new PayloadTooBigException("Payload is larger than receiver can handle: "+payload.length));
+      if((remoteMaxPayloadSize > 0) && (payloadLen > remoteMaxPayloadSize))
+      {
+         if(((remoteFlags & ConnectMsg.FLAG_FRAGMENTS) == 0) || (payloadLen > MAX_FRAGMENTED_SIZE))
+            throw(new PayloadTooBigException("Payload is larger than receiver can handle: "+payloadLen));
+         
+         sendFragments(msgType,msgId,payloadLen);
+         return;
+      }
       
-      /* allocate a buffer to hold the packet */
-      byte[] bytes = new byte[HDR_SIZE + payload.length + CRC_SIZE];
-
-      /* fill in the header */
-      bytes[0] = START_BYTE;
-      bytes[1] = (byte)msgType;
-      bytes[2] = (byte)msgId;
-      bytes[3] = 0;
-      ByteUtil.setShort(bytes,4,payload.length);
-      ByteUtil.setShort(bytes,6,0);
-
-      /* fill in the payload */
-      System.arraycopy(payload,0,bytes,8,payload.length);
+      writePacket(msgType,msgId,0,0,HDR_SIZE,payloadLen);
+   }
+   
+   /**
+    * Send the payload in the transmit buffer as numbered fragments that
+    * each fit the receiver.  Fragments are framed in place: a fragment's
+    * header goes over the tail of the previous fragment, which has
+    * already been written, so the payload is never copied.
+    */
+   private void sendFragments(int msgType,byte msgId,int payloadLen)
+   {
+      int end = HDR_SIZE + payloadLen;
+      int index = 0;
       
-      /* compute the crc and add it if needed */
-      if(transport.includeChecksum())
+      for(int start=HDR_SIZE;start<end;start+=remoteMaxPayloadSize,index++)
       {
-         int crc = crc16(0,bytes,0,HDR_SIZE+payload.length);
-         ByteUtil.setShort(bytes,HDR_SIZE+payload.length,crc);
+         int len = Math.min(remoteMaxPayloadSize,end-start);
+         int flags = FLAG_FRAGMENT | (((start + len) == end) ? FLAG_LAST : 0);
+         writePacket(msgType,msgId,flags,index,start,len);
       }
+      txFragmented.inc();
+   }
+   
+   /**
+    * Frame and write a single packet whose payload is already in the
+    * transmit buffer.  The header is written into the HDR_SIZE bytes in
+    * front of the payload and the crc into the two bytes after it, which
+    * are restored afterwards since they may belong to the next fragment.
+    * 
+    * @param start   offset of the payload in the transmit buffer
+    * @param len     payload length
+    */
+   private void writePacket(int msgType,byte msgId,int flags,int index,int start,int len)
+   {
+      byte[] bytes = txBuf.array();
+      int hdr = start - HDR_SIZE;
+      int end = start + len;
+      
+      /* fill in the header */
+      bytes[hdr] = START_BYTE;
+      bytes[hdr+1] = (byte)msgType;
+      bytes[hdr+2] = msgId;
+      bytes[hdr+3] = (byte)flags;
+      txBuf.putShort(hdr+4,len);
+      txBuf.putShort(hdr+6,index);
+      
+      /* compute the crc and add it if needed */
+      int crc = 0;
+      if(isChecksummed())
+         crc = crc16(0,bytes,hdr,HDR_SIZE+len);
+      byte saved0 = bytes[end];
+      byte saved1 = bytes[end+1];
+      txBuf.putShort(end,crc);
       
       /* send the packet */
-      synchronized(this) {
-         transport.write(bytes);
+      int size = HDR_SIZE + len + CRC_SIZE;
+      try {
+         transport.write(bytes,hdr,size);
+      } catch(MsgException ex) {
+         txErrors.inc();
+         throw(ex);
+      } finally {
+         bytes[end] = saved0;
+         bytes[end+1] = saved1;
       }
-      
-      /* if a response is expected, wait for it */
-      if(responseClass != null)
-         return(receiveMsg(msgType,msgId,responseClass));
-      return(null);
+      txPackets.inc();
+      txBytes.add(size);
    }
 
    /**
@@ -231,17 +451,22 @@ public class MsgConn
       try {
          synchronized(handler) {
             /* add the handler */
-            synchronized(handlers) {
-               handlers.add(handler);
-            }
+            handlers.add(handler);
             
             /* wait for a response */
             handler.wait(RECEIVE_TIMEOUT);
          }
       } catch(InterruptedException ex) {
+         rxTimeouts.inc();
          throw(new MsgException("Receive timed out"));
+      } finally {
+         /* gone already if the response arrived */
+         handlers.remove(handler);
       }
       
+      /* no response in time */
+      if(handler.resp == null)
+         rxTimeouts.inc();
       return(handler.resp);
    }
    
@@ -252,6 +477,8 @@ public class MsgConn
    {
       while(!closed)
       {
+         MsgPayload payload = null;
+         
          try {
             /* if the transport is down, wait for it to come up */
             if(!transport.isUp())
@@ -264,83 +491,220 @@ public class MsgConn
             /* no timeout waiting for a header */
             transport.setReadTimeout(0);
          
-            /* allocate a buffer for header */
-            byte[] hdr = new byte[HDR_SIZE];
-   
             /* read the header */
-            if(read(hdr) != hdr.length)
+            byte[] hdr = rxHdr;
+            if(read(hdr,hdr.length) != hdr.length)
                throw(new InvalidResponseException("Incomplete header read"));
          
             /* verify the start byte */
             if(hdr[0] != START_BYTE)
+            {
+               rxBadHeaders.inc();
                throw(new InvalidResponseException("Invalid start byte"));
+            }
 
             /* make sure the payload size is valid */
-            int payloadLen = ByteUtil.getShort(hdr,4);
+            int payloadLen = ByteUtil.getUnsignedShort(hdr,4);
             if(payloadLen > MAX_RX_PAYLOAD_SIZE)
+            {
+               rxBadHeaders.inc();
                throw(new InvalidResponseException("Invalid paylod size: "+payloadLen));
+            }
          
             /* set a timeout for the rest of the message */
             transport.setReadTimeout(RECEIVE_TIMEOUT);
          
-            /* read the payload */
-            byte[] payload = new byte[payloadLen];
-            if(read(payload) != payload.length)
+            /* fragments are read straight into the reassembly buffer, */
+            /* everything else (and fragments we can't use) into a pooled */
+            /* buffer */
+            boolean fragment = isFragment(hdr);
+            MsgPayload dest;
+            int offset;
+            if(fragment && acceptFragment(hdr,payloadLen))
+            {
+               dest = rxFrag;
+               offset = rxFrag.getLength();
+            }
+            else
+            {
+               /* an unfragmented message means the rest of any */
+               /* message being reassembled was lost */
+               if(!fragment)
+                  dropFragments();
+               
+               payload = rxPool.acquire();
+               dest = payload;
+               offset = 0;
+            }
+            if(read(dest.getBytes(),offset,payloadLen) != payloadLen)
                throw(new InvalidResponseException("Incomplete payload"));
          
             /* read the crc  */
-            byte[] crcBuf = new byte[CRC_SIZE];
-            if(read(crcBuf) != crcBuf.length)
+            byte[] crcBuf = rxCrc;
+            if(read(crcBuf,crcBuf.length) != crcBuf.length)
                throw(new InvalidResponseException("Incomplete crc read"));            
 
             /* verify the crc if needed */
-            if(transport.includeChecksum())
+            if(isChecksummed())
             {
                /* compute the crc */
                int crc = crc16(0,hdr,0,hdr.length);
-               crc = crc16(crc,payload,0,payload.length);            
+               crc = crc16(crc,dest.getBytes(),offset,payloadLen);
          
                /* compare to the crc in the packet */
                if(ByteUtil.getUnsignedShort(crcBuf,0) != crc)
+               {
+                  rxCrcFailures.inc();
+                  if(dest == rxFrag)
+                     dropFragments();
                   throw(new InvalidResponseException("Invalid crc"));
+               }
+            }
+            
+            /* got a complete packet, which also shows the other side is alive */
+            lastRx = System.currentTimeMillis();
+            rxPackets.inc();
+            rxBytes.add(HDR_SIZE + payloadLen + CRC_SIZE);
+            dest.setLength(offset + payloadLen);
+            
+            /* add fragments to the message, it is dispatched once the */
+            /* last one arrives... fragments that were dropped have */
+            /* nothing more to do */
+            if(fragment)
+            {
+               if(dest != rxFrag)
+                  continue;
+               
+               rxFragIndex++;
+               if((hdr[3] & FLAG_LAST) == 0)
+                  continue;
+               
+               payload = rxFrag;
+               rxFrag = null;
+               rxReassembled.inc();
             }
 
             /* try to dispatch to any connection level handlers and if none */
-            /* found then try to dispatch to the service level handlers */
-            if(!service.dispatchMsg(handlers,this,hdr[1],hdr[2],payload))
-               service.dispatchMsg(this,hdr[1],hdr[2],payload);
+            /* found then try to dispatch to the service level handlers... */
+            /* once dispatched the handler owns the payload and releases it */
+            if(service.dispatchMsg(handlers,this,hdr[1],hdr[2],payload) ||
+               service.dispatchMsg(this,hdr[1],hdr[2],payload))
+               payload = null;
          } catch(Exception ex) {
+            /* count the failure, protocol and transport errors are */
+            /* expected (bad headers, unplugs) but anything else is a bug */
+            rxErrors.inc();
+            if(!(ex instanceof MsgException) && !closed)
+               ex.printStackTrace();
+            
             /* if the transport isn't durable or is closed, cleanup */
             if(!transport.isDurable() || closed)
             {
                service.removeConn(this);
                return;
             }
+         } finally {
+            /* return the payload if nobody took ownership of it */
+            if(payload != null)
+               payload.release();
          }
       }
    }
    
    /**
-    * Read the contents of the specified buffer or return a lower read count
-    * if there is a timeout.
+    * Return true if a packet is a fragment.  The flags are only trusted
+    * from peers that said they use them.
+    */
+   private boolean isFragment(byte[] hdr)
+   {
+      return(((remoteFlags & ConnectMsg.FLAG_FRAGMENTS) != 0) && ((hdr[3] & FLAG_FRAGMENT) != 0));
+   }
+   
+   /**
+    * Check whether a fragment continues the message being reassembled,
+    * starting a new message for the first fragment.  Fragments arrive in
+    * order, so a gap in the fragment index means some were lost and the
+    * whole message is dropped.
+    * 
+    * @param hdr   the fragment header
+    * @param len   the fragment payload length
+    * @return true if the fragment should be added to the message
+    */
+   private boolean acceptFragment(byte[] hdr,int len)
+   {
+      int index = ByteUtil.getUnsignedShort(hdr,6);
+      
+      /* the first fragment starts a new message... anything still being */
+      /* reassembled lost its tail */
+      if(index == 0)
+      {
+         dropFragments();
+         rxFrag = fragPool.acquire();
+         rxFragType = hdr[1];
+         rxFragId = hdr[2];
+         rxFragIndex = 0;
+      }
+      
+      /* otherwise it must be the next fragment of the same message */
+      else if((rxFrag == null) || (index != rxFragIndex) ||
+         (hdr[1] != rxFragType) || (hdr[2] != rxFragId))
+      {
+         dropFragments();
+         return(false);
+      }
+      
+      /* and it has to fit */
+      if((rxFrag.getLength() + len) > MAX_FRAGMENTED_SIZE)
+      {
+         dropFragments();
+         return(false);
+      }
+      return(true);
+   }
+   
+   /**
+    * Discard the message being reassembled, if any.
+    */
+   private void dropFragments()
+   {
+      if(rxFrag != null)
+      {
+         rxFragmentLoss.inc();
+         rxFrag.release();
+         rxFrag = null;
+      }
+   }
+   
+   /**
+    * Read the specified number of bytes into the buffer or return a lower
+    * read count if there is a timeout.
+    */
+   private int read(byte[] buf,int len) throws Exception
+   {
+      return(read(buf,0,len));
+   }
+   
+   /**
+    * Read the specified number of bytes into the buffer at an offset or
+    * return a lower read count if there is a timeout.
     */
-   private int read(byte[] buf) throws Exception
+   private int read(byte[] buf,int offset,int len) throws Exception
    {
       int cnt = 0;
-      int offset = 0;
+      int pos = 0;
       
       do
       {
          /* try to read the next block of data unless there is an error or timeout */
-         if((cnt = transport.read(buf,offset,buf.length-offset)) <= 0)
+         if((cnt = transport.read(buf,offset+pos,len-pos)) <= 0)
             break;
          
-         /* adjust the offset */
-         offset += cnt;
+         /* adjust the position */
+         pos += cnt;
       }
-      while(offset < buf.length);
+      while(pos < len);
       
-      return(offset);
+      return(pos);
    }
    
    /**
@@ -379,8 +743,8 @@ public class MsgConn
     */
    protected void transportUp()
    {
-      /* try to send a connect message */
-      service.sendConnectRequest(this);
+      /* connect right away */
+      service.checkNow(this);
    }
    
    /**
@@ -388,7 +752,8 @@ public class MsgConn
     */
    protected void transportDown()
    {
-      /* no longer connected */
+      /* no longer connected, start trying to bring it back */
       service.disconnect(this);
+      service.checkNow(this);
    }
 }
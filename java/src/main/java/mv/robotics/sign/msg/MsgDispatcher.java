@@ -0,0 +1,285 @@
+/**
+ * (C) Copyright 2026, David Vogt, All rights reserved.
+ */
+package mv.robotics.sign.msg;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import mv.robotics.sign.metrics.Counter;
+import mv.robotics.sign.metrics.Metrics;
+
+/**
+ * Runs message handlers on a small thread pool.  Every connection gets
+ * its own bounded queue (a lane) whose tasks run one at a time and in
+ * order, while lanes for different connections run in parallel.  When a
+ * lane is full the overflow policy decides whether the receiver blocks
+ * (back pressure onto the transport) or a message is dropped.
+ *
+ * @author David Vogt (david@kondra.com)
+ * @version Oct-18-26
+ */
+public class MsgDispatcher
+{
+   /**
+    * What to do when a connection's queue is full.
+    */
+   public enum OverflowPolicy
+   {
+      BLOCK,            /* wait for room, pushing back on the receiver */
+      DROP_OLDEST,      /* discard the oldest queued message */
+      DROP_NEWEST       /* discard the incoming message */
+   }
+
+   /**
+    * A task that holds something, like a pooled payload, that has to be
+    * given back if the task is discarded without being run.
+    */
+   public interface Task extends Runnable
+   {
+      /**
+       * Called instead of run() when the task is discarded.
+       */
+      public void cancel();
+   }
+
+   /* max tasks a lane runs before yielding its thread to other lanes */
+   static private final int MAX_BATCH = 16;
+
+   /* metrics shared by all dispatchers */
+   static private final Counter dropped = Metrics.counter("msg.dispatch.dropped");
+   static private final Counter blocked = Metrics.counter("msg.dispatch.blocked");
+
+   private ExecutorService pool;                 /* threads that run the lanes */
+   private ConcurrentMap<MsgConn,Lane> lanes;    /* per connection queues */
+   private AtomicInteger depth;                  /* total queued tasks */
+   private int capacity;                         /* max queued tasks per lane */
+   private OverflowPolicy policy;                /* what to do when a lane is full */
+   private volatile boolean shutdown;            /* true once shutdown */
+
+   /**
+    * Create a dispatcher.
+    *
+    * @param threads    number of threads to run handlers on
+    * @param capacity   max queued messages per connection
+    * @param policy     what to do when a connection's queue is full
+    */
+   public MsgDispatcher(int threads,int capacity,OverflowPolicy policy)
+   {
+      this.capacity = capacity;
+      this.policy = policy;
+      pool = Executors.newFixedThreadPool(threads);
+      lanes = new ConcurrentHashMap<>();
+      depth = new AtomicInteger();
+   }
+
+   /**
+    * Return the total number of queued tasks across all connections.
+    */
+   public int getQueueDepth()
+   {
+      return(depth.get());
+   }
+
+   /**
+    * Queue a task for the specified connection.  Depending on the overflow
+    * policy this may block until the connection's queue has room.  A
+    * task that implements Task is canceled if it's discarded.
+    *
+    * @param conn   the connection the task belongs to
+    * @param task   the task to run
+    */
+   public void dispatch(MsgConn conn,Runnable task)
+   {
+      if(shutdown)
+      {
+         cancel(task);
+         return;
+      }
+
+      /* find or create the lane for the connection */
+      Lane lane = lanes.get(conn);
+      if(lane == null)
+      {
+         lanes.putIfAbsent(conn,new Lane());
+         lane = lanes.get(conn);
+      }
+      lane.add(task);
+   }
+
+   /**
+    * Discard any queued tasks for a connection that is going away.
+    *
+    * @param conn   the connection
+    */
+   public void remove(MsgConn conn)
+   {
+      Lane lane = lanes.remove(conn);
+      if(lane != null)
+         lane.clear();
+   }
+
+   /**
+    * Stop the dispatcher.  Queued tasks are discarded.
+    */
+   public void shutdown()
+   {
+      shutdown = true;
+      for(Lane lane : lanes.values())
+         lane.clear();
+      lanes.clear();
+      pool.shutdown();
+   }
+
+   /**
+    * Let a discarded task give back what it holds.
+    */
+   static private void cancel(Runnable task)
+   {
+      if(task instanceof Task)
+         ((Task)task).cancel();
+   }
+
+   /**
+    * The queue for a single connection.  A lane is only ever scheduled on
+    * one pool thread at a time which is what keeps its tasks in order.
+    */
+   private class Lane implements Runnable
+   {
+      private ArrayDeque<Runnable> queue;    /* queued tasks */
+      private boolean scheduled;             /* true while owned by a pool thread */
+
+      private Lane()
+      {
+         queue = new ArrayDeque<>();
+      }
+
+      /**
+       * Add a task, applying the overflow policy if full.
+       */
+      private synchronized void add(Runnable task)
+      {
+         /* shutdown() clears the lanes under their locks after setting the */
+         /* flag, so checking here means nothing is queued after the clear */
+         if(shutdown)
+         {
+            cancel(task);
+            return;
+         }
+
+         /* make room if needed */
+         while(queue.size() >= capacity)
+         {
+            if(policy == OverflowPolicy.DROP_NEWEST)
+            {
+               dropped.inc();
+               cancel(task);
+               return;
+            }
+            else if(policy == OverflowPolicy.DROP_OLDEST)
+            {
+               cancel(queue.poll());
+               depth.decrementAndGet();
+               dropped.inc();
+            }
+            else
+            {
+               blocked.inc();
+               try {
+                  wait();
+               } catch(InterruptedException ex) {
+                  Thread.currentThread().interrupt();
+                  cancel(task);
+                  return;
+               }
+               if(shutdown)
+               {
+                  cancel(task);
+                  return;
+               }
+            }
+         }
+
+         /* queue it and make sure the lane is running */
+         queue.add(task);
+         depth.incrementAndGet();
+         if(!scheduled)
+         {
+            scheduled = true;
+            try {
+               pool.execute(this);
+            } catch(RejectedExecutionException ex) {
+               /* the pool shut down under us, the lane was idle so the */
+               /* task is the only one queued */
+               queue.pollLast();
+               depth.decrementAndGet();
+               scheduled = false;
+               cancel(task);
+            }
+         }
+      }
+
+      /**
+       * Discard all queued tasks.
+       */
+      private synchronized void clear()
+      {
+         depth.addAndGet(-queue.size());
+         Runnable task;
+         while((task = queue.poll()) != null)
+            cancel(task);
+         notifyAll();
+      }
+
+      /**
+       * Take the next task or mark the lane idle if there are none.
+       */
+      private synchronized Runnable next()
+      {
+         Runnable task = queue.poll();
+         if(task == null)
+            scheduled = false;
+         else
+         {
+            depth.decrementAndGet();
+
+            /* wake up a receiver waiting for room */
+            notifyAll();
+         }
+         return(task);
+      }
+
+      @Override
+      public void run()
+      {
+         /* run a batch of tasks in order */
+         for(int i=0;i<MAX_BATCH;i++)
+         {
+            Runnable task = next();
+            if(task == null)
+               return;
+            
+            try {
+               task.run();
+            } catch(RuntimeException ex) {
+               /* a bad task must not stall the lane */
+               ex.printStackTrace();
+            }
+         }
+
+         /* still busy, go to the back of the pool queue so other lanes */
+         /* get a turn... we remain scheduled so order is preserved */
+         try {
+            pool.execute(this);
+         } catch(RejectedExecutionException ex) {
+            /* pool shut down, nothing will run what's left */
+            clear();
+         }
+      }
+   }
+}
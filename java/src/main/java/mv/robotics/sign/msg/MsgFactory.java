@@ -0,0 +1,19 @@
+/**
+ * (C) Copyright 2026, David Vogt, All rights reserved.
+ */
+package mv.robotics.sign.msg;
+
+/**
+ * Creates empty message instances for decoding.  Registering a factory
+ * with MsgCodecs keeps reflection off the receive path.
+ * 
+ * @author David Vogt (david@kondra.com)
+ * @version Oct-18-26
+ */
+public interface MsgFactory <T extends Msg>
+{
+   /**
+    * Return a new, empty message ready for fromBytes().
+    */
+   public T create();
+}
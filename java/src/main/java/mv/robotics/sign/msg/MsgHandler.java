@@ -15,6 +15,8 @@ public class MsgHandler <T extends Msg>
    private int msgId;                  /* the message id to look for 0=any */
    private Class<T> clazz;             /* the response class type */
    private boolean remove;             /* if true, remove the handler */
+   private MsgFactory<T> factory;      /* creates message instances */
+   private MsgPool<T> pool;            /* message instance pool or null */
    protected T resp;                   /* used for blocking receive calls */
    
    /**
@@ -29,6 +31,22 @@ public class MsgHandler <T extends Msg>
       this(msgType,0,clazz,false);
    }
    
+   /**
+    * Create a message handler that reuses message instances from a pool
+    * rather than creating one per message.  The message passed to
+    * onReceive() goes back to the pool when it returns so it must not
+    * be referenced afterwards.
+    * 
+    * @param msgType    the message type to listen for
+    * @param clazz      the class to transform the message to
+    * @param poolSize   max number of idle instances to keep
+    */
+   public MsgHandler(int msgType,Class<T> clazz,int poolSize)
+   {
+      this(msgType,0,clazz,false);
+      pool = new MsgPool<>(MsgCodecs.factory(clazz),poolSize);
+   }
+   
    /**
     * Internal constructor.
     */
@@ -53,11 +71,29 @@ public class MsgHandler <T extends Msg>
       return remove;
    }
 
-   protected void processPayload(MsgConn conn,byte[] payload) throws Exception
+   protected void processPayload(MsgConn conn,byte[] payload,int offset,int len) throws Exception
    {
+      /* pooled handlers reuse instances */
+      if(pool != null)
+      {
+         T msg = pool.acquire();
+         try {
+            msg.fromBytes(payload,offset,len);
+            onReceive(conn,msg);
+         } finally {
+            pool.release(msg);
+         }
+         return;
+      }
+      
+      /* look up the factory on first use so registrations made after */
+      /* the handler was created are still picked up */
+      if(factory == null)
+         factory = MsgCodecs.factory(clazz);
+      
       /* create an instance of the response object */
-      T resp = clazz.newInstance();
-      resp.fromBytes(payload);
+      T resp = factory.create();
+      resp.fromBytes(payload,offset,len);
       onReceive(conn,resp);         
    }
    
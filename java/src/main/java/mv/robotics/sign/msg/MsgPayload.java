@@ -0,0 +1,99 @@
+/**
+ * (C) Copyright 2026, David Vogt, All rights reserved.
+ */
+package mv.robotics.sign.msg;
+
+import java.util.concurrent.ArrayBlockingQueue;
+
+/**
+ * A received payload held in a reusable buffer.  The receiver fills
+ * a payload and hands it to the dispatcher, which releases it back to
+ * its pool once the handler is done with it.  Handlers must copy
+ * anything they want to keep.
+ * 
+ * @author David Vogt (david@kondra.com)
+ * @version Oct-18-26
+ */
+public class MsgPayload
+{
+   private byte[] bytes;               /* the buffer */
+   private int length;                 /* number of valid bytes */
+   private Pool pool;                  /* pool to return to or null */
+   
+   private MsgPayload(int size,Pool pool)
+   {
+      this.bytes = new byte[size];
+      this.pool = pool;
+   }
+   
+   /**
+    * Wrap an existing array.  The result is not pooled.
+    * 
+    * @param bytes   the payload
+    */
+   public MsgPayload(byte[] bytes)
+   {
+      this.bytes = bytes;
+      this.length = bytes.length;
+   }
+   
+   /**
+    * Return the buffer holding the payload.
+    */
+   public byte[] getBytes()
+   {
+      return(bytes);
+   }
+   
+   /**
+    * Return the number of valid bytes in the buffer.
+    */
+   public int getLength()
+   {
+      return(length);
+   }
+   
+   /**
+    * Set the number of valid bytes in the buffer.
+    * 
+    * @param length   the payload length
+    */
+   void setLength(int length)
+   {
+      this.length = length;
+   }
+   
+   /**
+    * Return the payload to its pool.
+    */
+   public void release()
+   {
+      if(pool != null)
+         pool.free.offer(this);
+   }
+   
+   /**
+    * A bounded pool of fixed size payload buffers.  Acquiring from an
+    * empty pool allocates, releasing into a full pool discards.
+    */
+   static class Pool
+   {
+      private ArrayBlockingQueue<MsgPayload> free;   /* idle buffers */
+      private int size;                              /* buffer size */
+      
+      Pool(int size,int count)
+      {
+         this.size = size;
+         free = new ArrayBlockingQueue<>(count);
+      }
+      
+      MsgPayload acquire()
+      {
+         MsgPayload payload = free.poll();
+         if(payload == null)
+            payload = new MsgPayload(size,this);
+         payload.length = 0;
+         return(payload);
+      }
+   }
+}
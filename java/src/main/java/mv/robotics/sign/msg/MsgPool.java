@@ -0,0 +1,51 @@
+/**
+ * (C) Copyright 2026, David Vogt, All rights reserved.
+ */
+package mv.robotics.sign.msg;
+
+import java.util.concurrent.ArrayBlockingQueue;
+
+/**
+ * A bounded pool of message instances.  Acquiring from an empty pool
+ * creates a new instance and releasing into a full pool discards the
+ * instance, so the pool never blocks and never grows beyond its size.
+ * 
+ * @author David Vogt (david@kondra.com)
+ * @version Oct-18-26
+ */
+public class MsgPool <T extends Msg>
+{
+   private MsgFactory<T> factory;         /* creates new instances */
+   private ArrayBlockingQueue<T> free;    /* idle instances */
+   
+   /**
+    * Create a pool.
+    * 
+    * @param factory   creates new instances
+    * @param size      max number of idle instances to keep
+    */
+   public MsgPool(MsgFactory<T> factory,int size)
+   {
+      this.factory = factory;
+      free = new ArrayBlockingQueue<>(size);
+   }
+   
+   /**
+    * Return an idle instance or a new one if there are none.
+    */
+   public T acquire()
+   {
+      T msg = free.poll();
+      return((msg != null) ? msg : factory.create());
+   }
+   
+   /**
+    * Return an instance to the pool.
+    * 
+    * @param msg   the instance, which must no longer be referenced
+    */
+   public void release(T msg)
+   {
+      free.offer(msg);
+   }
+}
@@ -3,16 +3,23 @@
  */
 package mv.robotics.sign.msg;
 
-import java.util.ArrayList;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Random;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
+import mv.robotics.sign.metrics.Counter;
+import mv.robotics.sign.metrics.Gauge;
+import mv.robotics.sign.metrics.Histogram;
+import mv.robotics.sign.metrics.Metrics;
+import mv.robotics.sign.msg.MsgDispatcher.OverflowPolicy;
+import mv.robotics.sign.msg.ex.MsgException;
 import mv.robotics.sign.msg.msg.ConnectMsg;
 
 /**
@@ -26,85 +33,213 @@ public class MsgService
    /* internal message types */
    static public final int MSG_TYPE_CONNECT_REQ  = 0;
    static public final int MSG_TYPE_CONNECT_RESP = 1;
+   
+   /* link probe traffic, unknown to the board so it gets skipped */
+   static public final int MSG_TYPE_PROBE = 0x7f;
+   
+   /* link parameters we advertise when connecting */
+   static private final int CHUNK_SIZE = 64;
+   static private final int CODECS = ConnectMsg.CODEC_RGB888;
+   
+   /* default time spent measuring a link after it connects, in ms */
+   static private final long PROBE_TIME = 250;
 
    /* the max number of connect attempts before we close the connection */
    static private final int MAX_CONNECT_ATTEMPTS = 3;
    
-   /* how long a checked connection can go between connect responses */
+   /* how long a checked connection can go without hearing anything */
+   /* before we ask whether the other side is still there... the teensy */
+   /* only ever answers, so on a serial link this is the rate connect */
+   /* requests go out at for as long as the link is up */
+   static private final long HEARTBEAT_INTERVAL = 1000;
+   
+   /* how long a checked connection can go without hearing anything */
    /* before we call it down */
-   static private final int MAX_QUIET_TIME = 3000;
+   static private final long MAX_QUIET_TIME = 3000;
+   
+   /* delay between attempts to bring up a transport or connection, */
+   /* doubling from the min to the max while it stays down */
+   static private final long RETRY_MIN = 100;
+   static private final long RETRY_MAX = 2000;
+   
+   /* number of threads running connection checks */
+   static private final int MONITOR_THREADS = 2;
    
-   /* how often we scan the connections to make sure they're alive */
-   static private final long CONN_SCAN_INTERVAL = 1000;
+   /* metrics shared by all services */
+   static private final Histogram handlerLatency = Metrics.histogram("msg.dispatch.handlerNanos");
+   static private final Counter handlerErrors = Metrics.counter("msg.dispatch.errors");
+   static private final Counter unhandled = Metrics.counter("msg.dispatch.unhandled");
+   static private final Counter connects = Metrics.counter("msg.conn.connects");
+   static private final Counter reconnects = Metrics.counter("msg.conn.reconnects");
+   static private final Counter disconnects = Metrics.counter("msg.conn.disconnects");
+   static private final Histogram linkRates = Metrics.histogram("msg.conn.linkRate");
    
    private List<MsgServiceListener> listeners;   /* service listeners */
    private List<MsgConn> conns;                  /* active connections */
    private List<MsgHandler<?>> handlers;         /* message handlers */
    private ScheduledExecutorService monitorPool; /* thread pool for monitoring */
-   private ExecutorService dispatchPool;         /* message dispatch pool */
+   private ExecutorService eventThread;          /* delivers listener events in order */
+   private MsgDispatcher dispatcher;             /* message dispatch stage */
+   private int dispatchThreads;                  /* number of dispatch threads */
+   private int dispatchCapacity;                 /* max queued messages per connection */
+   private OverflowPolicy overflowPolicy;        /* what to do when a queue is full */
+   private long probeTime;                       /* time to measure new links, 0 = never */
    private AtomicInteger nextConnId;             /* connection id allocator */
    private boolean started;                      /* true when afterPropertiesSet is called */
    
+   static {
+      /* register factories for the internal messages */
+      MsgCodecs.register(ConnectMsg.class,new MsgFactory<ConnectMsg>() {
+         public ConnectMsg create() {
+            return(new ConnectMsg());
+         }
+      });
+   }
+   
    /**
     * Create a new message service.
     */
    public MsgService()
    {
-      /* setup the lists */
-      conns = new LinkedList<>();
-      handlers = new LinkedList<>();
-      listeners = new LinkedList<>();
+      /* setup the lists, they're read far more often than they change */
+      /* so iteration works on a snapshot without any locking */
+      conns = new CopyOnWriteArrayList<>();
+      handlers = new CopyOnWriteArrayList<>();
+      listeners = new CopyOnWriteArrayList<>();
+      
+      /* default dispatch settings */
+      dispatchThreads = 3;
+      dispatchCapacity = 64;
+      overflowPolicy = OverflowPolicy.BLOCK;
+      probeTime = PROBE_TIME;
 
       /* pick a random connId starting point, but restricted enough that */
       /* we will never roll over to zero as that's an invalid connId */
       Random random = new Random();
       nextConnId = new AtomicInteger(random.nextInt(Integer.MAX_VALUE/2));
       
-      /* register a connection request message handler */
-      addHandler(new MsgHandler<ConnectMsg>(MSG_TYPE_CONNECT_REQ,ConnectMsg.class) {
+      /* register a connection request message handler, the message is */
+      /* only read during the call so instances can be pooled */
+      addHandler(new MsgHandler<ConnectMsg>(MSG_TYPE_CONNECT_REQ,ConnectMsg.class,2) {
          public void onReceive(MsgConn conn,ConnectMsg msg) {
             handleConnectRequest(conn,msg);
          }
       });
       
       /* register a connection response message handler */
-      addHandler(new MsgHandler<ConnectMsg>(MSG_TYPE_CONNECT_RESP,ConnectMsg.class) {
+      addHandler(new MsgHandler<ConnectMsg>(MSG_TYPE_CONNECT_RESP,ConnectMsg.class,2) {
          public void onReceive(MsgConn conn,ConnectMsg msg) {
             handleConnectResponse(conn,msg);
          }
       });
    }
    
+   /**
+    * Return the number of threads message handlers run on.
+    */
+   public int getDispatchThreads()
+   {
+      return(dispatchThreads);
+   }
+
+   /**
+    * Set the number of threads message handlers run on.  Takes effect
+    * when the service starts.
+    * 
+    * @param dispatchThreads   the number of dispatch threads
+    */
+   public void setDispatchThreads(int dispatchThreads)
+   {
+      this.dispatchThreads = dispatchThreads;
+   }
+
+   /**
+    * Return the max number of messages queued per connection.
+    */
+   public int getDispatchCapacity()
+   {
+      return(dispatchCapacity);
+   }
+
+   /**
+    * Set the max number of messages queued per connection.  Takes
+    * effect when the service starts.
+    * 
+    * @param dispatchCapacity   the queue capacity
+    */
+   public void setDispatchCapacity(int dispatchCapacity)
+   {
+      this.dispatchCapacity = dispatchCapacity;
+   }
+
+   /**
+    * Return what happens when a connection's queue is full.
+    */
+   public OverflowPolicy getOverflowPolicy()
+   {
+      return(overflowPolicy);
+   }
+
+   /**
+    * Set what happens when a connection's queue is full.  Takes effect
+    * when the service starts.
+    * 
+    * @param overflowPolicy   the overflow policy
+    */
+   public void setOverflowPolicy(OverflowPolicy overflowPolicy)
+   {
+      this.overflowPolicy = overflowPolicy;
+   }
+
+   /**
+    * Return the time spent measuring a new link in ms.
+    */
+   public long getProbeTime()
+   {
+      return(probeTime);
+   }
+
+   /**
+    * Set the time spent measuring a new link in ms.  The probe runs
+    * in the background after the first connect.
+    * 
+    * @param probeTime   the probe time, 0 to never measure
+    */
+   public void setProbeTime(long probeTime)
+   {
+      this.probeTime = probeTime;
+   }
+
    /**
     * Start the message service.
     */
    public void start()
    {
-      /* if there are no listeners, add an empty list */
-      if(listeners == null)
-         listeners = new ArrayList<>();
+      /* listener events are delivered one at a time in the order they */
+      /* happen, off the threads that detect them */
+      eventThread = Executors.newSingleThreadExecutor(new ThreadFactory() {
+         public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r,"msg-events");
+            thread.setDaemon(true);
+            return(thread);
+         }
+      });
+      
+      /* start the dispatcher before any messages can arrive */
+      dispatcher = new MsgDispatcher(dispatchThreads,dispatchCapacity,overflowPolicy);
+      Metrics.gauge("msg.dispatch.queueDepth",new Gauge() {
+         public long get() {
+            return(dispatcher.getQueueDepth());
+         }
+      });
 
-      /* mark the service started */
+      /* start the monitoring pool and mark the service started */
+      monitorPool = Executors.newScheduledThreadPool(MONITOR_THREADS);
       started = true;
       
-      /* fire up all the connections by sending connect requests */
+      /* fire up all the connections, each has its own check timer */
       for(MsgConn conn : conns)
-      {
-         /* if the transport is up, send a connect request */
-         if(conn.getTransport().isUp())
-            sendConnectRequest(conn);
-      }
-
-      /* start the dispatch pool */
-      dispatchPool = Executors.newFixedThreadPool(3);
-      
-      /* start the monitoring pool */
-      monitorPool = Executors.newSingleThreadScheduledExecutor();
-      monitorPool.scheduleAtFixedRate(new Runnable() {
-         public void run() {
-            checkConnections();
-         }
-      },CONN_SCAN_INTERVAL,CONN_SCAN_INTERVAL,TimeUnit.MILLISECONDS);
+         scheduleCheck(conn,0);
    }
 
    /**
@@ -114,16 +249,21 @@ public class MsgService
    {
       if(started)
       {
-         /* shutdown the monitor */
-         monitorPool.shutdown();
+         /* shutdown the monitor, no more checks get scheduled */
+         synchronized(this) {
+            monitorPool.shutdown();
+         }
 
-         /* shutdown the dispatch pool */
-         dispatchPool.shutdown();
+         /* shutdown the dispatcher */
+         dispatcher.shutdown();
       
          /* close all connections */
          for(MsgConn conn : conns)
             conn.close();
          
+         /* deliver the last events and stop */
+         eventThread.shutdown();
+         
          /* no longer running */
          started = false;
       }
@@ -136,9 +276,7 @@ public class MsgService
     */
    public void addHandler(MsgHandler<?> handler)
    {
-      synchronized(handlers) {
-         handlers.add(handler);
-      }
+      handlers.add(handler);
    }
    
    /**
@@ -166,17 +304,10 @@ public class MsgService
       conn.connId = nextConnId.incrementAndGet();
 
       /* add to the connection list */
-      synchronized(conns) {
-         conns.add(conn);
-      }
+      conns.add(conn);
       
-      /* if the service has started, try to send a connect request immediately */
-      if(started)
-      {
-         /* if the transport is up, send a connect request */
-         if(conn.getTransport().isUp())
-            sendConnectRequest(conn);
-      }
+      /* if the service has started, check it immediately */
+      scheduleCheck(conn,0);
    }
    
    /**
@@ -187,8 +318,16 @@ public class MsgService
    public void removeConn(MsgConn conn)
    {
       /* remove from the connection list */
-      synchronized(conns) {
-         conns.remove(conn);
+      conns.remove(conn);
+      
+      /* drop anything still queued for it */
+      if(dispatcher != null)
+         dispatcher.remove(conn);
+      
+      /* stop checking it */
+      synchronized(this) {
+         if(conn.checkTask != null)
+            conn.checkTask.cancel(false);
       }
       
       /* close the connection */
@@ -196,59 +335,163 @@ public class MsgService
    }
    
    /**
-    * Add a service listener.
+    * Add a service listener.  Listener events are delivered on a single
+    * event thread in the order they happened.
     * 
     * @param listener   the listener to add
     */
    public void addListener(MsgServiceListener listener)
    {
-      synchronized(listeners) {
-         listeners.add(listener);
-      }
+      listeners.add(listener);
+   }
+   
+   /**
+    * Remove a service listener.
+    * 
+    * @param listener   the listener to remove
+    */
+   public void removeListener(MsgServiceListener listener)
+   {
+      listeners.remove(listener);
    }
    
    /**
-    * Called from the monitoring thread to check all connections.
+    * Queue a connect or disconnect event for the listeners.
     */
-   private void checkConnections()
+   private void fireEvent(final MsgConn conn,final boolean connect)
    {
       try {
-         List<MsgConn> cachedConns = new ArrayList<>();
-      
-         /* copy the list so we don't need to hold the lock */
-         synchronized(conns) {
-            cachedConns.addAll(conns);
-         }
-      
-         /* send a connect request over every connection where the */
-         /* transport is up but a connection is not yet established */
-         for(MsgConn conn : cachedConns)
-         {
-            /* check if the transport is up */
-            if(conn.getTransport().isUp())
-            {
-               /* if not connected, or a checked transport */
-               /* then send a connect request */
-               if(!conn.connected || conn.getTransport().isChecked())
-                  sendConnectRequest(conn);
-            
-               /* if checked but we haven't seen a response in a while */
-               /* then mark the connection down */
-               if(conn.getTransport().isChecked() && conn.connected &&
-                  ((System.currentTimeMillis() - conn.connectTime) > MAX_QUIET_TIME))
+         eventThread.execute(new Runnable() {
+            public void run() {
+               for(MsgServiceListener listener : listeners)
                {
-                  /* mark the connection disconnected */
-                  disconnect(conn);
+                  try {
+                     if(connect)
+                        listener.onConnect(conn);
+                     else
+                        listener.onDisconnect(conn);
+                  } catch(RuntimeException ex) {
+                     /* one bad listener shouldn't starve the rest */
+                     ex.printStackTrace();
+                  }
                }
             }
+         });
+      } catch(RejectedExecutionException ex) {
+         /* shutting down */
+      }
+   }
+   
+   /**
+    * Schedule the next check of a connection, replacing any check that
+    * is already scheduled.  Every connection has its own timer so each
+    * is checked exactly when it needs to be.
+    * 
+    * @param conn    the connection
+    * @param delay   ms until the check
+    */
+   private void scheduleCheck(final MsgConn conn,long delay)
+   {
+      synchronized(this) {
+         if(!started || monitorPool.isShutdown() || conn.isClosed())
+            return;
          
-            /* not up, try to bring it up */
-            else
-               conn.getTransport().attemptUp();
-         }
+         if(conn.checkTask != null)
+            conn.checkTask.cancel(false);
+         conn.checkTask = monitorPool.schedule(new Runnable() {
+            public void run() {
+               checkConn(conn);
+            }
+         },delay,TimeUnit.MILLISECONDS);
+      }
+   }
+   
+   /**
+    * Check a connection now, called when its transport changes state.
+    * The backoff only resets once the connection is established so a
+    * transport that keeps flapping up and down still backs off.
+    */
+   protected void checkNow(MsgConn conn)
+   {
+      scheduleCheck(conn,0);
+   }
+   
+   /**
+    * Run a connection check and schedule the next one.
+    */
+   private void checkConn(MsgConn conn)
+   {
+      long delay = RETRY_MAX;
+      try {
+         delay = check(conn);
       } catch(Exception ex) {
-         ex.printStackTrace();
+         /* failed writes are expected when a link drops, the */
+         /* transport reports those itself */
+         if(!(ex instanceof MsgException))
+            ex.printStackTrace();
       }
+      scheduleCheck(conn,delay);
+   }
+   
+   /**
+    * Check a connection, bringing it up and connecting it as needed.
+    * Any traffic from the other side counts as a heartbeat so a busy
+    * checked connection costs nothing, a connect request only goes out
+    * once it has been quiet for a while.
+    * 
+    * @return ms until the connection should be checked again
+    */
+   private long check(MsgConn conn)
+   {
+      MsgTransport transport = conn.getTransport();
+      
+      /* not up, try to bring it up backing off while it stays down */
+      if(!transport.isUp())
+      {
+         transport.attemptUp();
+         return(transport.isUp() ? 0 : backoff(conn));
+      }
+      
+      /* up but not connected, keep asking... passive connections */
+      /* just wait to be asked so there's no hurry */
+      if(!conn.connected)
+      {
+         sendConnectRequest(conn);
+         return(transport.isPassive() ? RETRY_MAX : backoff(conn));
+      }
+      
+      /* connected, unchecked transports report their own failures */
+      if(!transport.isChecked())
+         return(RETRY_MAX);
+      
+      /* quiet for too long, it's gone */
+      long quiet = System.currentTimeMillis() - conn.lastRx;
+      if(quiet >= MAX_QUIET_TIME)
+      {
+         disconnect(conn);
+         return(0);
+      }
+      
+      /* quiet for a while, ask if it's still there */
+      if(quiet >= HEARTBEAT_INTERVAL)
+      {
+         sendConnectRequest(conn);
+         return(HEARTBEAT_INTERVAL);
+      }
+      
+      /* heard from it recently, check again once it could be quiet */
+      return(HEARTBEAT_INTERVAL - quiet);
+   }
+   
+   /**
+    * Return the delay before the next attempt on a connection that
+    * isn't coming up, doubling with every attempt.
+    */
+   private long backoff(MsgConn conn)
+   {
+      long delay = Math.min(RETRY_MIN << Math.min(conn.retries,16),RETRY_MAX);
+      conn.retries++;
+      return(delay);
    }
    
    /**
@@ -262,12 +505,23 @@ public class MsgService
          /* connected */
          conn.connected = true;
          conn.connectAttempts = 0;
+         conn.retries = 0;
+         
+         /* switch the check timer over to heartbeats */
+         scheduleCheck(conn,HEARTBEAT_INTERVAL);
+         
+         /* count it, anything after the first connect is a reconnect */
+         connects.inc();
+         if(conn.connectCount++ > 0)
+            reconnects.inc();
          
          /* notify listeners */
-         synchronized(listeners) {
-            for(MsgServiceListener listener : listeners)
-               listener.onConnect(conn);
-         }
+         fireEvent(conn,true);
+         
+         /* measure the link off the dispatch lane, a reconnect is the */
+         /* same link so it keeps the rate from the first connect */
+         if(conn.connectCount == 1)
+            scheduleProbe(conn);
       }
    }
    
@@ -283,6 +537,10 @@ public class MsgService
          conn.connected = false;
          conn.remoteConnId = 0;
          conn.remoteMaxPayloadSize = 0;
+         conn.remoteLinkParams = false;
+         conn.remoteFlags = 0;
+         conn.remoteChunkSize = 0;
+         conn.remoteCodecs = 0;
          
          /* assign the connection a new connId so that when it */
          /* comes back up, the remote side will see it as a new */
@@ -299,11 +557,10 @@ public class MsgService
     */
    private void fireDisconnect(MsgConn conn)
    {
+      disconnects.inc();
+      
       /* notify listeners */
-      synchronized(listeners) {
-         for(MsgServiceListener listener : listeners)
-            listener.onDisconnect(conn);
-      }      
+      fireEvent(conn,false);
    }
    
    /**
@@ -313,11 +570,23 @@ public class MsgService
     * @param conn       the incoming connection
     * @param msgType    the incoming message type
     * @param msgId      the incoming message id
-    * @param payload    the payload of the message
+    * @param payload    the payload of the message, released once handled
     */
-   protected boolean dispatchMsg(MsgConn conn,int msgType,int msgId,byte[] payload) throws Exception
+   protected boolean dispatchMsg(MsgConn conn,int msgType,int msgId,MsgPayload payload) throws Exception
    {
-      return(dispatchMsg(handlers,conn,msgType,msgId,payload));
+      /* probe traffic only exists to be timed */
+      if(msgType == MSG_TYPE_PROBE)
+      {
+         payload.release();
+         return(true);
+      }
+      
+      if(dispatchMsg(handlers,conn,msgType,msgId,payload))
+         return(true);
+      
+      /* nobody wanted it */
+      unhandled.inc();
+      return(false);
    }
    
    /**
@@ -328,47 +597,64 @@ public class MsgService
     * @param conn       the incoming connection
     * @param msgType    the incoming message type
     * @param msgId      the incoming message id
-    * @param payload    the payload of the message
+    * @param payload    the payload of the message, released once handled
     */
    protected boolean dispatchMsg(List<MsgHandler<?>> handlers,MsgConn conn,
-      int msgType,int msgId,byte[] payload) throws Exception
+      int msgType,int msgId,MsgPayload payload) throws Exception
    {
       MsgHandler<?> handler = null;
       
-      /* search the handler list */
-      synchronized(handlers) {
-         for(MsgHandler<?> h : handlers)
+      /* search a snapshot of the handler list */
+      for(MsgHandler<?> h : handlers)
+      {
+         /* check for a type match */
+         if(h.getMsgType() == msgType)
          {
-            /* check for a type match */
-            if(h.getMsgType() == msgType)
+            /* check for an id match */
+            if((h.getMsgId() == 0) || (h.getMsgId() == msgId))
             {
-               /* check for an id match */
-               if((h.getMsgId() == 0) || (h.getMsgId() == msgId))
-               {
-                  /* this is the handler to use */
-                  handler = h;
-               }
+               /* this is the handler to use */
+               handler = h;
             }
          }
-         
-         /* check if we should remove the handler */
-         if((handler != null) && handler.isRemove())
-            handlers.remove(handler);
       }
+      
+      /* one-shot handlers are claimed by removing them, if someone */
+      /* else got there first the handler is already spoken for */
+      if((handler != null) && handler.isRemove() && !handlers.remove(handler))
+         handler = null;
 
       /* if we found a handler, dispatch the message to it */
       if(handler != null)
       {
          final MsgHandler<?> fhandler = handler;
-         dispatchPool.submit(new Runnable() {
+         MsgDispatcher.Task task = new MsgDispatcher.Task() {
             public void run() {
+               long start = System.nanoTime();
                try {
-                  fhandler.processPayload(conn,payload);
-               } catch(Exception e) {
-                  /* fall through */
+                  fhandler.processPayload(conn,payload.getBytes(),0,payload.getLength());
+               } catch(Exception ex) {
+                  /* a failing handler shouldn't take down the dispatcher */
+                  handlerErrors.inc();
+                  ex.printStackTrace();
+               } finally {
+                  payload.release();
                }
+               handlerLatency.record(System.nanoTime() - start);
             }
-         });
+            public void cancel() {
+               /* dropped before it ran, the payload still goes back */
+               payload.release();
+            }
+         };
+         
+         /* one-shot handlers just hand a response to a thread blocked in */
+         /* sendMsg() so run them inline... queueing them behind the handler */
+         /* that is waiting for the response would deadlock the connection */
+         if(handler.isRemove())
+            task.run();
+         else
+            dispatcher.dispatch(conn,task);
          return(true);
       }
       return(false);
@@ -379,7 +665,12 @@ public class MsgService
     */
    private void handleConnectRequest(MsgConn conn,ConnectMsg req)
    {
-      conn.sendMsg(MSG_TYPE_CONNECT_RESP,new ConnectMsg(conn.connId,4096,conn.getConnType()));
+      /* passive connections never send requests of their own so the */
+      /* request is what connects them */
+      if(conn.getTransport().isPassive())
+         updateRemote(conn,req);
+      
+      conn.sendMsg(MSG_TYPE_CONNECT_RESP,createConnectMsg(conn));
    }
    
    /**
@@ -387,8 +678,27 @@ public class MsgService
     */
    private void handleConnectResponse(MsgConn conn,ConnectMsg resp)
    {
-      /* remember the max payload size */
+      /* passive connections never ask, anything that looks like a */
+      /* response is some other message reusing the type number */
+      if(conn.getTransport().isPassive())
+         return;
+      
+      updateRemote(conn,resp);
+   }
+   
+   /**
+    * Update a connection with the remote side's connect message,
+    * connecting it if the remote connId changed.
+    */
+   private void updateRemote(MsgConn conn,ConnectMsg resp)
+   {
+      /* remember the link parameters, older peers only send the max */
+      /* payload size */
       conn.remoteMaxPayloadSize = resp.getMaxPayloadSize();
+      conn.remoteLinkParams = resp.hasLinkParams();
+      conn.remoteFlags = resp.getFlags();
+      conn.remoteChunkSize = resp.getChunkSize();
+      conn.remoteCodecs = resp.getCodecs();
       
       /* remember the time */
       conn.connectTime = System.currentTimeMillis();
@@ -422,10 +732,63 @@ public class MsgService
     */
    protected void sendConnectRequest(MsgConn conn) 
    {
-      /* if the connection isn't durable and we've tried too many times, close the connection */
+      /* if the connection isn't durable and we've tried too many times, close the connection... */
+      /* passive connections don't send anything but are still dropped if nobody asks in time */
       if(!conn.getTransport().isDurable() && (conn.connectAttempts++ >= MAX_CONNECT_ATTEMPTS))
          removeConn(conn);
-      else
-         conn.sendMsg(MSG_TYPE_CONNECT_REQ,new ConnectMsg(conn.connId,4096,conn.getConnType()));
+      else if(!conn.getTransport().isPassive())
+         conn.sendMsg(MSG_TYPE_CONNECT_REQ,createConnectMsg(conn));
+   }
+   
+   /**
+    * Create the connect message for a connection advertising our link
+    * parameters.
+    */
+   private ConnectMsg createConnectMsg(MsgConn conn)
+   {
+      int flags = ConnectMsg.FLAG_FRAGMENTS;
+      if(conn.getTransport().includeChecksum())
+         flags |= ConnectMsg.FLAG_CHECKSUM;
+      return(new ConnectMsg(conn.connId,MsgConn.MAX_RX_PAYLOAD_SIZE,conn.getConnType(),
+         flags,CHUNK_SIZE,CODECS));
+   }
+   
+   /**
+    * Measure the capacity of a newly connected link on the monitor pool.
+    * The probe takes probeTime so it must not hold up the dispatch lane
+    * the connect response arrived on.  Until it finishes the rate is
+    * unknown and senders aren't paced for the link.
+    */
+   private void scheduleProbe(final MsgConn conn)
+   {
+      /* passive ends only answer, there's nothing to pace */
+      if((probeTime <= 0) || conn.getTransport().isPassive())
+         return;
+      
+      synchronized(this) {
+         if(!started || monitorPool.isShutdown() || conn.isClosed())
+            return;
+         
+         monitorPool.execute(new Runnable() {
+            public void run() {
+               probeLink(conn);
+            }
+         });
+      }
+   }
+   
+   /**
+    * Measure the capacity of a link.  A failed probe leaves the rate
+    * unknown rather than failing the connect.
+    */
+   private void probeLink(MsgConn conn)
+   {
+      try {
+         long rate = new LinkProbe(conn,probeTime).measure();
+         conn.setLinkRate(rate);
+         linkRates.record(rate);
+      } catch(Exception ex) {
+         conn.setLinkRate(0);
+      }
    }
 }
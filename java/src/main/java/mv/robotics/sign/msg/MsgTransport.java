@@ -81,6 +81,17 @@ abstract public class MsgTransport
       return(false);
    }
    
+   /**
+    * Return true if the transport only answers connect requests rather
+    * than sending its own.  Accepted server sockets are passive since
+    * the client on the other end does the asking, and an incoming
+    * request is what tells the service the client is there.
+    */
+   public boolean isPassive()
+   {
+      return(false);
+   }
+   
    /**
     * Return true if the transport can come back up after
     * going down.  Server sockets can't, while client sockets
@@ -111,6 +122,36 @@ abstract public class MsgTransport
     */
    abstract public void write(byte[] buf);
    
+   /**
+    * Write a range of the specified bytes.  Transports should override
+    * this to avoid the copy made by the default implementation.
+    * 
+    * @param buf      the bytes to write
+    * @param offset   the start of the range
+    * @param len      the number of bytes to write
+    */
+   public void write(byte[] buf,int offset,int len)
+   {
+      if((offset == 0) && (len == buf.length))
+         write(buf);
+      else
+      {
+         byte[] bytes = new byte[len];
+         System.arraycopy(buf,offset,bytes,0,len);
+         write(bytes);
+      }
+   }
+   
+   /**
+    * Write out anything the transport has buffered.  Transports that
+    * coalesce writes should override this, latency critical senders
+    * call it after writing.
+    */
+   public void flush()
+   {
+      /* override as necessary */
+   }
+   
    /**
     * Close the transport.
     */
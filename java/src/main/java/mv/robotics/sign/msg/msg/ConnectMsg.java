@@ -5,18 +5,43 @@ package mv.robotics.sign.msg.msg;
 
 import mv.robotics.sign.msg.Msg;
 import mv.robotics.sign.msg.util.ByteUtil;
+import mv.robotics.sign.msg.util.MsgBuffer;
 
 /**
- * Connect message used to coordinate connections.
+ * Connect message used to coordinate connections.  Besides identifying
+ * the connection it carries the link parameters each side prefers.  The
+ * link parameters were added later and are appended to the original 8
+ * byte message, so older peers that send and expect only the first 8
+ * bytes keep working and are reported as not advertising any.
+ * 
+ * FLAG_FRAGMENTS is only advertised by the java side for now.  The teensy
+ * firmware doesn't reassemble fragments and never sets it, so payloads
+ * sent to the board must fit its maxPayloadSize, which a full frame for
+ * the current display does with room to spare.
  * 
  * @author David Vogt (david@kondra.com)
  * @version Jun-13-16
  */
 public class ConnectMsg extends Msg
 {
+   /* link flags */
+   static public final int FLAG_CHECKSUM  = 0x0001;   /* wants crc16 checksums */
+   static public final int FLAG_FRAGMENTS = 0x0002;   /* reassembles fragmented messages */
+   static public final int FLAG_PARAMS    = 0x8000;   /* link parameters are present */
+   
+   /* payload codecs (bit mask) */
+   static public final int CODEC_RGB888 = 0x0001;     /* 3 bytes per pixel */
+   
+   /* size of the original message and the message with link parameters */
+   static private final int BASE_SIZE = 8;
+   static private final int FULL_SIZE = 14;
+   
    private int connId;                 /* unique id for this connection */
    private int maxPayloadSize;         /* max payload size the board can handle */
    private int connType;               /* connection type */
+   private int flags;                  /* link flags, 0 for older peers */
+   private int chunkSize;              /* preferred write size, 0 = no preference */
+   private int codecs;                 /* supported payload codecs */
    
    public ConnectMsg(int connId,int maxPayloadSize,int connType)
    {
@@ -25,6 +50,15 @@ public class ConnectMsg extends Msg
       this.connType = connType;
    }
    
+   public ConnectMsg(int connId,int maxPayloadSize,int connType,int flags,
+      int chunkSize,int codecs)
+   {
+      this(connId,maxPayloadSize,connType);
+      this.flags = flags | FLAG_PARAMS;
+      this.chunkSize = chunkSize;
+      this.codecs = codecs;
+   }
+   
    public ConnectMsg()
    {
    }
@@ -47,22 +81,82 @@ public class ConnectMsg extends Msg
    public void setConnType(int connType) {
       this.connType = connType;
    }
+   public int getFlags() {
+      return flags;
+   }
+   public void setFlags(int flags) {
+      this.flags = flags;
+   }
+   public int getChunkSize() {
+      return chunkSize;
+   }
+   public void setChunkSize(int chunkSize) {
+      this.chunkSize = chunkSize;
+   }
+   public int getCodecs() {
+      return codecs;
+   }
+   public void setCodecs(int codecs) {
+      this.codecs = codecs;
+   }
+   
+   /**
+    * Return true if the peer sent link parameters.
+    */
+   public boolean hasLinkParams()
+   {
+      return((flags & FLAG_PARAMS) != 0);
+   }
 
    @Override
    public byte[] toBytes()
    {
-      byte[] bytes = new byte[8];
-      ByteUtil.setInt(bytes,0,connId);
-      ByteUtil.setShort(bytes,4,maxPayloadSize);
-      ByteUtil.setShort(bytes,6,connType);
-      return(bytes);
+      MsgBuffer buf = new MsgBuffer(FULL_SIZE);
+      writeTo(buf);
+      return(buf.toByteArray());
+   }
+   
+   @Override
+   public void writeTo(MsgBuffer buf)
+   {
+      buf.putInt(connId);
+      buf.putShort(maxPayloadSize);
+      buf.putShort(connType);
+      
+      /* only send link parameters if we have some */
+      if(hasLinkParams())
+      {
+         buf.putShort(flags);
+         buf.putShort(chunkSize);
+         buf.putShort(codecs);
+      }
    }
    
    @Override
    public void fromBytes(byte[] bytes)
    {
-      connId = ByteUtil.getInt(bytes,0);
-      maxPayloadSize = ByteUtil.getShort(bytes,4);
-      connType = ByteUtil.getShort(bytes,6);
+      fromBytes(bytes,0,bytes.length);
+   }
+   
+   @Override
+   public void fromBytes(byte[] bytes,int offset,int len)
+   {
+      connId = ByteUtil.getInt(bytes,offset);
+      maxPayloadSize = ByteUtil.getUnsignedShort(bytes,offset+4);
+      connType = ByteUtil.getShort(bytes,offset+6);
+      
+      /* older peers only send the base message */
+      if(len >= FULL_SIZE)
+      {
+         flags = ByteUtil.getUnsignedShort(bytes,offset+BASE_SIZE);
+         chunkSize = ByteUtil.getUnsignedShort(bytes,offset+BASE_SIZE+2);
+         codecs = ByteUtil.getUnsignedShort(bytes,offset+BASE_SIZE+4);
+      }
+      else
+      {
+         flags = 0;
+         chunkSize = 0;
+         codecs = 0;
+      }
    }
 }
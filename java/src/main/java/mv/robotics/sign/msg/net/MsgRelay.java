@@ -0,0 +1,125 @@
+/**
+ * (C) Copyright 2026, David Vogt, All rights reserved.
+ */
+package mv.robotics.sign.msg.net;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import mv.robotics.sign.metrics.Counter;
+import mv.robotics.sign.metrics.Metrics;
+import mv.robotics.sign.msg.Msg;
+import mv.robotics.sign.msg.MsgConn;
+import mv.robotics.sign.msg.MsgHandler;
+import mv.robotics.sign.msg.MsgServiceListener;
+import mv.robotics.sign.msg.ex.MsgException;
+
+/**
+ * Forwards messages from network connections to the boards connected
+ * to the same service.  This lets the rendering run on a server while a
+ * thin relay next to the sign passes the frames on to the serial board.
+ *
+ * Boards are the connections with the board connection type, everything
+ * else is a network connection.  The relay installs a connection level
+ * handler for each forwarded message type on every network connection,
+ * which takes precedence over the service handlers that may use the same
+ * type number in the other direction.  Payloads are forwarded as is
+ * without being decoded.  Only network to board traffic is forwarded,
+ * the board only ever answers connect requests which the relay's service
+ * handles itself.
+ *
+ * @author David Vogt (david@kondra.com)
+ * @version Oct-18-26
+ */
+public class MsgRelay implements MsgServiceListener
+{
+   /* metrics shared by all relays */
+   static private final Counter forwarded = Metrics.counter("msg.relay.forwarded");
+   static private final Counter dropped = Metrics.counter("msg.relay.dropped");
+
+   private int boardConnType;                /* connection type of the boards */
+   private int[] msgTypes;                   /* message types to forward */
+   private List<MsgConn> boards;             /* connected boards */
+   private Map<MsgConn,Boolean> hooked;      /* network connections with handlers */
+
+   /**
+    * Create a relay.  Add it to the service as a listener.
+    *
+    * @param boardConnType   connection type used for the board transports
+    * @param msgTypes        the message types to forward to the boards
+    */
+   public MsgRelay(int boardConnType,int... msgTypes)
+   {
+      this.boardConnType = boardConnType;
+      this.msgTypes = msgTypes.clone();
+      boards = new CopyOnWriteArrayList<>();
+      hooked = Collections.synchronizedMap(new WeakHashMap<MsgConn,Boolean>());
+   }
+
+   /**
+    * Return true if at least one board is connected.
+    */
+   public boolean isBoardConnected()
+   {
+      return(!boards.isEmpty());
+   }
+
+   @Override
+   public void onConnect(MsgConn conn)
+   {
+      if(conn.getConnType() == boardConnType)
+      {
+         boards.add(conn);
+         return;
+      }
+
+      /* connections can reconnect, only hook them once */
+      if(hooked.put(conn,Boolean.TRUE) == null)
+      {
+         for(int msgType : msgTypes)
+            conn.addHandler(new Forwarder(msgType));
+      }
+   }
+
+   @Override
+   public void onDisconnect(MsgConn conn)
+   {
+      boards.remove(conn);
+   }
+
+   /**
+    * Passes raw payloads of one message type on to the boards.
+    */
+   private class Forwarder extends MsgHandler<Msg>
+   {
+      private Forwarder(int msgType)
+      {
+         super(msgType,Msg.class);
+      }
+
+      @Override
+      protected void processPayload(MsgConn conn,byte[] payload,int offset,int len)
+      {
+         if(boards.isEmpty())
+         {
+            dropped.inc();
+            return;
+         }
+
+         for(MsgConn board : boards)
+         {
+            try {
+               board.sendPayload(getMsgType(),payload,offset,len);
+               board.flush();
+               forwarded.inc();
+            } catch(MsgException ex) {
+               /* the board went away, the next frame will do */
+               dropped.inc();
+            }
+         }
+      }
+   }
+}
@@ -0,0 +1,110 @@
+/**
+ * (C) Copyright 2026, David Vogt, All rights reserved.
+ */
+package mv.robotics.sign.msg.net;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+
+import mv.robotics.sign.metrics.Counter;
+import mv.robotics.sign.metrics.Metrics;
+import mv.robotics.sign.msg.MsgService;
+import mv.robotics.sign.msg.ex.MsgException;
+
+/**
+ * Accepts TCP connections and adds each one to a message service as a
+ * passive, non-durable transport.  The service removes the connection
+ * when the client goes away.
+ *
+ * @author David Vogt (david@kondra.com)
+ * @version Oct-18-26
+ */
+public class MsgTcpServer
+{
+   /* metrics shared by all servers */
+   static private final Counter accepted = Metrics.counter("msg.net.accepted");
+
+   private MsgService service;         /* service to add connections to */
+   private int port;                   /* port to listen on, 0 = any */
+   private int connType;               /* connection type to advertise */
+   private ServerSocketChannel server; /* the listening socket */
+   private volatile boolean closed;    /* true once closed */
+
+   /**
+    * Create a server.
+    *
+    * @param service    the service to add connections to
+    * @param port       the port to listen on or 0 for any free port
+    * @param connType   the connection type to advertise on connections
+    */
+   public MsgTcpServer(MsgService service,int port,int connType)
+   {
+      this.service = service;
+      this.port = port;
+      this.connType = connType;
+   }
+
+   /**
+    * Return the port being listened on.
+    */
+   public int getPort()
+   {
+      return((server != null) ? server.socket().getLocalPort() : port);
+   }
+
+   /**
+    * Start listening and accepting connections.
+    */
+   public void start()
+   {
+      try {
+         server = ServerSocketChannel.open();
+         server.bind(new InetSocketAddress(port));
+      } catch(IOException ex) {
+         throw(new MsgException("Failed to listen on port "+port,ex));
+      }
+
+      Thread thread = new Thread(new Runnable() {
+         public void run() {
+            acceptThread();
+         }
+      },"tcp-server-"+getPort());
+      thread.setDaemon(true);
+      thread.start();
+   }
+
+   /**
+    * Stop accepting connections.  Existing connections are left alone.
+    */
+   public void close()
+   {
+      closed = true;
+      try {
+         if(server != null)
+            server.close();
+      } catch(IOException ex) {
+         /* nothing more we can do */
+      }
+   }
+
+   /**
+    * Accepts connections until closed.
+    */
+   private void acceptThread()
+   {
+      while(!closed)
+      {
+         try {
+            SocketChannel channel = server.accept();
+            accepted.inc();
+            service.addTransport(new MsgTcpTransport(channel),connType);
+         } catch(IOException ex) {
+            if(closed || !server.isOpen())
+               return;
+            ex.printStackTrace();
+         }
+      }
+   }
+}
@@ -0,0 +1,301 @@
+/**
+ * (C) Copyright 2026, David Vogt, All rights reserved.
+ */
+package mv.robotics.sign.msg.net;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+
+import mv.robotics.sign.msg.MsgTransport;
+import mv.robotics.sign.msg.ex.MsgException;
+import mv.robotics.sign.msg.util.WriteCoalescer;
+
+/**
+ * A TCP transport on a non-blocking socket channel.  A client transport
+ * connects to a host and port and reconnects whenever it goes down.  A
+ * transport for a socket accepted by MsgTcpServer is passive, it answers
+ * the client's connect requests, and isn't durable since once the
+ * client goes away the socket is gone for good.
+ *
+ * Reads wait on a selector so they honor the read timeout, and small
+ * writes are batched like on the serial transports since nagle is
+ * turned off to keep latency down.
+ *
+ * @author David Vogt (david@kondra.com)
+ * @version Oct-18-26
+ */
+public class MsgTcpTransport extends MsgTransport
+{
+   /* how long a client waits for a connection, in ms */
+   static private final int CONNECT_TIMEOUT = 2000;
+
+   /* how long a write waits for room in the socket buffer, in ms */
+   static private final long WRITE_TIMEOUT = 5000;
+
+   /* how long small writes wait to be batched together, in ms */
+   static private final long COALESCE_WINDOW = 2;
+
+   /* size of the read buffer and write batches */
+   static private final int BUFFER_SIZE = 8192;
+
+   private String host;                /* host to connect to, null if accepted */
+   private int port;                   /* port to connect to */
+   private String name;                /* remote address for messages */
+   private SocketChannel channel;      /* the connected socket */
+   private Selector readSelector;      /* waits for data to read */
+   private Selector writeSelector;     /* waits for room to write */
+   private ByteBuffer rxBuf;           /* bytes read but not yet consumed */
+   private WriteCoalescer out;         /* batched output */
+   private int timeout;                /* read timeout in ms, 0 = none */
+   private volatile boolean open;      /* true while the socket is open */
+
+   /**
+    * Create a client transport that connects to the specified server.
+    *
+    * @param host   the server host
+    * @param port   the server port
+    */
+   public MsgTcpTransport(String host,int port)
+   {
+      this.host = host;
+      this.port = port;
+      this.name = host+":"+port;
+
+      /* start out empty */
+      rxBuf = ByteBuffer.allocateDirect(BUFFER_SIZE);
+      rxBuf.flip();
+   }
+
+   /**
+    * Create a transport for an accepted socket.  It starts out up.
+    *
+    * @param channel   the accepted socket
+    */
+   MsgTcpTransport(SocketChannel channel) throws IOException
+   {
+      this.name = String.valueOf(channel.getRemoteAddress());
+
+      rxBuf = ByteBuffer.allocateDirect(BUFFER_SIZE);
+      rxBuf.flip();
+
+      open(channel);
+      up();
+   }
+
+   @Override
+   public boolean isDurable()
+   {
+      return(host != null);
+   }
+
+   @Override
+   public boolean isPassive()
+   {
+      return(host == null);
+   }
+
+   @Override
+   public boolean isChecked()
+   {
+      /* accepted sockets leave the checking to the client */
+      return(host != null);
+   }
+
+   @Override
+   public void down()
+   {
+      /* cleanup the socket */
+      close();
+
+      super.down();
+   }
+
+   @Override
+   public void attemptUp()
+   {
+      /* accepted sockets can't come back */
+      if(open || (host == null))
+         return;
+
+      SocketChannel ch = null;
+      try {
+         /* connect blocking so the timeout applies, then switch over */
+         ch = SocketChannel.open();
+         ch.socket().connect(new InetSocketAddress(host,port),CONNECT_TIMEOUT);
+         open(ch);
+
+         /* we're up */
+         up();
+      } catch(Throwable t) {
+         /* try again on the next attempt */
+         close();
+         try {
+            if(ch != null)
+               ch.close();
+         } catch(IOException ex) {
+            /* nothing more we can do */
+         }
+      }
+   }
+
+   /**
+    * Setup a connected socket for use.
+    */
+   private void open(SocketChannel ch) throws IOException
+   {
+      ch.configureBlocking(false);
+      ch.socket().setTcpNoDelay(true);
+
+      /* separate selectors so the reader and writer never wait on each other */
+      readSelector = Selector.open();
+      ch.register(readSelector,SelectionKey.OP_READ);
+      writeSelector = Selector.open();
+      ch.register(writeSelector,SelectionKey.OP_WRITE);
+      channel = ch;
+
+      out = new WriteCoalescer(new OutputStream() {
+         public void write(int b) throws IOException {
+            write(new byte[] { (byte)b },0,1);
+         }
+         public void write(byte[] buf,int offset,int len) throws IOException {
+            writeFully(buf,offset,len);
+         }
+      },COALESCE_WINDOW,BUFFER_SIZE);
+
+      rxBuf.clear();
+      rxBuf.flip();
+      open = true;
+   }
+
+   @Override
+   public void setReadTimeout(int timeout)
+   {
+      this.timeout = timeout;
+   }
+
+   @Override
+   public int read(byte[] buf,int offset,int len)
+   {
+      long deadline = (timeout > 0) ? (System.currentTimeMillis() + timeout) : 0;
+
+      try {
+         while(true)
+         {
+            /* serve from what we've already read */
+            if(rxBuf.hasRemaining())
+            {
+               int cnt = Math.min(len,rxBuf.remaining());
+               rxBuf.get(buf,offset,cnt);
+               return(cnt);
+            }
+
+            if(!open)
+               throw(new MsgException("Socket is closed"));
+
+            /* read whatever the socket has */
+            rxBuf.clear();
+            int cnt = channel.read(rxBuf);
+            rxBuf.flip();
+            if(cnt < 0)
+               throw(new MsgException("Connection closed by "+name));
+
+            /* nothing there, wait for more or the timeout */
+            if(cnt == 0)
+            {
+               long wait = 0;
+               if(deadline > 0)
+               {
+                  wait = deadline - System.currentTimeMillis();
+                  if(wait <= 0)
+                     return(0);
+               }
+               readSelector.select(wait);
+               readSelector.selectedKeys().clear();
+            }
+         }
+      } catch(Throwable t) {
+         down();
+         throw((t instanceof MsgException) ? (MsgException)t :
+            new MsgException("Failed to read from "+name,t));
+      }
+   }
+
+   @Override
+   public void write(byte[] buf)
+   {
+      write(buf,0,buf.length);
+   }
+
+   @Override
+   public void write(byte[] buf,int offset,int len)
+   {
+      try {
+         out.write(buf,offset,len);
+      } catch(Throwable t) {
+         down();
+         throw(new MsgException("Failed to write to "+name,t));
+      }
+   }
+
+   @Override
+   public void flush()
+   {
+      try {
+         if(out != null)
+            out.flush();
+      } catch(Throwable t) {
+         down();
+         throw(new MsgException("Failed to write to "+name,t));
+      }
+   }
+
+   /**
+    * Write everything to the socket, waiting for room as needed.
+    */
+   private void writeFully(byte[] buf,int offset,int len) throws IOException
+   {
+      ByteBuffer bb = ByteBuffer.wrap(buf,offset,len);
+      while(bb.hasRemaining())
+      {
+         /* socket buffer full, wait for the other side to catch up */
+         if(channel.write(bb) == 0)
+         {
+            if(writeSelector.select(WRITE_TIMEOUT) == 0)
+               throw(new IOException(open ? "Write timed out" : "Socket is closed"));
+            writeSelector.selectedKeys().clear();
+         }
+      }
+   }
+
+   @Override
+   public void close()
+   {
+      open = false;
+
+      if(out != null)
+      {
+         out.close();
+         out = null;
+      }
+
+      /* closing the selectors wakes up anyone waiting on them */
+      try {
+         if(readSelector != null)
+            readSelector.close();
+         if(writeSelector != null)
+            writeSelector.close();
+         if(channel != null)
+            channel.close();
+      } catch(Exception ex) {
+         /* nothing more we can do */
+      }
+      readSelector = null;
+      writeSelector = null;
+      channel = null;
+   }
+}
@@ -0,0 +1,307 @@
+/**
+ * (C) Copyright 2026, David Vogt, All rights reserved.
+ */
+package mv.robotics.sign.msg.net;
+
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+
+import mv.robotics.sign.metrics.Counter;
+import mv.robotics.sign.metrics.Metrics;
+import mv.robotics.sign.msg.MsgTransport;
+import mv.robotics.sign.msg.ex.MsgException;
+
+/**
+ * A UDP transport for streaming frames.  Every packet the connection
+ * writes goes out as its own datagram prefixed with a sequence number.
+ * Lost datagrams are simply gone, which for frames is what we want: a
+ * retransmitted frame is a stale frame.  Datagrams that arrive out of
+ * order behind a newer one are dropped for the same reason, so a late
+ * frame never overwrites a newer one on the sign.
+ *
+ * A client transport sends to a fixed host and port.  A server transport
+ * binds a port, answers whoever sent it the latest connect request and
+ * is passive like an accepted tcp socket.  Both are durable since there
+ * is no connection to lose, liveness comes from the periodic connect
+ * requests instead.
+ *
+ * @author David Vogt (david@kondra.com)
+ * @version Oct-18-26
+ */
+public class MsgUdpTransport extends MsgTransport
+{
+   /* size of the sequence number in front of each datagram */
+   static private final int SEQ_SIZE = 4;
+
+   /* max size of a udp payload */
+   static private final int MAX_DATAGRAM_SIZE = 65507;
+
+   /* sequence numbers further behind than this mean the sender restarted */
+   static private final int RESTART_WINDOW = 1024;
+
+   /* metrics shared by all udp transports */
+   static private final Counter lost = Metrics.counter("msg.udp.lost");
+   static private final Counter stale = Metrics.counter("msg.udp.stale");
+   static private final Counter txDropped = Metrics.counter("msg.udp.txDropped");
+
+   private String host;                /* host to send to, null for a server */
+   private int port;                   /* remote port or port to bind */
+   private volatile SocketAddress remote;   /* where datagrams go */
+   private DatagramChannel channel;    /* the socket */
+   private Selector selector;          /* waits for datagrams */
+   private ByteBuffer rxBuf;           /* current datagram */
+   private ByteBuffer txBuf;           /* datagram being sent */
+   private int txSeq;                  /* next sequence number to send */
+   private int rxSeq;                  /* next sequence number expected */
+   private boolean rxSynced;           /* true once rxSeq is known */
+   private int timeout;                /* read timeout in ms, 0 = none */
+   private volatile boolean open;      /* true while the socket is open */
+
+   /**
+    * Create a client transport that sends to the specified host.
+    *
+    * @param host   the host to send to
+    * @param port   the port to send to
+    */
+   public MsgUdpTransport(String host,int port)
+   {
+      this(port);
+      this.host = host;
+   }
+
+   /**
+    * Create a server transport that listens on the specified port.
+    *
+    * @param port   the port to bind
+    */
+   public MsgUdpTransport(int port)
+   {
+      this.port = port;
+
+      rxBuf = ByteBuffer.allocate(MAX_DATAGRAM_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+      rxBuf.flip();
+      txBuf = ByteBuffer.allocate(MAX_DATAGRAM_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+   }
+
+   /**
+    * Return the local port, useful for servers bound to port 0.
+    */
+   public int getLocalPort()
+   {
+      DatagramChannel ch = channel;
+      return((ch != null) ? ch.socket().getLocalPort() : port);
+   }
+
+   @Override
+   public boolean isDurable()
+   {
+      return(true);
+   }
+
+   @Override
+   public boolean isPassive()
+   {
+      return(host == null);
+   }
+
+   @Override
+   public boolean isChecked()
+   {
+      return(true);
+   }
+
+   @Override
+   public boolean includeChecksum()
+   {
+      /* the udp checksum is optional over ipv4 */
+      return(true);
+   }
+
+   @Override
+   public void down()
+   {
+      close();
+
+      super.down();
+   }
+
+   @Override
+   public void attemptUp()
+   {
+      if(open)
+         return;
+
+      try {
+         DatagramChannel ch = DatagramChannel.open();
+         if(host == null)
+            ch.bind(new InetSocketAddress(port));
+         else
+         {
+            remote = new InetSocketAddress(host,port);
+            ch.bind(null);
+            ch.connect(remote);
+         }
+         ch.configureBlocking(false);
+         selector = Selector.open();
+         ch.register(selector,SelectionKey.OP_READ);
+         channel = ch;
+
+         rxBuf.clear();
+         rxBuf.flip();
+         rxSynced = false;
+         open = true;
+
+         up();
+      } catch(Throwable t) {
+         close();
+      }
+   }
+
+   @Override
+   public void setReadTimeout(int timeout)
+   {
+      this.timeout = timeout;
+   }
+
+   @Override
+   public int read(byte[] buf,int offset,int len)
+   {
+      long deadline = (timeout > 0) ? (System.currentTimeMillis() + timeout) : 0;
+
+      try {
+         while(true)
+         {
+            /* serve from the current datagram */
+            if(rxBuf.hasRemaining())
+            {
+               int cnt = Math.min(len,rxBuf.remaining());
+               rxBuf.get(buf,offset,cnt);
+               return(cnt);
+            }
+
+            if(!open)
+               throw(new MsgException("Socket is closed"));
+
+            /* take the next datagram if there is one */
+            rxBuf.clear();
+            SocketAddress from = channel.receive(rxBuf);
+            rxBuf.flip();
+            if(from != null)
+            {
+               if(!accept(from))
+                  rxBuf.limit(0);
+               continue;
+            }
+
+            /* nothing there, wait for more or the timeout */
+            long wait = 0;
+            if(deadline > 0)
+            {
+               wait = deadline - System.currentTimeMillis();
+               if(wait <= 0)
+                  return(0);
+            }
+            selector.select(wait);
+            selector.selectedKeys().clear();
+         }
+      } catch(Throwable t) {
+         down();
+         throw((t instanceof MsgException) ? (MsgException)t :
+            new MsgException("Failed to read from "+host+":"+port,t));
+      }
+   }
+
+   /**
+    * Check the sequence number of a new datagram, leaving the buffer
+    * positioned at the packet if it should be used.
+    *
+    * @param from   the sender
+    * @return true to use the datagram, false to drop it
+    */
+   private boolean accept(SocketAddress from)
+   {
+      if(rxBuf.remaining() < SEQ_SIZE)
+         return(false);
+      int seq = rxBuf.getInt();
+
+      /* a server answers the latest client, a new client starts a new sequence */
+      if((host == null) && !from.equals(remote))
+      {
+         remote = from;
+         rxSynced = false;
+      }
+
+      if(rxSynced)
+      {
+         int diff = seq - rxSeq;
+
+         /* older than what we've already seen, unless the sender restarted */
+         if((diff < 0) && (diff > -RESTART_WINDOW))
+         {
+            stale.inc();
+            return(false);
+         }
+
+         /* anything skipped was lost */
+         if(diff > 0)
+            lost.add(diff);
+      }
+      rxSeq = seq + 1;
+      rxSynced = true;
+      return(true);
+   }
+
+   @Override
+   public void write(byte[] buf)
+   {
+      write(buf,0,buf.length);
+   }
+
+   @Override
+   public void write(byte[] buf,int offset,int len)
+   {
+      /* a server has nobody to send to until a client shows up */
+      SocketAddress to = remote;
+      if(!open || (to == null))
+      {
+         txDropped.inc();
+         return;
+      }
+
+      try {
+         txBuf.clear();
+         txBuf.putInt(txSeq++);
+         txBuf.put(buf,offset,len);
+         txBuf.flip();
+
+         /* a full socket buffer drops the datagram like the network would */
+         if(channel.send(txBuf,to) == 0)
+            txDropped.inc();
+      } catch(Throwable t) {
+         down();
+         throw(new MsgException("Failed to write to "+to,t));
+      }
+   }
+
+   @Override
+   public void close()
+   {
+      open = false;
+
+      try {
+         if(selector != null)
+            selector.close();
+         if(channel != null)
+            channel.close();
+      } catch(Exception ex) {
+         /* nothing more we can do */
+      }
+      selector = null;
+      channel = null;
+   }
+}
@@ -3,12 +3,15 @@
  */
 package mv.robotics.sign.msg.serial;
 
+import java.io.BufferedInputStream;
+import java.io.InputStream;
 import java.util.Enumeration;
 
 import gnu.io.CommPort;
 import gnu.io.CommPortIdentifier;
 import gnu.io.SerialPort;
 import mv.robotics.sign.msg.ex.MsgException;
+import mv.robotics.sign.msg.util.WriteCoalescer;
 
 /**
  * An implementation of Transport over serial ports.
@@ -23,10 +26,18 @@ public class MsgSerialTransport extends mv.robotics.sign.msg.MsgTransport
    /* when referring to ports that have been unplugged */
    static private boolean enumeratePorts;
    
+   /* how long small writes wait to be batched together, in ms */
+   static private final long COALESCE_WINDOW = 2;
+   
+   /* size of the write batch and read buffers */
+   static private final int BUFFER_SIZE = 4096;
+   
    private String device;              /* the device name */
    private int baud;                   /* the baud rate */
    private SerialPort serialPort;      /* the opened serial port */
    private int timeout;                /* read timeout */
+   private InputStream in;             /* buffered serial input */
+   private WriteCoalescer out;         /* batched serial output */
    
    /**
     * Create a new transport for the specified serial port.
@@ -97,6 +108,11 @@ public class MsgSerialTransport extends mv.robotics.sign.msg.MsgTransport
                /* set the timeout */
                setReadTimeout(timeout);
                
+               /* look up the streams once, reads are buffered so the */
+               /* connection's small header reads don't each hit the port */
+               in = new BufferedInputStream(serialPort.getInputStream(),BUFFER_SIZE);
+               out = new WriteCoalescer(serialPort.getOutputStream(),COALESCE_WINDOW,BUFFER_SIZE);
+               
                /* we're up */
                up();
             }
@@ -137,7 +153,7 @@ public class MsgSerialTransport extends mv.robotics.sign.msg.MsgTransport
    public int read(byte[] buf,int offset,int len)
    {
       try {
-         return(serialPort.getInputStream().read(buf,offset,len));
+         return(in.read(buf,offset,len));
       } catch(Throwable t) {
          down();
          throw(new MsgException("Failed to read from serial port",t));
@@ -146,9 +162,27 @@ public class MsgSerialTransport extends mv.robotics.sign.msg.MsgTransport
    
    @Override
    public void write(byte[] buf)
+   {
+      write(buf,0,buf.length);
+   }
+   
+   @Override
+   public void write(byte[] buf,int offset,int len)
+   {
+      try {
+         out.write(buf,offset,len);
+      } catch(Throwable t) {
+         down();
+         throw(new MsgException("Failed to write to serial port",t));
+      }
+   }
+   
+   @Override
+   public void flush()
    {
       try {
-         serialPort.getOutputStream().write(buf);
+         if(out != null)
+            out.flush();
       } catch(Throwable t) {
          down();
          throw(new MsgException("Failed to write to serial port",t));
@@ -158,6 +192,15 @@ public class MsgSerialTransport extends mv.robotics.sign.msg.MsgTransport
    @Override
    public void close()
    {
-      serialPort.close();
+      /* stop batching before the port goes away */
+      if(out != null)
+      {
+         out.close();
+         out = null;
+      }
+      in = null;
+      
+      if(serialPort != null)
+         serialPort.close();
    }
 }
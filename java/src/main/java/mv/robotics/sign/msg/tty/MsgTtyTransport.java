@@ -0,0 +1,249 @@
+/**
+ * (C) Copyright 2026, David Vogt, All rights reserved.
+ */
+package mv.robotics.sign.msg.tty;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+import mv.robotics.sign.msg.MsgTransport;
+import mv.robotics.sign.msg.ex.MsgException;
+import mv.robotics.sign.msg.util.WriteCoalescer;
+
+/**
+ * A pure Java transport for Linux serial devices such as the teensy's
+ * /dev/ttyACM0.  The tty is put in raw mode with stty and then opened as
+ * a plain file channel, so there is no native library involved and
+ * nothing to crash the jvm when the usb cable is pulled: a vanished
+ * device simply shows up as a failed read or a missing device node.
+ *
+ * The tty is configured with VMIN=0/VTIME so reads never block longer
+ * than the poll interval.  Each empty poll is used to check the read
+ * timeout, whether the transport was closed and whether the device node
+ * still exists.  The device is opened twice, once for each direction: a
+ * file channel holds its lock through a read, so sharing one channel would
+ * hold every write up behind a read waiting out the poll interval.
+ *
+ * The tty is set to clocal and -hupcl so neither a dropped carrier nor
+ * closing the port hangs it up.  Unplugging the device still does, and
+ * since Java opens files without O_NOCTTY a jvm that is a session leader
+ * with no controlling terminal (run with setsid, or as the main process
+ * of a systemd service) adopts the device as its controlling terminal and
+ * is killed by the SIGHUP.  Start the jvm from a shell or a wrapper script
+ * that doesn't exec it so it isn't the session leader.  A warning is
+ * printed when the transport finds itself in that position.
+ *
+ * @author David Vogt (david@kondra.com)
+ * @version Oct-18-26
+ */
+public class MsgTtyTransport extends MsgTransport
+{
+   /* read poll interval in tenths of a second (termios VTIME) */
+   static private final int POLL_INTERVAL = 1;
+   
+   /* shortest time an empty poll should take, in ms */
+   static private final long MIN_POLL_TIME = 10;
+
+   /* how long small writes wait to be batched together, in ms */
+   static private final long COALESCE_WINDOW = 2;
+
+   /* size of the read buffer and write batches */
+   static private final int BUFFER_SIZE = 4096;
+
+   private String device;              /* the device name */
+   private Path path;                  /* the device node */
+   private int baud;                   /* the baud rate */
+   private int timeout;                /* read timeout in ms, 0 = none */
+   private FileChannel inChannel;      /* the device open for reading */
+   private FileChannel outChannel;     /* the device open for writing */
+   private ByteBuffer rxBuf;           /* bytes read but not yet consumed */
+   private WriteCoalescer out;         /* batched output */
+   private volatile boolean open;      /* true while the device is open */
+   private boolean warned;             /* true once the session warning is printed */
+
+   /**
+    * Create a new transport for the specified tty device.
+    *
+    * @param device   the name of the device
+    * @param baud     the baud rate
+    */
+   public MsgTtyTransport(String device,int baud)
+   {
+      this.device = device;
+      this.path = Paths.get(device);
+      this.baud = baud;
+
+      /* start out empty */
+      rxBuf = ByteBuffer.allocateDirect(BUFFER_SIZE);
+      rxBuf.flip();
+   }
+
+   @Override
+   public boolean isChecked()
+   {
+      return(true);
+   }
+
+   @Override
+   public boolean isDurable()
+   {
+      return(true);
+   }
+
+   @Override
+   public void down()
+   {
+      /* cleanup the device */
+      close();
+
+      super.down();
+   }
+
+   @Override
+   public void attemptUp()
+   {
+      /* nothing to do until the device node shows up */
+      if(open || !Files.exists(path))
+         return;
+
+      /* see the class comment */
+      if(!warned && Termios.isSessionLeader())
+      {
+         warned = true;
+         System.out.println(device+" may become the controlling tty, unplugging it will SIGHUP the jvm");
+      }
+
+      try {
+         /* raw mode first, then open it */
+         Termios.configure(device,baud,POLL_INTERVAL);
+         inChannel = FileChannel.open(path,StandardOpenOption.READ);
+         outChannel = FileChannel.open(path,StandardOpenOption.WRITE);
+         out = new WriteCoalescer(Channels.newOutputStream(outChannel),COALESCE_WINDOW,BUFFER_SIZE);
+         rxBuf.clear();
+         rxBuf.flip();
+         open = true;
+
+         /* we're up */
+         up();
+      } catch(Throwable t) {
+         /* try again on the next attempt */
+         close();
+      }
+   }
+
+   @Override
+   public void setReadTimeout(int timeout)
+   {
+      this.timeout = timeout;
+   }
+
+   @Override
+   public int read(byte[] buf,int offset,int len)
+   {
+      long deadline = (timeout > 0) ? (System.currentTimeMillis() + timeout) : 0;
+
+      try {
+         while(true)
+         {
+            /* serve from what we've already read */
+            if(rxBuf.hasRemaining())
+            {
+               int cnt = Math.min(len,rxBuf.remaining());
+               rxBuf.get(buf,offset,cnt);
+               return(cnt);
+            }
+
+            if(!open)
+               throw(new MsgException("Device is closed"));
+
+            /* read whatever the tty has... an empty read after the poll */
+            /* interval comes back from the channel as end of stream since */
+            /* that's what it means for regular files, so treat both alike */
+            long start = System.currentTimeMillis();
+            rxBuf.clear();
+            int cnt = inChannel.read(rxBuf);
+            rxBuf.flip();
+
+            /* nothing arrived this poll, check the device is still there */
+            /* and whether we've run out of time */
+            if(cnt <= 0)
+            {
+               rxBuf.limit(0);
+               if(!Files.exists(path))
+                  throw(new MsgException("Device removed: "+device));
+               if((deadline > 0) && (System.currentTimeMillis() >= deadline))
+                  return(0);
+               
+               /* a hung up tty returns immediately, don't spin on it */
+               if((System.currentTimeMillis() - start) < MIN_POLL_TIME)
+                  Thread.sleep(MIN_POLL_TIME);
+            }
+         }
+      } catch(Throwable t) {
+         down();
+         throw((t instanceof MsgException) ? (MsgException)t :
+            new MsgException("Failed to read from "+device,t));
+      }
+   }
+
+   @Override
+   public void write(byte[] buf)
+   {
+      write(buf,0,buf.length);
+   }
+
+   @Override
+   public void write(byte[] buf,int offset,int len)
+   {
+      try {
+         out.write(buf,offset,len);
+      } catch(Throwable t) {
+         down();
+         throw(new MsgException("Failed to write to "+device,t));
+      }
+   }
+
+   @Override
+   public void flush()
+   {
+      try {
+         if(out != null)
+            out.flush();
+      } catch(Throwable t) {
+         down();
+         throw(new MsgException("Failed to write to "+device,t));
+      }
+   }
+
+   @Override
+   public void close()
+   {
+      open = false;
+
+      if(out != null)
+      {
+         out.close();
+         out = null;
+      }
+
+      close(inChannel);
+      close(outChannel);
+      inChannel = null;
+      outChannel = null;
+   }
+
+   static private void close(FileChannel channel)
+   {
+      try {
+         if(channel != null)
+            channel.close();
+      } catch(Exception ex) {
+         /* nothing more we can do */
+      }
+   }
+}
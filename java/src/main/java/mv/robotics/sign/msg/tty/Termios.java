@@ -0,0 +1,118 @@
+/**
+ * (C) Copyright 2026, David Vogt, All rights reserved.
+ */
+package mv.robotics.sign.msg.tty;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Small helper that puts a Linux tty into raw mode.  Java has no access
+ * to tcsetattr() without native code so this drives stty(1), which is
+ * always present, and only runs when a port is opened.
+ * 
+ * @author David Vogt (david@kondra.com)
+ * @version Oct-18-26
+ */
+class Termios
+{
+   private Termios()
+   {
+   }
+   
+   /**
+    * Configure the device for raw 8N1 binary transfers.  Reads use
+    * VMIN=0 and the specified VTIME so that a read returns whatever is
+    * available or 0 once the poll interval passes with no data.
+    * 
+    * @param device   the tty device path
+    * @param baud     the baud rate (ignored by usb cdc devices)
+    * @param vtime    read poll interval in tenths of a second
+    */
+   static void configure(String device,int baud,int vtime) throws IOException
+   {
+      List<String> cmd = new ArrayList<>();
+      cmd.add("stty");
+      cmd.add("-F");
+      cmd.add(device);
+      cmd.add(Integer.toString(baud));
+      
+      /* raw 8N1, no flow control, no echo or line processing */
+      cmd.add("raw");
+      cmd.add("cs8");
+      cmd.add("-cstopb");
+      cmd.add("-parenb");
+      cmd.add("-crtscts");
+      cmd.add("-ixon");
+      cmd.add("-ixoff");
+      cmd.add("-echo");
+      cmd.add("-echoe");
+      cmd.add("-echok");
+      cmd.add("-echoctl");
+      cmd.add("-echoke");
+      cmd.add("clocal");
+      cmd.add("cread");
+      
+      /* keep dtr up when we close so the board doesn't reset */
+      cmd.add("-hupcl");
+      
+      /* return what's available, or nothing after vtime */
+      cmd.add("min");
+      cmd.add("0");
+      cmd.add("time");
+      cmd.add(Integer.toString(vtime));
+      
+      Process process = new ProcessBuilder(cmd).redirectErrorStream(true).start();
+      String output = readAll(process.getInputStream());
+      try {
+         if(process.waitFor() != 0)
+            throw(new IOException("stty failed for "+device+": "+output.trim()));
+      } catch(InterruptedException ex) {
+         Thread.currentThread().interrupt();
+         throw(new IOException("Interrupted configuring "+device,ex));
+      }
+   }
+   
+   /**
+    * Return true if this process could take a tty it opens as its
+    * controlling terminal.  Java can't pass O_NOCTTY, so a session leader
+    * with no controlling terminal (a process started with setsid or as a
+    * systemd service) picks up the first tty it opens, and when that tty
+    * hangs up, as a usb serial device does when it's unplugged, the
+    * kernel sends the process SIGHUP and the jvm exits.
+    */
+   static boolean isSessionLeader()
+   {
+      try {
+         /* pid (comm) state ppid pgrp session tty_nr ... where comm can */
+         /* hold anything, so split what follows the last paren */
+         String stat = new String(Files.readAllBytes(Paths.get("/proc/self/stat")));
+         String[] fields = stat.substring(stat.lastIndexOf(')')+2).trim().split(" ");
+         int pid = Integer.parseInt(stat.substring(0,stat.indexOf(' ')));
+         int session = Integer.parseInt(fields[3]);
+         int tty = Integer.parseInt(fields[4]);
+         return((pid == session) && (tty == 0));
+      } catch(Exception ex) {
+         /* not linux, or no /proc */
+         return(false);
+      }
+   }
+
+   /**
+    * Read a process's output so it can't block on a full pipe.
+    */
+   static private String readAll(InputStream is) throws IOException
+   {
+      ByteArrayOutputStream bos = new ByteArrayOutputStream();
+      byte[] buf = new byte[256];
+      int cnt;
+      while((cnt = is.read(buf)) > 0)
+         bos.write(buf,0,cnt);
+      return(bos.toString());
+   }
+}
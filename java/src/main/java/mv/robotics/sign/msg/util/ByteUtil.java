@@ -7,7 +7,9 @@ import java.io.IOException;
 import java.io.OutputStream;
 
 /**
- * A collection of byte oriented de/serialization methods.
+ * A collection of byte oriented de/serialization methods.  For building
+ * whole messages prefer MsgBuffer which writes multi-byte values in a
+ * single access and hands the result to a stream in one call.
  * 
  * @author David Vogt (david@kondra.com)
  * @version Jun-13-16
@@ -133,9 +135,9 @@ public class ByteUtil
     */
    static public int setShort(OutputStream os,int val)
    {
+      /* one write per value, streams may be unbuffered */
       try {
-         os.write((byte)val);
-         os.write((byte)(val>>8));
+         os.write(new byte[] { (byte)val,(byte)(val>>8) });
       } catch(IOException ex) {
          throw(new RuntimeException(ex));
       }
@@ -150,11 +152,9 @@ public class ByteUtil
     */
    static public int setInt(OutputStream os,int val)
    {
+      /* one write per value, streams may be unbuffered */
       try {
-         os.write((byte)val);
-         os.write((byte)(val>>8));
-         os.write((byte)(val>>16));
-         os.write((byte)(val>>24));      
+         os.write(new byte[] { (byte)val,(byte)(val>>8),(byte)(val>>16),(byte)(val>>24) });
       } catch(IOException ex) {
          throw(new RuntimeException(ex));
       }
@@ -0,0 +1,217 @@
+/**
+ * (C) Copyright 2026, David Vogt, All rights reserved.
+ */
+package mv.robotics.sign.msg.util;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import mv.robotics.sign.msg.ex.MsgException;
+
+/**
+ * A growable, little endian output buffer for serializing messages.  All
+ * writes go through a little endian ByteBuffer view of the backing array
+ * so multi-byte values are stored with a single access rather than being
+ * assembled a byte at a time.  The buffer is meant to be reused: clear()
+ * it, fill it and hand the backing array to the transport in one write.
+ *
+ * @author David Vogt (david@kondra.com)
+ * @version Oct-18-26
+ */
+public class MsgBuffer
+{
+   private byte[] array;            /* backing array */
+   private ByteBuffer buf;          /* little endian view of the array */
+   private int pos;                 /* current write position */
+
+   /**
+    * Create a buffer with the specified initial capacity.
+    *
+    * @param capacity   initial size in bytes
+    */
+   public MsgBuffer(int capacity)
+   {
+      array = new byte[Math.max(capacity,16)];
+      buf = ByteBuffer.wrap(array).order(ByteOrder.LITTLE_ENDIAN);
+   }
+
+   /**
+    * Reset the buffer to empty.  The backing array is kept.
+    */
+   public void clear()
+   {
+      pos = 0;
+   }
+
+   /**
+    * Return the backing array.  This changes if the buffer grows.
+    */
+   public byte[] array()
+   {
+      return(array);
+   }
+
+   /**
+    * Return the little endian view of the backing array, for bulk
+    * writers that fill it in place and then move the position.  This
+    * changes if the buffer grows.
+    */
+   public ByteBuffer view()
+   {
+      return(buf);
+   }
+
+   /**
+    * Return the number of bytes written.
+    */
+   public int position()
+   {
+      return(pos);
+   }
+
+   /**
+    * Move the write position, growing the buffer if needed.  This is
+    * useful for reserving space that is filled in later.
+    *
+    * @param pos   the new position
+    */
+   public void position(int pos)
+   {
+      ensure(pos - this.pos);
+      this.pos = pos;
+   }
+
+   /**
+    * Make sure there is room for the specified number of bytes.
+    *
+    * @param len   the number of bytes about to be written
+    */
+   public void ensure(int len)
+   {
+      int needed = pos + len;
+      if(needed > array.length)
+      {
+         /* grow by doubling so repeated writes amortize */
+         byte[] bigger = new byte[Math.max(needed,array.length*2)];
+         System.arraycopy(array,0,bigger,0,pos);
+         array = bigger;
+         buf = ByteBuffer.wrap(array).order(ByteOrder.LITTLE_ENDIAN);
+      }
+   }
+
+   /**
+    * Write a byte.
+    */
+   public MsgBuffer putByte(int val)
+   {
+      ensure(1);
+      array[pos++] = (byte)val;
+      return(this);
+   }
+
+   /**
+    * Write a boolean as a single byte.
+    */
+   public MsgBuffer putBool(boolean val)
+   {
+      return(putByte(val?1:0));
+   }
+
+   /**
+    * Write a little endian short.
+    */
+   public MsgBuffer putShort(int val)
+   {
+      ensure(2);
+      buf.putShort(pos,(short)val);
+      pos += 2;
+      return(this);
+   }
+
+   /**
+    * Write a little endian short at the specified position without
+    * moving the write position.  Used to patch in lengths and crcs.
+    */
+   public MsgBuffer putShort(int index,int val)
+   {
+      buf.putShort(index,(short)val);
+      return(this);
+   }
+
+   /**
+    * Write a little endian int.
+    */
+   public MsgBuffer putInt(int val)
+   {
+      ensure(4);
+      buf.putInt(pos,val);
+      pos += 4;
+      return(this);
+   }
+
+   /**
+    * Write a range of bytes.
+    */
+   public MsgBuffer putBytes(byte[] bytes,int offset,int len)
+   {
+      ensure(len);
+      System.arraycopy(bytes,offset,array,pos,len);
+      pos += len;
+      return(this);
+   }
+
+   /**
+    * Write a range of ints as little endian values.
+    */
+   public MsgBuffer putInts(int[] vals,int offset,int len)
+   {
+      ensure(len*4);
+      for(int i=0;i<len;i++,pos+=4)
+         buf.putInt(pos,vals[offset+i]);
+      return(this);
+   }
+
+   /**
+    * Read packed r,g,b bytes into opaque ARGB pixels.
+    *
+    * @param bytes     the packed data
+    * @param offset    start of the packed data
+    * @param pixels    the pixel array to fill
+    * @param pOffset   first pixel to fill
+    * @param len       number of pixels to read
+    */
+   static public void getRgb(byte[] bytes,int offset,int[] pixels,int pOffset,int len)
+   {
+      for(int i=0;i<len;i++,offset+=3)
+      {
+         pixels[pOffset+i] = 0xff000000 | ((bytes[offset] & 0xff) << 16) |
+            ((bytes[offset+1] & 0xff) << 8) | (bytes[offset+2] & 0xff);
+      }
+   }
+
+   /**
+    * Return a copy of the written bytes.
+    */
+   public byte[] toByteArray()
+   {
+      byte[] bytes = new byte[pos];
+      System.arraycopy(array,0,bytes,0,pos);
+      return(bytes);
+   }
+
+   /**
+    * Write the contents to a stream in a single call.
+    *
+    * @param os   the stream
+    */
+   public void writeTo(OutputStream os)
+   {
+      try {
+         os.write(array,0,pos);
+      } catch(IOException ex) {
+         throw(new MsgException("Failed to write buffer",ex));
+      }
+   }
+}
@@ -0,0 +1,175 @@
+/**
+ * (C) Copyright 2026, David Vogt, All rights reserved.
+ */
+package mv.robotics.sign.msg.util;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Batches small writes to a stream.  Packets written within a short
+ * window of the first pending packet are appended to a buffer and go out
+ * together in a single write, which on a usb serial link means a single
+ * transaction rather than one per packet.  The buffer is written early
+ * once it reaches its size limit, and callers can flush() explicitly for
+ * latency critical data.
+ *
+ * A background thread does the timed flushes.  Write errors it hits are
+ * reported by the next call to write() or flush().
+ *
+ * @author David Vogt (david@kondra.com)
+ * @version Oct-18-26
+ */
+public class WriteCoalescer
+{
+   private OutputStream os;            /* the stream being written to */
+   private long window;                /* max time data waits, in ns */
+   private int limit;                  /* size that triggers an early write */
+   private MsgBuffer pending;          /* data waiting to be written */
+   private MsgBuffer spare;            /* buffer swapped in while writing */
+   private long firstPending;          /* when the oldest pending data arrived */
+   private Object writeLock;           /* serializes writes to the stream */
+   private IOException failure;        /* error from the flush thread */
+   private boolean closed;             /* true once closed */
+
+   /**
+    * Create a coalescer and start its flush thread.
+    *
+    * @param os       the stream to write to
+    * @param window   max ms data waits before being written
+    * @param limit    buffered size that triggers an immediate write
+    */
+   public WriteCoalescer(OutputStream os,long window,int limit)
+   {
+      this.os = os;
+      this.window = window * 1000000L;
+      this.limit = limit;
+      pending = new MsgBuffer(limit);
+      spare = new MsgBuffer(limit);
+      writeLock = new Object();
+
+      Thread thread = new Thread(new Runnable() {
+         public void run() {
+            flushThread();
+         }
+      },"write-coalescer");
+      thread.setDaemon(true);
+      thread.start();
+   }
+
+   /**
+    * Queue bytes to be written.
+    *
+    * @param buf      the bytes
+    * @param offset   start of the range to write
+    * @param len      number of bytes to write
+    */
+   public void write(byte[] buf,int offset,int len) throws IOException
+   {
+      boolean full;
+
+      synchronized(this) {
+         checkFailure();
+
+         /* start the clock when the buffer goes from empty to pending */
+         if(pending.position() == 0)
+         {
+            firstPending = System.nanoTime();
+            notifyAll();
+         }
+         pending.putBytes(buf,offset,len);
+         full = (pending.position() >= limit);
+      }
+
+      /* big enough to go now */
+      if(full)
+         flush();
+   }
+
+   /**
+    * Write anything pending immediately.
+    */
+   public void flush() throws IOException
+   {
+      synchronized(writeLock) {
+         /* swap in the spare so writers aren't blocked during the write */
+         MsgBuffer out;
+         synchronized(this) {
+            checkFailure();
+            if(pending.position() == 0)
+               return;
+            out = pending;
+            pending = spare;
+            spare = out;
+         }
+
+         /* one write for everything that was pending */
+         try {
+            os.write(out.array(),0,out.position());
+            os.flush();
+         } finally {
+            out.clear();
+         }
+      }
+   }
+
+   /**
+    * Stop the flush thread.  Pending data is discarded.
+    */
+   public synchronized void close()
+   {
+      closed = true;
+      notifyAll();
+   }
+
+   /**
+    * Throw any error hit by the flush thread.
+    */
+   private void checkFailure() throws IOException
+   {
+      if(failure != null)
+      {
+         IOException ex = failure;
+         failure = null;
+         throw(ex);
+      }
+   }
+
+   /**
+    * Flushes pending data once it has waited for the window.
+    */
+   private void flushThread()
+   {
+      while(true)
+      {
+         try {
+            synchronized(this) {
+               /* wait for something to write */
+               while(!closed && (pending.position() == 0))
+                  wait();
+               if(closed)
+                  return;
+
+               /* wait out the rest of the window unless someone else flushes */
+               long remaining;
+               while(!closed && (pending.position() > 0) &&
+                  ((remaining = (firstPending + window) - System.nanoTime()) > 0))
+               {
+                  wait(remaining / 1000000L,(int)(remaining % 1000000L));
+               }
+               if(closed)
+                  return;
+            }
+
+            flush();
+         } catch(IOException ex) {
+            /* hand the error to the next writer */
+            synchronized(this) {
+               failure = ex;
+            }
+         } catch(InterruptedException ex) {
+            return;
+         }
+      }
+   }
+}
@@ -0,0 +1,224 @@
+/**
+ * (C) Copyright 2026, David Vogt, All rights reserved.
+ */
+package mv.robotics.sign.pipeline;
+
+import mv.robotics.sign.kernels.PixelKernels;
+
+/**
+ * Color correction stage for the output pipeline.  Applies gamma, per
+ * channel white balance and global brightness using lookup tables that
+ * are rebuilt only when a setting changes.  The tables map 8bit input
+ * values to 8.8 fixed point output values so that the fractional part
+ * can optionally be carried from frame to frame (temporal dithering)
+ * which recovers the dark tones that would otherwise be lost when the
+ * corrected values are truncated back to 8 bits.
+ *
+ * @author David Vogt (david@kondra.com)
+ * @version Oct-18-26
+ */
+public class ColorCorrector implements FrameFilter
+{
+   /* number of entries in each lookup table */
+   static private final int LUT_SIZE = 256;
+
+   /* max value of a corrected channel in 8.8 fixed point */
+   static private final int MAX_VALUE = 255 << 8;
+
+   private float gamma;           /* gamma exponent */
+   private float red;             /* red white balance scale 0..1 */
+   private float green;           /* green white balance scale 0..1 */
+   private float blue;            /* blue white balance scale 0..1 */
+   private float brightness;      /* global brightness scale 0..1 */
+   private boolean dither;        /* true to enable temporal dithering */
+   private volatile int[] lutR;   /* red lookup table (8.8 fixed point) */
+   private volatile int[] lutG;   /* green lookup table (8.8 fixed point) */
+   private volatile int[] lutB;   /* blue lookup table (8.8 fixed point) */
+   private volatile int[] outR;   /* rounded red table, shifted into place */
+   private volatile int[] outG;   /* rounded green table, shifted into place */
+   private volatile int[] outB;   /* rounded blue table */
+   private int[] residue;         /* dither residue, three entries per pixel */
+
+   /**
+    * Create a color corrector with the specified gamma and no white
+    * balance or brightness adjustment.
+    *
+    * @param gamma   the gamma exponent (1.0 disables gamma correction)
+    */
+   public ColorCorrector(float gamma)
+   {
+      this.gamma = gamma;
+      this.red = 1.0f;
+      this.green = 1.0f;
+      this.blue = 1.0f;
+      this.brightness = 1.0f;
+      buildTables();
+   }
+
+   /**
+    * Return the gamma exponent.
+    */
+   public float getGamma()
+   {
+      return(gamma);
+   }
+
+   /**
+    * Set the gamma exponent and rebuild the tables.
+    *
+    * @param gamma   the gamma exponent (1.0 disables gamma correction)
+    */
+   public void setGamma(float gamma)
+   {
+      this.gamma = gamma;
+      buildTables();
+   }
+
+   /**
+    * Return the global brightness.
+    */
+   public float getBrightness()
+   {
+      return(brightness);
+   }
+
+   /**
+    * Set the global brightness and rebuild the tables.  The value is
+    * clamped to the range 0..1.
+    *
+    * @param brightness   the brightness scale
+    */
+   public void setBrightness(float brightness)
+   {
+      this.brightness = clamp(brightness);
+      buildTables();
+   }
+
+   /**
+    * Return true if temporal dithering is enabled.
+    */
+   public boolean isDither()
+   {
+      return(dither);
+   }
+
+   /**
+    * Enable or disable temporal dithering.
+    *
+    * @param dither   true to carry the fractional part from frame to frame
+    */
+   public void setDither(boolean dither)
+   {
+      this.dither = dither;
+   }
+
+   /**
+    * Set the per channel white balance.  Each value scales the
+    * corresponding channel and is clamped to the range 0..1.
+    *
+    * @param red     red scale
+    * @param green   green scale
+    * @param blue    blue scale
+    */
+   public void setWhiteBalance(float red,float green,float blue)
+   {
+      this.red = clamp(red);
+      this.green = clamp(green);
+      this.blue = clamp(blue);
+      buildTables();
+   }
+
+   /**
+    * Set the white balance from a packed RGB color temperature value
+    * such as 0xFFB0F0 (a typical correction for WS2812 strips).
+    *
+    * @param rgb   the packed correction value
+    */
+   public void setWhiteBalance(int rgb)
+   {
+      setWhiteBalance(((rgb >> 16) & 0xff)/255.0f,((rgb >> 8) & 0xff)/255.0f,
+         (rgb & 0xff)/255.0f);
+   }
+
+   @Override
+   public void filter(int[] pixels)
+   {
+      /* snapshot the tables so a concurrent settings change swaps in cleanly */
+      int[] lr = lutR;
+      int[] lg = lutG;
+      int[] lb = lutB;
+
+      if(dither)
+      {
+         /* the residue buffer only needs to be (re)allocated when the frame size changes */
+         if((residue == null) || (residue.length != pixels.length*3))
+            residue = new int[pixels.length*3];
+         int[] res = residue;
+
+         for(int i=0,j=0;i<pixels.length;i++,j+=3)
+         {
+            int pixel = pixels[i];
+
+            /* add the leftover fraction from the previous frame and split */
+            /* the result into the value to show and the new leftover */
+            int r = lr[(pixel >> 16) & 0xff] + res[j];
+            int g = lg[(pixel >> 8) & 0xff] + res[j+1];
+            int b = lb[pixel & 0xff] + res[j+2];
+            if(r > MAX_VALUE) r = MAX_VALUE;
+            if(g > MAX_VALUE) g = MAX_VALUE;
+            if(b > MAX_VALUE) b = MAX_VALUE;
+            res[j] = r & 0xff;
+            res[j+1] = g & 0xff;
+            res[j+2] = b & 0xff;
+
+            pixels[i] = (pixel & 0xff000000) | ((r >> 8) << 16) | ((g >> 8) << 8) | (b >> 8);
+         }
+      }
+      else
+         PixelKernels.get().lut(pixels,0,pixels.length,outR,outG,outB);
+   }
+
+   /**
+    * Rebuild the lookup tables from the current settings.
+    */
+   private void buildTables()
+   {
+      /* build into new arrays and then publish so filter() never sees */
+      /* a half built table, this only happens on settings changes */
+      int[] r = new int[LUT_SIZE];
+      int[] g = new int[LUT_SIZE];
+      int[] b = new int[LUT_SIZE];
+      int[] or = new int[LUT_SIZE];
+      int[] og = new int[LUT_SIZE];
+      int[] ob = new int[LUT_SIZE];
+
+      for(int i=0;i<LUT_SIZE;i++)
+      {
+         /* gamma curve scaled by brightness in 8.8 fixed point */
+         double v = Math.pow(i/255.0,gamma) * brightness * MAX_VALUE;
+         r[i] = (int)Math.round(v*red);
+         g[i] = (int)Math.round(v*green);
+         b[i] = (int)Math.round(v*blue);
+
+         /* round to the nearest 8bit value */
+         or[i] = ((r[i] + 0x80) >> 8) << 16;
+         og[i] = ((g[i] + 0x80) >> 8) << 8;
+         ob[i] = (b[i] + 0x80) >> 8;
+      }
+
+      lutR = r;
+      lutG = g;
+      lutB = b;
+      outR = or;
+      outG = og;
+      outB = ob;
+   }
+
+   /**
+    * Clamp a scale value to the range 0..1.
+    */
+   static private float clamp(float v)
+   {
+      return(Math.max(0.0f,Math.min(1.0f,v)));
+   }
+}
@@ -0,0 +1,23 @@
+/**
+ * (C) Copyright 2026, David Vogt, All rights reserved.
+ */
+package mv.robotics.sign.pipeline;
+
+/**
+ * A stage in the output pipeline that sits between Display.render() and
+ * the encoder.  Filters operate in place on ARGB pixel data and are called
+ * once per frame from the render thread, so implementations should avoid
+ * allocating in filter().
+ *
+ * @author David Vogt (david@kondra.com)
+ * @version Oct-18-26
+ */
+public interface FrameFilter
+{
+   /**
+    * Process a frame of pixel data in place.
+    *
+    * @param pixels   the ARGB pixel data, stacked in horizontal rows
+    */
+   public void filter(int[] pixels);
+}
@@ -0,0 +1,103 @@
+/**
+ * (C) Copyright 2026, David Vogt, All rights reserved.
+ */
+package mv.robotics.sign.pipeline;
+
+import mv.robotics.sign.metrics.Gauge;
+import mv.robotics.sign.metrics.Metrics;
+
+/**
+ * Paces the render loop.  Frames are scheduled against a fixed timeline
+ * rather than sleeping a fixed time after each one, so the time spent
+ * rendering doesn't slow the frame rate down.  The frame period is the
+ * target period unless the links can't keep up with it, in which case it
+ * stretches to what the slowest link can sustain with some headroom left
+ * for other traffic.  Sending faster than that just fills the transport
+ * buffers and adds latency.
+ *
+ * @author David Vogt (david@kondra.com)
+ * @version Oct-18-26
+ */
+public class FrameScheduler
+{
+   /* fraction of the measured link capacity frames may use */
+   static private final double LINK_HEADROOM = 0.8;
+
+   private long targetPeriod;       /* desired frame period in ns */
+   private volatile long period;    /* frame period in use in ns */
+   private long nextFrame;          /* when the next frame is due */
+
+   /**
+    * Create a scheduler.
+    *
+    * @param fps   the desired frame rate
+    */
+   public FrameScheduler(int fps)
+   {
+      setTargetFps(fps);
+      period = targetPeriod;
+
+      /* export the frame rate actually being scheduled */
+      Metrics.gauge("pipeline.schedule.fps",new Gauge() {
+         public long get() {
+            return(1000000000L / period);
+         }
+      });
+   }
+
+   /**
+    * Return the desired frame rate.
+    */
+   public int getTargetFps()
+   {
+      return((int)(1000000000L / targetPeriod));
+   }
+
+   /**
+    * Set the desired frame rate.
+    *
+    * @param fps   the frame rate
+    */
+   public void setTargetFps(int fps)
+   {
+      this.targetPeriod = 1000000000L / Math.max(fps,1);
+   }
+
+   /**
+    * Return the frame period in use in ns.
+    */
+   public long getPeriod()
+   {
+      return(period);
+   }
+
+   /**
+    * Set the time the links need to carry a frame, which limits the
+    * frame rate.
+    *
+    * @param linkNanos   link time per frame in ns, 0 if unknown
+    */
+   public void setLinkTime(long linkNanos)
+   {
+      period = Math.max(targetPeriod,(long)(linkNanos / LINK_HEADROOM));
+   }
+
+   /**
+    * Wait until the next frame is due.
+    */
+   public void await() throws InterruptedException
+   {
+      long now = System.nanoTime();
+      if(nextFrame == 0)
+         nextFrame = now;
+
+      /* if we fell more than a frame behind, don't try to catch up */
+      nextFrame += period;
+      if(nextFrame < now - period)
+         nextFrame = now;
+
+      long wait = nextFrame - now;
+      if(wait > 0)
+         Thread.sleep(wait / 1000000L,(int)(wait % 1000000L));
+   }
+}
@@ -0,0 +1,338 @@
+/**
+ * (C) Copyright 2026, David Vogt, All rights reserved.
+ */
+package mv.robotics.sign.pipeline;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+
+import mv.robotics.sign.ImageDataMsg;
+import mv.robotics.sign.metrics.Counter;
+import mv.robotics.sign.metrics.Histogram;
+import mv.robotics.sign.metrics.Metrics;
+import mv.robotics.sign.msg.MsgConn;
+import mv.robotics.sign.msg.ex.MsgException;
+import mv.robotics.sign.msg.util.MsgBuffer;
+
+/**
+ * Final stage of the output pipeline that encodes and writes a frame to
+ * every attached connection.  Each connection is encoded and written on
+ * a work-stealing pool and send() returns once every link has finished
+ * with the frame, so the frame time tracks the slowest link rather than
+ * the sum of all of them.  A single link is sent inline on the calling
+ * thread to avoid the hand off.
+ *
+ * @author David Vogt (david@kondra.com)
+ * @version Oct-18-26
+ */
+public class FrameSender
+{
+   /* weight given to the latest sample in the latency averages */
+   static private final double AVG_WEIGHT = 0.1;
+   
+   /* metrics across all links */
+   static private final Histogram encodeTime = Metrics.histogram("pipeline.send.encodeNanos");
+   static private final Histogram writeTime = Metrics.histogram("pipeline.send.writeNanos");
+   static private final Counter dropped = Metrics.counter("pipeline.send.droppedFrames");
+
+   private List<Link> links;        /* attached connections */
+   private ForkJoinPool pool;       /* encode/write pool */
+
+   /**
+    * Create a frame sender.
+    *
+    * @param parallelism   max number of links to send concurrently
+    */
+   public FrameSender(int parallelism)
+   {
+      links = new CopyOnWriteArrayList<>();
+      pool = new ForkJoinPool(parallelism);
+   }
+
+   /**
+    * Attach a connection that receives the whole frame.
+    *
+    * @param conn   the connection
+    */
+   public void addConn(MsgConn conn)
+   {
+      addConn(conn,0,-1);
+   }
+
+   /**
+    * Attach a connection that receives a slice of the frame.
+    *
+    * @param conn     the connection
+    * @param offset   first pixel of the slice
+    * @param length   number of pixels in the slice or -1 for the rest of the frame
+    */
+   public void addConn(MsgConn conn,int offset,int length)
+   {
+      links.add(new Link(conn,offset,length));
+   }
+
+   /**
+    * Detach a connection.
+    *
+    * @param conn   the connection
+    */
+   public void removeConn(MsgConn conn)
+   {
+      for(Link link : links)
+      {
+         if(link.conn == conn)
+            links.remove(link);
+      }
+   }
+
+   /**
+    * Return true if at least one connection is attached.
+    */
+   public boolean isConnected()
+   {
+      return(!links.isEmpty());
+   }
+
+   /**
+    * Return a snapshot of the attached links for reporting latency.
+    */
+   public List<Link> getLinks()
+   {
+      return(links);
+   }
+
+   /**
+    * Return the time the slowest link needs to carry a frame in ns, based
+    * on the last frame sent and each connection's measured capacity.
+    * Links that haven't sent a frame or haven't been measured are
+    * skipped, so this is 0 when nothing is known.
+    */
+   public long getSlowestFrameNanos()
+   {
+      long max = 0;
+      for(Link link : links)
+      {
+         long rate = link.conn.getLinkRate();
+         if((rate > 0) && (link.frameBytes > 0))
+            max = Math.max(max,(link.frameBytes * 1000000000L) / rate);
+      }
+      return(max);
+   }
+
+   /**
+    * Encode and write a frame to every attached connection and wait
+    * for all of them to finish.
+    *
+    * @param msgType   the message type to send the frame as
+    * @param pixels    the frame data
+    */
+   public void send(int msgType,int[] pixels)
+   {
+      /* copying a copy-on-write list gives us a stable snapshot */
+      final Link[] snapshot = links.toArray(new Link[0]);
+      if(snapshot.length == 0)
+         return;
+
+      /* prepare every link for this frame */
+      for(Link link : snapshot)
+         link.prepare(msgType,pixels);
+
+      /* no point handing a single link to the pool */
+      if(snapshot.length == 1)
+      {
+         snapshot[0].compute();
+         return;
+      }
+
+      /* fork all the links and join them as the per-frame barrier */
+      pool.invoke(new RecursiveAction() {
+         static private final long serialVersionUID = 1L;
+         protected void compute() {
+            ForkJoinTask.invokeAll(snapshot);
+         }
+      });
+   }
+
+   /**
+    * Send a frame to a single attached connection right away, outside
+    * the normal frame cycle.  This is encoded separately so it can be
+    * called from any thread while frames are being sent.
+    *
+    * @param conn      the connection
+    * @param msgType   the message type to send the frame as
+    * @param pixels    the frame data
+    */
+   public void sendTo(MsgConn conn,int msgType,int[] pixels)
+   {
+      for(Link link : links)
+      {
+         if(link.conn == conn)
+         {
+            int len = (link.length < 0) ? (pixels.length - link.offset) : link.length;
+            try {
+               conn.sendMsg(msgType,new ImageDataMsg(pixels,link.offset,len));
+               conn.flush();
+            } catch(MsgException ex) {
+               link.failures.incrementAndGet();
+               dropped.inc();
+            }
+         }
+      }
+   }
+
+   /**
+    * Shutdown the pool.
+    */
+   public void destroy()
+   {
+      pool.shutdown();
+   }
+
+   /**
+    * A single connection along with its slice of the frame and latency
+    * stats.  Each link is its own task and is reinitialized every frame.
+    */
+   static public class Link extends RecursiveAction
+   {
+      static private final long serialVersionUID = 4313474658112427395L;
+
+      private MsgConn conn;               /* connection to write to */
+      private int offset;                 /* first pixel of the slice */
+      private int length;                 /* slice length or -1 for the rest */
+      private int msgType;                /* message type for the current frame */
+      private int[] pixels;               /* current frame */
+      private MsgBuffer payload;          /* encoded slice, reused every frame */
+      private volatile long encodeNanos;  /* last encode time */
+      private volatile long writeNanos;   /* last write time */
+      private volatile double avgEncodeNanos;  /* average encode time */
+      private volatile double avgWriteNanos;   /* average write time */
+      private AtomicLong failures;        /* number of failed writes, sendTo() counts too */
+      private volatile int frameBytes;    /* wire size of the last frame */
+      private boolean faulted;            /* true once an unexpected error is logged */
+
+      private Link(MsgConn conn,int offset,int length)
+      {
+         this.conn = conn;
+         this.offset = offset;
+         this.length = length;
+         this.payload = new MsgBuffer(1024);
+         this.failures = new AtomicLong();
+      }
+
+      /**
+       * Return the connection.
+       */
+      public MsgConn getConn()
+      {
+         return(conn);
+      }
+
+      /**
+       * Return the time to encode the last frame in ns.
+       */
+      public long getEncodeNanos()
+      {
+         return(encodeNanos);
+      }
+
+      /**
+       * Return the time to write the last frame in ns.
+       */
+      public long getWriteNanos()
+      {
+         return(writeNanos);
+      }
+
+      /**
+       * Return the average encode time in ns.
+       */
+      public double getAvgEncodeNanos()
+      {
+         return(avgEncodeNanos);
+      }
+
+      /**
+       * Return the average write time in ns.
+       */
+      public double getAvgWriteNanos()
+      {
+         return(avgWriteNanos);
+      }
+
+      /**
+       * Return the number of frames dropped for this link.
+       */
+      public long getFailures()
+      {
+         return(failures.get());
+      }
+
+      /**
+       * Return the wire size of the last frame.
+       */
+      public int getFrameBytes()
+      {
+         return(frameBytes);
+      }
+
+      /**
+       * Setup the link for the next frame.
+       */
+      private void prepare(int msgType,int[] pixels)
+      {
+         reinitialize();
+         this.msgType = msgType;
+         this.pixels = pixels;
+      }
+
+      @Override
+      protected void compute()
+      {
+         try {
+            /* encode this link's slice of the frame */
+            long start = System.nanoTime();
+            int len = (length < 0) ? (pixels.length - offset) : length;
+            payload.clear();
+            new ImageDataMsg(pixels,offset,len).writeTo(payload);
+            long encoded = System.nanoTime();
+
+            /* write it */
+            conn.sendPayload(msgType,payload.array(),0,payload.position());
+            conn.flush();
+            long written = System.nanoTime();
+            frameBytes = payload.position() + MsgConn.PACKET_OVERHEAD;
+
+            /* update the stats, only this task ever writes them (failures */
+            /* excepted, sendTo() adds to those from other threads) */
+            encodeNanos = encoded - start;
+            writeNanos = written - encoded;
+            avgEncodeNanos += (encodeNanos - avgEncodeNanos) * AVG_WEIGHT;
+            avgWriteNanos += (writeNanos - avgWriteNanos) * AVG_WEIGHT;
+            encodeTime.record(encodeNanos);
+            writeTime.record(writeNanos);
+         } catch(MsgException ex) {
+            /* a failed link must not hold up the others, the frame is */
+            /* simply dropped for this link */
+            failures.incrementAndGet();
+            dropped.inc();
+         } catch(RuntimeException ex) {
+            /* a bug in one link's encoder or transport must not stop the */
+            /* frame cycle either, drop the frame and report it the first */
+            /* time so a link that keeps failing doesn't flood the log */
+            failures.incrementAndGet();
+            dropped.inc();
+            if(!faulted)
+            {
+               faulted = true;
+               ex.printStackTrace();
+            }
+         } finally {
+            pixels = null;
+         }
+      }
+   }
+}
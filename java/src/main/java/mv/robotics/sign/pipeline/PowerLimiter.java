@@ -0,0 +1,194 @@
+/**
+ * (C) Copyright 2026, David Vogt, All rights reserved.
+ */
+package mv.robotics.sign.pipeline;
+
+import mv.robotics.sign.kernels.PixelKernels;
+import mv.robotics.sign.metrics.Gauge;
+import mv.robotics.sign.metrics.Metrics;
+
+/**
+ * Output stage that keeps the estimated current draw of a frame under a
+ * budget.  The firmware also limits power, but it does so by silently
+ * dimming whole frames which shows up as flicker.  Doing it here lets us
+ * limit smoothly: the brightness scale drops immediately when a frame
+ * would go over budget and recovers gradually over following frames.
+ *
+ * The current model is linear in the channel values, each channel draws
+ * its full scale current at 255 and every led draws a fixed idle current.
+ * The defaults match the values FastLED uses for WS2812 leds.
+ *
+ * @author David Vogt (david@kondra.com)
+ * @version Oct-18-26
+ */
+public class PowerLimiter implements FrameFilter
+{
+   /* brightness scale of 1 in the 16.16 fixed point the kernels use */
+   static private final int SCALE_ONE = PixelKernels.SCALE_ONE;
+
+   private int budget;              /* max milliamps for the whole display */
+   private float redMilliamps;      /* red channel draw at full brightness */
+   private float greenMilliamps;    /* green channel draw at full brightness */
+   private float blueMilliamps;     /* blue channel draw at full brightness */
+   private float idleMilliamps;     /* draw of a single dark led */
+   private float release;           /* fraction of the gap recovered per frame */
+   private float scale;             /* current smoothed brightness scale */
+   private volatile float estimated;   /* estimated draw of the last unlimited frame */
+   private volatile float output;      /* estimated draw of the last frame after limiting */
+
+   /**
+    * Create a power limiter for the specified budget using the WS2812
+    * current model.
+    *
+    * @param budget   the max milliamps for the display
+    */
+   public PowerLimiter(int budget)
+   {
+      this.budget = budget;
+      this.redMilliamps = 16.0f;
+      this.greenMilliamps = 11.0f;
+      this.blueMilliamps = 15.0f;
+      this.idleMilliamps = 1.0f;
+      this.release = 0.05f;
+      this.scale = 1.0f;
+      
+      /* export the estimated draw */
+      Metrics.gauge("pipeline.power.estimatedMilliamps",new Gauge() {
+         public long get() {
+            return(Math.round(estimated));
+         }
+      });
+      Metrics.gauge("pipeline.power.outputMilliamps",new Gauge() {
+         public long get() {
+            return(Math.round(output));
+         }
+      });
+   }
+
+   /**
+    * Return the max milliamps for the display.
+    */
+   public int getBudget()
+   {
+      return(budget);
+   }
+
+   /**
+    * Set the max milliamps for the display.
+    *
+    * @param budget   the budget in milliamps
+    */
+   public void setBudget(int budget)
+   {
+      this.budget = budget;
+   }
+
+   /**
+    * Return the fraction of the gap to full brightness recovered per
+    * frame.
+    */
+   public float getRelease()
+   {
+      return(release);
+   }
+
+   /**
+    * Set the fraction of the gap to full brightness recovered per
+    * frame.  The value is clamped to the range 0..1.
+    *
+    * @param release   the release rate
+    */
+   public void setRelease(float release)
+   {
+      this.release = Math.max(0.0f,Math.min(1.0f,release));
+   }
+
+   /**
+    * Return the estimated draw of the last frame before limiting.
+    */
+   public float getEstimatedMilliamps()
+   {
+      return(estimated);
+   }
+
+   /**
+    * Return the estimated draw of the last frame after limiting.
+    */
+   public float getOutputMilliamps()
+   {
+      return(output);
+   }
+
+   /**
+    * Return the brightness scale applied to the last frame.
+    */
+   public float getScale()
+   {
+      return(scale);
+   }
+
+   /**
+    * Set the current model.
+    *
+    * @param red     red channel milliamps at full brightness
+    * @param green   green channel milliamps at full brightness
+    * @param blue    blue channel milliamps at full brightness
+    * @param idle    milliamps drawn by a dark led
+    */
+   public void setModel(float red,float green,float blue,float idle)
+   {
+      this.redMilliamps = red;
+      this.greenMilliamps = green;
+      this.blueMilliamps = blue;
+      this.idleMilliamps = idle;
+   }
+
+   @Override
+   public void filter(int[] pixels)
+   {
+      long sumR = 0;
+      long sumG = 0;
+      long sumB = 0;
+
+      /* total up the channel values in a single pass */
+      for(int i=0;i<pixels.length;i++)
+      {
+         int pixel = pixels[i];
+         sumR += (pixel >> 16) & 0xff;
+         sumG += (pixel >> 8) & 0xff;
+         sumB += pixel & 0xff;
+      }
+
+      /* convert to milliamps, the idle draw can't be dimmed */
+      float idle = idleMilliamps * pixels.length;
+      float active = ((sumR*redMilliamps) + (sumG*greenMilliamps) + (sumB*blueMilliamps)) / 255.0f;
+      estimated = idle + active;
+
+      /* work out the scale that would bring this frame within budget */
+      float target = 1.0f;
+      if((idle + active) > budget)
+         target = (active > 0) ? Math.max(0.0f,(budget - idle) / active) : 0.0f;
+
+      /* drop immediately to stay under budget, but recover slowly so */
+      /* brightness changes are smooth rather than pumping */
+      if(target < scale)
+         scale = target;
+      else
+      {
+         /* snap to the target once we're close so the scaling pass stops */
+         scale += (target - scale) * release;
+         if((target - scale) < 0.001f)
+            scale = target;
+      }
+
+      output = idle + (active * scale);
+
+      /* nothing more to do when running at full brightness */
+      int fixed = (int)(scale * SCALE_ONE);
+      if(fixed >= SCALE_ONE)
+         return;
+
+      /* scale the channels */
+      PixelKernels.get().scale(pixels,0,pixels.length,fixed);
+   }
+}
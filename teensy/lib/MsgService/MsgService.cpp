@@ -85,6 +85,13 @@ MsgService::connect(
    out->maxPayloadSize = service->inBufSize - sizeof(struct msgHdr) - 4;
    out->connType = service->connType;
 
+   /* link parameters, we don't check crcs so don't ask for them and */
+   /* we don't reassemble fragments so the host must not send any... */
+   /* every payload has to fit in the input buffer */
+   out->flags = MSG_CONNECT_PARAMS;
+   out->chunkSize = MSG_CHUNK_SIZE;
+   out->codecs = MSG_CODEC_RGB888;
+
    /* return our connect response */
    service->send(1,0,sizeof(struct msgConnect));
 }
@@ -304,7 +311,9 @@ MsgService::send(
    hdr->startByte = MSG_PACKET_START_BYTE;
    hdr->msgType = msgType;
    hdr->msgId = msgId;
+   hdr->reserved1 = 0;
    hdr->len = len;
+   hdr->reserved2 = 0;
 
    /* compute the crc */
    size = sizeof(struct msgHdr) + len;
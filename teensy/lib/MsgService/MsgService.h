@@ -70,9 +70,9 @@ struct msgHdr {
    char startByte;                       /* magic start of packet byte */
    uint8_t msgType;                      /* message type */
    uint8_t msgId;                        /* message id */
-   uint8_t reserved1;                    /* not used */
+   uint8_t reserved1;                    /* fragment flags, not used here */
    uint16_t len;                         /* length of the packet payload */
-   uint16_t reserved2;                   /* not used */
+   uint16_t reserved2;                   /* fragment index, not used here */
 };
 
 /*----------
@@ -134,10 +134,21 @@ class MsgService {
 /*----------
 - Connect message
 ----------*/
+#define MSG_CONNECT_CHECKSUM  0x0001     /* wants crc16 checksums */
+#define MSG_CONNECT_FRAGMENTS 0x0002     /* reassembles fragments, not supported here */
+#define MSG_CONNECT_PARAMS    0x8000     /* link parameters are present */
+
+#define MSG_CODEC_RGB888      0x0001     /* 3 bytes per pixel */
+
+#define MSG_CHUNK_SIZE        64         /* usb full speed packet size */
+
 struct msgConnect {
    uint32_t connId;                      /* connection id */
    uint16_t maxPayloadSize;              /* max payload size supported */
    uint16_t connType;                    /* connection type */
+   uint16_t flags;                       /* link flags */
+   uint16_t chunkSize;                   /* preferred write size */
+   uint16_t codecs;                      /* supported payload codecs */
 };
 
 #endif /* _MSGSERVICE_H_ */